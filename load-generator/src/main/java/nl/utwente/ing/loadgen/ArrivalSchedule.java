@@ -0,0 +1,58 @@
+package nl.utwente.ing.loadgen;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Constant arrival rate schedule of an open workload model.
+ *
+ * Request {@code i} is intended to start at {@code start + i / rate}, regardless of how long earlier requests took.
+ * Latencies are measured from this intended start time rather than from the moment the request was actually sent,
+ * so a stalled server (or a stalled generator) is charged for the time requests spent waiting to be sent. This avoids
+ * coordinated omission.
+ */
+final class ArrivalSchedule {
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+    private final long startNanos;
+    private final double ratePerSecond;
+
+    ArrivalSchedule(long startNanos, double ratePerSecond) {
+        if (ratePerSecond <= 0) {
+            throw new IllegalArgumentException("The arrival rate must be positive, got " + ratePerSecond);
+        }
+        this.startNanos = startNanos;
+        this.ratePerSecond = ratePerSecond;
+    }
+
+    /**
+     * @param index the index of the request, starting at 0
+     * @return the {@link System#nanoTime()} at which the request is intended to start
+     */
+    long intendedStart(long index) {
+        return startNanos + Math.round(index * NANOS_PER_SECOND / ratePerSecond);
+    }
+
+    /**
+     * @param durationNanos the duration of the run
+     * @return the number of requests that start within the given duration
+     */
+    long requestsWithin(long durationNanos) {
+        return (long) Math.ceil(durationNanos * ratePerSecond / NANOS_PER_SECOND);
+    }
+
+    /**
+     * Waits until the intended start of a request. Returns immediately if the generator is running behind.
+     *
+     * @param index the index of the request
+     * @return the intended start time of the request
+     */
+    long awaitStart(long index) {
+        long intended = intendedStart(index);
+        long remaining;
+        while ((remaining = intended - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+        return intended;
+    }
+}
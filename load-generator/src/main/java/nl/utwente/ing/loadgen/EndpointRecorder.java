@@ -0,0 +1,134 @@
+package nl.utwente.ing.loadgen;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records response times per endpoint in HdrHistograms.
+ *
+ * Every endpoint gets an interval log ({@code <endpoint>.hlog}) which can be processed with the HdrHistogram tooling,
+ * and a percentile distribution of the whole run ({@code <endpoint>.hgrm}). Response times are recorded in
+ * microseconds.
+ */
+final class EndpointRecorder implements AutoCloseable {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private final Path outputDirectory;
+    private final long startMillis = System.currentTimeMillis();
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    EndpointRecorder(Path outputDirectory) throws IOException {
+        this.outputDirectory = Files.createDirectories(outputDirectory);
+    }
+
+    /**
+     * Records a completed request.
+     *
+     * @param endpoint the method and templated path of the request
+     * @param latencyNanos the time between the intended start and the completion of the request
+     * @param error whether the request failed or was answered with an unexpected status code
+     */
+    void record(String endpoint, long latencyNanos, boolean error) {
+        Endpoint recorder = endpoints.computeIfAbsent(endpoint, Endpoint::new);
+        recorder.recorder.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), HIGHEST_TRACKABLE_MICROS));
+        recorder.count.increment();
+        if (error) {
+            recorder.errors.increment();
+        }
+    }
+
+    /**
+     * Writes the histograms recorded since the previous call to the interval logs. Must be called from a single
+     * thread.
+     */
+    synchronized void writeInterval() {
+        for (Endpoint endpoint : endpoints.values()) {
+            endpoint.writeInterval();
+        }
+    }
+
+    /**
+     * Prints a summary line per endpoint, of the intervals written so far.
+     */
+    synchronized void printSummary(PrintStream out) {
+        out.println(String.format("%-40s %9s %7s %10s %10s %10s %10s %10s", "endpoint", "count", "errors",
+                "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        for (Map.Entry<String, Endpoint> entry : new TreeMap<>(endpoints).entrySet()) {
+            Histogram total = entry.getValue().total;
+            out.println(String.format("%-40s %9d %7d %10.3f %10.3f %10.3f %10.3f %10.3f", entry.getKey(),
+                    entry.getValue().count.sum(), entry.getValue().errors.sum(),
+                    total.getValueAtPercentile(50) / 1_000d, total.getValueAtPercentile(90) / 1_000d,
+                    total.getValueAtPercentile(99) / 1_000d, total.getValueAtPercentile(99.9) / 1_000d,
+                    total.getMaxValue() / 1_000d));
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writeInterval();
+        for (Endpoint endpoint : endpoints.values()) {
+            endpoint.close();
+        }
+    }
+
+    private static String fileName(String endpoint) {
+        return endpoint.replaceAll("[^A-Za-z0-9]+", "_").replaceAll("^_|_$", "");
+    }
+
+    private final class Endpoint {
+
+        private final String name;
+        private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_MICROS, 3);
+        private final Histogram total = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final PrintStream log;
+        private final HistogramLogWriter logWriter;
+        private Histogram interval;
+
+        Endpoint(String name) {
+            this.name = name;
+            try {
+                log = new PrintStream(outputDirectory.resolve(fileName(name) + ".hlog").toFile(), "UTF-8");
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not create the histogram log of " + name, e);
+            }
+            logWriter = new HistogramLogWriter(log);
+            logWriter.outputComment("Response times in microseconds of " + name);
+            logWriter.outputLogFormatVersion();
+            logWriter.outputStartTime(startMillis);
+            logWriter.setBaseTime(startMillis);
+            logWriter.outputLegend();
+        }
+
+        void writeInterval() {
+            interval = recorder.getIntervalHistogram(interval);
+            if (interval.getTotalCount() > 0) {
+                total.add(interval);
+                logWriter.outputIntervalHistogram(interval);
+            }
+        }
+
+        void close() throws FileNotFoundException {
+            log.close();
+            try (PrintStream distribution = new PrintStream(
+                    outputDirectory.resolve(fileName(name) + ".hgrm").toFile())) {
+                total.outputPercentileDistribution(distribution, 1_000d);
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package nl.utwente.ing.loadgen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Bounded pool of the IDs of resources created during a run, from which requests pick the resources they operate on.
+ */
+final class IdPool {
+
+    private static final int CAPACITY = 10_000;
+
+    private final List<Integer> ids = new ArrayList<>();
+
+    synchronized void add(int id, Random random) {
+        if (ids.size() < CAPACITY) {
+            ids.add(id);
+        } else {
+            ids.set(random.nextInt(CAPACITY), id);
+        }
+    }
+
+    /**
+     * @return a random ID from the pool, or null if the pool is empty
+     */
+    synchronized Integer pick(Random random) {
+        return ids.isEmpty() ? null : ids.get(random.nextInt(ids.size()));
+    }
+
+    /**
+     * Removes a random ID from the pool, for requests which delete the resource.
+     *
+     * @return the removed ID, or null if the pool is empty
+     */
+    synchronized Integer take(Random random) {
+        if (ids.isEmpty()) {
+            return null;
+        }
+        int index = random.nextInt(ids.size());
+        int last = ids.size() - 1;
+        Integer id = ids.get(index);
+        ids.set(index, ids.get(last));
+        ids.remove(last);
+        return id;
+    }
+}
@@ -0,0 +1,161 @@
+package nl.utwente.ing.loadgen;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Open-model load generator for the API.
+ *
+ * Requests are started at a constant arrival rate, independent of the response times of the server, and their
+ * response times are recorded per endpoint from their intended start (see {@link ArrivalSchedule}). Unlike the
+ * closed-loop test threads, a slow server therefore results in a growing number of outstanding requests and higher
+ * recorded latencies instead of a lower request rate.
+ *
+ * Usage: {@code mvn -f load-generator/pom.xml exec:java -Dexec.args="--rate 200 --duration 60"}
+ *
+ * Options:
+ * <ul>
+ *     <li>{@code --base-uri} the URI of the server, defaults to {@code http://localhost:8080/}</li>
+ *     <li>{@code --rate} the number of requests started per second, defaults to 100</li>
+ *     <li>{@code --duration} the duration of the run in seconds, defaults to 60</li>
+ *     <li>{@code --sessions} the number of sessions created before the run, defaults to 10</li>
+ *     <li>{@code --output} the directory the histograms are written to, defaults to {@code target/load}</li>
+ *     <li>{@code --seed} the seed of the request mix, defaults to a random seed</li>
+ * </ul>
+ */
+public final class LoadGenerator {
+
+    private static final long REPORT_INTERVAL_MILLIS = 1_000;
+
+    private LoadGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        URI baseUri = URI.create(options.getOrDefault("base-uri", "http://localhost:8080/"));
+        double rate = Double.parseDouble(options.getOrDefault("rate", "100"));
+        long duration = TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("duration", "60")));
+        int sessions = Integer.parseInt(options.getOrDefault("sessions", "10"));
+        if (sessions < 1) {
+            throw new IllegalArgumentException("At least one session is required, got " + sessions);
+        }
+        Path output = Paths.get(options.getOrDefault("output", "target/load"));
+        Random random = options.containsKey("seed") ? new Random(Long.parseLong(options.get("seed"))) : new Random();
+
+        ExecutorService executor = Executors.newCachedThreadPool(daemonThreads("load-generator-client"));
+        HttpClient client = HttpClient.newBuilder()
+                .executor(executor)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        Workload workload = new Workload(baseUri);
+        createSessions(client, workload, sessions);
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(
+                daemonThreads("load-generator-reporter"));
+        try (EndpointRecorder recorder = new EndpointRecorder(output)) {
+            reporter.scheduleAtFixedRate(recorder::writeInterval, REPORT_INTERVAL_MILLIS, REPORT_INTERVAL_MILLIS,
+                    TimeUnit.MILLISECONDS);
+            run(client, workload, recorder, new ArrivalSchedule(System.nanoTime(), rate), duration, random);
+            reporter.shutdown();
+            reporter.awaitTermination(REPORT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            // Writes the last interval, so the summary covers the whole run like the interval logs do.
+            recorder.writeInterval();
+            recorder.printSummary(System.out);
+        }
+        executor.shutdownNow();
+        System.out.println("Histograms written to " + output.toAbsolutePath());
+    }
+
+    /**
+     * Starts requests according to the schedule until the duration has passed, and waits for all of them to complete.
+     */
+    static void run(HttpClient client, Workload workload, EndpointRecorder recorder, ArrivalSchedule schedule,
+                    long durationNanos, Random random) {
+        Operation.Mix mix = new Operation.Mix();
+        Phaser outstanding = new Phaser(1);
+        long requests = schedule.requestsWithin(durationNanos);
+        for (long i = 0; i < requests; i++) {
+            long intendedStart = schedule.awaitStart(i);
+            Operation.Call call = prepare(mix.pick(random), workload, random);
+            outstanding.register();
+            client.sendAsync(call.request, HttpResponse.BodyHandlers.ofString())
+                    .whenComplete((response, failure) -> {
+                        // Deregisters in any case, as an exception thrown here is swallowed by the future and would
+                        // otherwise leave the run waiting forever.
+                        try {
+                            long latency = System.nanoTime() - intendedStart;
+                            boolean error = failure != null
+                                    || response.statusCode() != call.operation.expectedStatus;
+                            if (!error) {
+                                try {
+                                    call.onSuccess.accept(response.body());
+                                } catch (RuntimeException e) {
+                                    // A successful response with an unexpected body is an error as well.
+                                    error = true;
+                                }
+                            }
+                            recorder.record(call.operation.endpoint, latency, error);
+                        } finally {
+                            outstanding.arriveAndDeregister();
+                        }
+                    });
+        }
+        outstanding.arriveAndAwaitAdvance();
+    }
+
+    private static Operation.Call prepare(Operation operation, Workload workload, Random random) {
+        SessionState session = workload.pickSession(random);
+        Operation.Call call = operation.prepare(workload, session, random);
+        if (call == null) {
+            call = operation.fallback().prepare(workload, session, random);
+        }
+        return call;
+    }
+
+    private static void createSessions(HttpClient client, Workload workload, int sessions) throws IOException,
+            InterruptedException {
+        Random random = new Random();
+        for (int i = 0; i < sessions; i++) {
+            Operation.Call call = Operation.CREATE_SESSION.prepare(workload, null, random);
+            HttpResponse<String> response = client.send(call.request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != call.operation.expectedStatus) {
+                throw new IllegalStateException("Could not create a session, the server responded with "
+                        + response.statusCode());
+            }
+            call.onSuccess.accept(response.body());
+        }
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("Expected --<option> <value>, got " + args[i]);
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,223 @@
+package nl.utwente.ing.loadgen;
+
+import java.net.http.HttpRequest;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * The requests of the workload and their share of the mix, mirroring the endpoints exercised by the test classes.
+ *
+ * Requests operating on an existing resource fall back to creating one when the session does not contain any.
+ */
+enum Operation {
+
+    CREATE_SESSION(1, "POST /api/v1/sessions", 201) {
+        @Override
+        Call prepare(Workload workload, SessionState session, Random random) {
+            return call(workload.post("api/v1/sessions", null, ""), body -> workload.addSession(Workload.id(body)));
+        }
+    },
+    CREATE_TRANSACTION(20, "POST /api/v1/transactions", 201) {
+        @Override
+        Call prepare(Workload workload, SessionState session, Random random) {
+            return call(workload.post("api/v1/transactions", session, transaction(session, random)),
+                    body -> session.transactions.add(Workload.intId(body), random));
+        }
+    },
+    LIST_TRANSACTIONS(20, "GET /api/v1/transactions", 200) {
+        @Override
+        Call prepare(Workload workload, SessionState session, Random random) {
+            return call(workload.get("api/v1/transactions?limit=20&offset=" + random.nextInt(100), session));
+        }
+    },
+    GET_TRANSACTION(15, "GET /api/v1/transactions/{id}", 200) {
+        @Override
+        Call prepare(Workload workload, SessionState session, Random random) {
+            Integer id = session.transactions.pick(random);
+            return id == null ? null : call(workload.get("api/v1/transactions/" + id, session));
+        }
+    },
+    UPDATE_TRANSACTION(5, "PUT /api/v1/transactions/{id}", 200) {
+        @Override
+        Call prepare(Workload workload, SessionState session, Random random) {
+            Integer id = session.transactions.pick(random);
+            return id == null ? null
+                    : call(workload.put("api/v1/transactions/" + id, session, transaction(session, random)));
+        }
+    },
+    DELETE_TRANSACTION(5, "DELETE /api/v1/transactions/{id}", 204) {
+        @Override
+        Call prepare(Workload workload, SessionState session, Random random) {
+            Integer id = session.transactions.take(random);
+            return id == null ? null : call(workload.delete("api/v1/transactions/" + id, session));
+        }
+    },
+    CREATE_CATEGORY(3, "POST /api/v1/categories", 201) {
+        @Override
+        Call prepare(Workload workload, SessionState session, Random random) {
+            return call(workload.post("api/v1/categories", session, category(random)),
+                    body -> session.categories.add(Workload.intId(body), random));
+        }
+    },
+    LIST_CATEGORIES(5, "GET /api/v1/categories", 200) {
+        @Override
+        Call prepare(Workload workload, SessionState session, Random random) {
+            return call(workload.get("api/v1/categories", session));
+        }
+    },
+    GET_CATEGORY(3, "GET /api/v1/categories/{id}", 200) {
+        @Override
+        Call prepare(Workload workload, SessionState session, Random random) {
+            Integer id = session.categories.pick(random);
+            return id == null ? null : call(workload.get("api/v1/categories/" + id, session));
+        }
+    },
+    UPDATE_CATEGORY(2, "PUT /api/v1/categories/{id}", 200) {
+        @Override
+        Call prepare(Workload workload, SessionState session, Random random) {
+            Integer id = session.categories.pick(random);
+            return id == null ? null : call(workload.put("api/v1/categories/" + id, session, category(random)));
+        }
+    },
+    DELETE_CATEGORY(1, "DELETE /api/v1/categories/{id}", 204) {
+        @Override
+        Call prepare(Workload workload, SessionState session, Random random) {
+            Integer id = session.categories.take(random);
+            return id == null ? null : call(workload.delete("api/v1/categories/" + id, session));
+        }
+    },
+    CREATE_CATEGORY_RULE(2, "POST /api/v1/categoryRules", 201) {
+        @Override
+        Call prepare(Workload workload, SessionState session, Random random) {
+            Integer categoryId = session.categories.pick(random);
+            if (categoryId == null) {
+                return null;
+            }
+            String rule = "{" +
+                    "\"description\": \"" + DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)] + "\", " +
+                    "\"iBAN\": \"" + IBANS[random.nextInt(IBANS.length)] + "\", " +
+                    "\"type\": \"" + type(random) + "\", " +
+                    "\"category_id\": " + categoryId + ", " +
+                    "\"applyOnHistory\": " + random.nextBoolean() +
+                    "}";
+            return call(workload.post("api/v1/categoryRules", session, rule));
+        }
+    },
+    BALANCE_HISTORY(18, "GET /api/v1/balance/history", 200) {
+        @Override
+        Call prepare(Workload workload, SessionState session, Random random) {
+            String interval = INTERVALS[random.nextInt(INTERVALS.length)];
+            return call(workload.get("api/v1/balance/history?interval=" + interval + "&intervals="
+                    + (1 + random.nextInt(24)), session));
+        }
+    };
+
+    private static final String[] DESCRIPTIONS = {"groceries", "rent", "salary", "University of Twente", "lunch"};
+    private static final String[] IBANS = {"NL05INGB0374182583", "NL39RABO0300065264", "NL91ABNA0417164300"};
+    private static final String[] INTERVALS = {"hour", "day", "week", "month", "year"};
+
+    final int weight;
+    final String endpoint;
+    final int expectedStatus;
+
+    Operation(int weight, String endpoint, int expectedStatus) {
+        this.weight = weight;
+        this.endpoint = endpoint;
+        this.expectedStatus = expectedStatus;
+    }
+
+    /**
+     * Prepares a request of this operation.
+     *
+     * @return the request, or null if the session does not contain a resource to operate on
+     */
+    abstract Call prepare(Workload workload, SessionState session, Random random);
+
+    /**
+     * The operation to perform instead when {@link #prepare} returns null.
+     */
+    Operation fallback() {
+        switch (this) {
+            case GET_TRANSACTION:
+            case UPDATE_TRANSACTION:
+            case DELETE_TRANSACTION:
+                return CREATE_TRANSACTION;
+            default:
+                return CREATE_CATEGORY;
+        }
+    }
+
+    Call call(HttpRequest request) {
+        return call(request, body -> { });
+    }
+
+    Call call(HttpRequest request, Consumer<String> onSuccess) {
+        return new Call(this, request, onSuccess);
+    }
+
+    private static String transaction(SessionState session, Random random) {
+        Instant date = Instant.now().minus(random.nextInt(2 * 365 * 24), ChronoUnit.HOURS);
+        Integer categoryId = session.categories.pick(random);
+        return "{" +
+                "\"date\": \"" + date.truncatedTo(ChronoUnit.MILLIS) + "\", " +
+                "\"amount\": " + String.format(Locale.ROOT, "%.2f", 1 + random.nextInt(50_000) / 100d) + ", " +
+                "\"externalIBAN\": \"" + IBANS[random.nextInt(IBANS.length)] + "\", " +
+                "\"type\": \"" + type(random) + "\", " +
+                "\"description\": \"" + DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)] + "\"" +
+                (categoryId == null ? "" : ", \"category\": {\"id\": " + categoryId + "}") +
+                "}";
+    }
+
+    private static String category(Random random) {
+        return "{\"name\": \"category " + random.nextInt(1_000) + "\"}";
+    }
+
+    private static String type(Random random) {
+        return random.nextBoolean() ? "deposit" : "withdrawal";
+    }
+
+    /**
+     * A prepared request of an operation.
+     */
+    static final class Call {
+
+        final Operation operation;
+        final HttpRequest request;
+        final Consumer<String> onSuccess;
+
+        private Call(Operation operation, HttpRequest request, Consumer<String> onSuccess) {
+            this.operation = operation;
+            this.request = request;
+            this.onSuccess = onSuccess;
+        }
+    }
+
+    /**
+     * Picks operations at random according to their weights.
+     */
+    static final class Mix {
+
+        private final Operation[] table;
+
+        Mix() {
+            int total = 0;
+            for (Operation operation : values()) {
+                total += operation.weight;
+            }
+            table = new Operation[total];
+            int index = 0;
+            for (Operation operation : values()) {
+                for (int i = 0; i < operation.weight; i++) {
+                    table[index++] = operation;
+                }
+            }
+        }
+
+        Operation pick(Random random) {
+            return table[random.nextInt(table.length)];
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package nl.utwente.ing.loadgen;
+
+/**
+ * Client-side state of a session: the resources created in it which later requests can operate on.
+ */
+final class SessionState {
+
+    final String id;
+    final IdPool transactions = new IdPool();
+    final IdPool categories = new IdPool();
+
+    SessionState(String id) {
+        this.id = id;
+    }
+}
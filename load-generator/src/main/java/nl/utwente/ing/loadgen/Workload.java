@@ -0,0 +1,75 @@
+package nl.utwente.ing.loadgen;
+
+import com.google.gson.JsonParser;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Builds the requests of a run against a single server and keeps track of the sessions created during it.
+ */
+final class Workload {
+
+    private static final String SESSION_HEADER = "X-session-ID";
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final URI baseUri;
+    private final List<SessionState> sessions = new CopyOnWriteArrayList<>();
+
+    Workload(URI baseUri) {
+        this.baseUri = baseUri.toString().endsWith("/") ? baseUri : URI.create(baseUri + "/");
+    }
+
+    void addSession(String id) {
+        sessions.add(new SessionState(id));
+    }
+
+    SessionState pickSession(Random random) {
+        return sessions.get(random.nextInt(sessions.size()));
+    }
+
+    int sessionCount() {
+        return sessions.size();
+    }
+
+    HttpRequest get(String path, SessionState session) {
+        return request(path, session).GET().build();
+    }
+
+    HttpRequest post(String path, SessionState session, String body) {
+        return request(path, session).POST(HttpRequest.BodyPublishers.ofString(body)).build();
+    }
+
+    HttpRequest put(String path, SessionState session, String body) {
+        return request(path, session).PUT(HttpRequest.BodyPublishers.ofString(body)).build();
+    }
+
+    HttpRequest delete(String path, SessionState session) {
+        return request(path, session).DELETE().build();
+    }
+
+    private HttpRequest.Builder request(String path, SessionState session) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(baseUri.resolve(path))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json");
+        if (session != null) {
+            builder.header(SESSION_HEADER, session.id);
+        }
+        return builder;
+    }
+
+    /**
+     * @return the {@code id} field of a JSON response body
+     */
+    static String id(String body) {
+        return new JsonParser().parse(body).getAsJsonObject().get("id").getAsString();
+    }
+
+    static int intId(String body) {
+        return Integer.parseInt(id(body));
+    }
+}
@@ -0,0 +1,55 @@
+package nl.utwente.ing.loadgen;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ArrivalScheduleTests {
+
+    /**
+     * Checks whether requests are spaced evenly at the configured rate, starting at the start of the schedule.
+     */
+    @Test
+    public void intendedStartTest() {
+        ArrivalSchedule schedule = new ArrivalSchedule(1_000, 4);
+
+        assertEquals(1_000, schedule.intendedStart(0));
+        assertEquals(1_000 + TimeUnit.MILLISECONDS.toNanos(250), schedule.intendedStart(1));
+        assertEquals(1_000 + TimeUnit.SECONDS.toNanos(10), schedule.intendedStart(40));
+    }
+
+    /**
+     * Checks whether the number of requests of a run matches the rate and duration.
+     */
+    @Test
+    public void requestsWithinTest() {
+        ArrivalSchedule schedule = new ArrivalSchedule(0, 250);
+
+        assertEquals(2_500, schedule.requestsWithin(TimeUnit.SECONDS.toNanos(10)));
+        assertEquals(1, schedule.requestsWithin(1));
+    }
+
+    /**
+     * Checks whether a request which is already late is not delayed further, so that the delay is charged to its
+     * latency instead of shifting the rest of the schedule.
+     */
+    @Test
+    public void lateRequestStartsImmediatelyTest() {
+        long start = System.nanoTime() - TimeUnit.SECONDS.toNanos(10);
+        ArrivalSchedule schedule = new ArrivalSchedule(start, 1);
+
+        long before = System.nanoTime();
+        long intended = schedule.awaitStart(5);
+
+        assertEquals(start + TimeUnit.SECONDS.toNanos(5), intended);
+        assertTrue(System.nanoTime() - before < TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidRateTest() {
+        new ArrivalSchedule(0, 0);
+    }
+}
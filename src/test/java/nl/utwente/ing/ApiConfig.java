@@ -0,0 +1,116 @@
+package nl.utwente.ing;
+
+import io.restassured.RestAssured;
+import io.restassured.builder.RequestSpecBuilder;
+import io.restassured.specification.RequestSpecification;
+import nl.utwente.ing.server.ReferenceServer;
+import org.apache.http.client.HttpClient;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import static io.restassured.config.HttpClientConfig.httpClientConfig;
+import static io.restassured.config.JsonConfig.jsonConfig;
+import static io.restassured.path.json.config.JsonPathConfig.NumberReturnType.BIG_DECIMAL;
+
+/**
+ * Central configuration of the HTTP client used by all tests.
+ *
+ * The server under test is selected with the {@code api.baseUri} and {@code api.port} system properties. If neither
+ * is set, the tests run against a {@link ReferenceServer} started in this JVM on a random port. All requests share a
+ * single HTTP client with a bounded pool of keep-alive connections, of at most {@code http.maxConnections}
+ * connections (default 64). The latency of every request is recorded by the {@link LatencyFilter}. Decimal numbers in
+ * responses are parsed as {@link java.math.BigDecimal}, so amounts can be compared exactly with {@link Util#cents}.
+ */
+final class ApiConfig {
+
+    static final String SESSION_HEADER = "X-session-ID";
+
+    private static final int MAX_CONNECTIONS = Integer.getInteger("http.maxConnections", 64);
+
+    private static boolean configured;
+    private static ReferenceServer referenceServer;
+    private static int configuredPort;
+
+    private ApiConfig() {
+    }
+
+    /**
+     * Applies the configuration to RestAssured. Calling this method more than once has no effect, so every test
+     * class can call it regardless of whether it is run on its own or as part of the {@link TestSuite}.
+     */
+    static synchronized void configure() {
+        if (configured) {
+            return;
+        }
+
+        String baseUri = System.getProperty("api.baseUri");
+        if (baseUri != null) {
+            RestAssured.baseURI = baseUri;
+        }
+
+        Integer port = Integer.getInteger("api.port");
+        if (port != null) {
+            RestAssured.port = port;
+        }
+
+        if (baseUri == null && port == null) {
+            try {
+                referenceServer = ReferenceServer.start();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not start the reference server", e);
+            }
+            RestAssured.port = referenceServer.getPort();
+        }
+
+        RestAssured.config = RestAssured.config().httpClient(httpClientConfig()
+                .reuseHttpClientInstance()
+                .httpClientFactory(ApiConfig::createHttpClient))
+                .jsonConfig(jsonConfig().numberReturnType(BIG_DECIMAL));
+        RestAssured.filters(new LatencyFilter());
+
+        configuredPort = RestAssured.port;
+        configured = true;
+    }
+
+    /**
+     * @return whether the tests run against the {@link ReferenceServer} started by {@link #configure()}
+     */
+    static synchronized boolean usesReferenceServer() {
+        return referenceServer != null;
+    }
+
+    /**
+     * @return whether the tests currently run against the server selected by {@link #configure()}, rather than
+     * against a differently configured server swapped in by a suite such as {@link EvictedSessionTests}
+     */
+    static synchronized boolean targetsConfiguredServer() {
+        return configured && RestAssured.port == configuredPort;
+    }
+
+    /**
+     * Creates a request specification which authenticates requests with the given session.
+     *
+     * @param sessionId the session ID to send with every request
+     * @return a reusable request specification
+     */
+    static RequestSpecification session(String sessionId) {
+        configure();
+        return new RequestSpecBuilder()
+                .addHeader(SESSION_HEADER, sessionId)
+                .build();
+    }
+
+    /**
+     * RestAssured requires an {@link org.apache.http.impl.client.AbstractHttpClient}, hence the deprecated client
+     * and connection manager classes. They are not imported, as deprecated imports cannot be suppressed.
+     */
+    @SuppressWarnings("deprecation")
+    private static HttpClient createHttpClient() {
+        org.apache.http.impl.conn.PoolingClientConnectionManager connectionManager =
+                new org.apache.http.impl.conn.PoolingClientConnectionManager();
+        connectionManager.setMaxTotal(MAX_CONNECTIONS);
+        connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS);
+        return new org.apache.http.impl.client.DefaultHttpClient(connectionManager);
+    }
+}
@@ -25,7 +25,11 @@ package nl.utwente.ing;
 
 import io.restassured.http.ContentType;
 import io.restassured.path.json.JsonPath;
+import io.restassured.response.Response;
+import io.restassured.specification.RequestSpecification;
 import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -33,30 +37,42 @@ import java.net.URI;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Date;
 import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
 
 import static io.restassured.RestAssured.given;
-import static io.restassured.module.jsv.JsonSchemaValidator.matchesJsonSchema;
+import static nl.utwente.ing.SchemaRegistry.matchesJsonSchema;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
 
+@ParallelSuite.IsolatedMethods
 public class BalanceHistoryTests {
 
     private static final URI BALANCE_HISTORY_SCHEMA = Paths.get
             ("src/test/java/nl/utwente/ing/schemas/balance-history.json").toAbsolutePath().toUri();
 
 
-    private static String sessionId;
+    private String sessionId;
 
     private List<Integer> transactions = new ArrayList<>();
 
     /**
-     * Makes sure all tests share the same session ID by setting sessionId if it does not exist yet.
+     * Configures the HTTP client used by the tests in this class.
      */
     @BeforeClass
-    public static void getTestSession() {
-        if (sessionId == null) {
-            sessionId = Util.getSessionID();
-        }
+    public static void configureClient() {
+        ApiConfig.configure();
+    }
+
+    /**
+     * Makes sure each test is run with a new session ID, so the balance of one test does not leak into another.
+     */
+    @Before
+    public void getTestSession() {
+        sessionId = Util.getSessionID();
     }
 
     /**
@@ -77,7 +93,7 @@ public class BalanceHistoryTests {
     @Test
     public void validSessionBalanceHistoryTest() {
         given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .get("/api/v1/balance/history")
                 .then()
                 .assertThat()
@@ -109,7 +125,7 @@ public class BalanceHistoryTests {
     @Test
     public void validSessionInvalidParameterBalanceHistoryTest() {
         given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .queryParam("interval", "wrong")
                 .get("/api/v1/balance/history")
                 .then()
@@ -117,6 +133,65 @@ public class BalanceHistoryTests {
                 .statusCode(405);
     }
 
+    /**
+     * Performs conditional GET requests on the balanceHistory endpoint.
+     *
+     * This test uses a valid session to check whether the ETag of the balance history is accepted in If-None-Match
+     * with 304 Not Modified while the transactions are unchanged, whether it depends on the parameters, and whether it
+     * changes when a transaction is added. Entity tags are an extension of the reference server, so it is skipped
+     * against other servers.
+     */
+    @Test
+    public void validSessionConditionalBalanceHistoryTest() {
+        Assume.assumeTrue("Entity tags are only supported by the reference server", ApiConfig.usesReferenceServer());
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.HOUR, -2);
+        insertTransaction(sessionId, "200.00", Util.formatDate(calendar.getTime()), "deposit");
+
+        Response response = getBalanceHistory("month", null);
+        response.then()
+                .assertThat()
+                .statusCode(200)
+                .body(matchesJsonSchema(BALANCE_HISTORY_SCHEMA));
+        String tag = response.getHeader("ETag");
+        assertNotNull(tag);
+
+        response = getBalanceHistory("month", tag);
+        response.then()
+                .assertThat()
+                .statusCode(304)
+                .header("ETag", tag);
+        assertEquals("", response.asString());
+        getBalanceHistory("week", tag)
+                .then()
+                .assertThat()
+                .statusCode(200);
+
+        insertTransaction(sessionId, "50.00", Util.formatDate(calendar.getTime()), "withdrawal");
+        response = getBalanceHistory("month", tag);
+        response.then()
+                .assertThat()
+                .statusCode(200)
+                .body(matchesJsonSchema(BALANCE_HISTORY_SCHEMA));
+        assertNotEquals(tag, response.getHeader("ETag"));
+        assertEquals(150_00, Util.cents(response.jsonPath(), "[0].close"));
+    }
+
+    /**
+     * @param ifNoneMatch the entity tag to send in If-None-Match, or null to send none
+     * @return the balance history of a single interval
+     */
+    private Response getBalanceHistory(String interval, String ifNoneMatch) {
+        RequestSpecification request = given()
+                .spec(ApiConfig.session(sessionId))
+                .queryParam("interval", interval)
+                .queryParam("intervals", 1);
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        return request.get("/api/v1/balance/history");
+    }
+
     /**
      * Performs a GET request on the balanceHistory endpoint.
      *
@@ -127,18 +202,18 @@ public class BalanceHistoryTests {
     public void validSessionValidTransactionsBalanceHistoryTest() {
         Calendar calendar = Calendar.getInstance();
         calendar.add(Calendar.MONTH, -3);
-        insertTransaction(sessionId, "200.00", Util.DATE_FORMAT.format(calendar.getTime()), "deposit");
+        insertTransaction(sessionId, "200.00", Util.formatDate(calendar.getTime()), "deposit");
 
         calendar = Calendar.getInstance();
         calendar.add(Calendar.HOUR, -2);
-        insertTransaction(sessionId, "500.00", Util.DATE_FORMAT.format(calendar.getTime()), "deposit");
+        insertTransaction(sessionId, "500.00", Util.formatDate(calendar.getTime()), "deposit");
 
         calendar = Calendar.getInstance();
         calendar.add(Calendar.HOUR, -2);
-        insertTransaction(sessionId, "100.00", Util.DATE_FORMAT.format(calendar.getTime()), "withdrawal");
+        insertTransaction(sessionId, "100.00", Util.formatDate(calendar.getTime()), "withdrawal");
 
         JsonPath response = given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .queryParam("intervals", 1)
                 .get("/api/v1/balance/history")
                 .then()
@@ -150,11 +225,11 @@ public class BalanceHistoryTests {
                 .getBody()
                 .jsonPath();
 
-        assertEquals( 200.00, response.getDouble("[0].open"), 0.01);
-        assertEquals(600.00, response.getDouble("[0].close"), 0.01);
-        assertEquals(700.00, response.getDouble("[0].high"), 0.01);
-        assertEquals(200.00, response.getDouble("[0].low"), 0.01);
-        assertEquals(600.00, response.getDouble("[0].volume"), 0.01);
+        assertEquals(200_00, Util.cents(response, "[0].open"));
+        assertEquals(600_00, Util.cents(response, "[0].close"));
+        assertEquals(700_00, Util.cents(response, "[0].high"));
+        assertEquals(200_00, Util.cents(response, "[0].low"));
+        assertEquals(600_00, Util.cents(response, "[0].volume"));
     }
 
     /**
@@ -167,23 +242,23 @@ public class BalanceHistoryTests {
     public void validSessionValidTransactionsValidIntervalBalanceHistoryTest() {
         Calendar calendar = Calendar.getInstance();
         calendar.add(Calendar.MONTH, -1);
-        insertTransaction(sessionId, "400.00", Util.DATE_FORMAT.format(calendar.getTime()), "deposit");
+        insertTransaction(sessionId, "400.00", Util.formatDate(calendar.getTime()), "deposit");
 
         calendar = Calendar.getInstance();
         calendar.add(Calendar.MONTH, -1);
-        insertTransaction(sessionId, "100.00", Util.DATE_FORMAT.format(calendar.getTime()), "withdrawal");
+        insertTransaction(sessionId, "100.00", Util.formatDate(calendar.getTime()), "withdrawal");
 
 
         calendar = Calendar.getInstance();
         calendar.add(Calendar.HOUR, -2);
-        insertTransaction(sessionId, "200.00", Util.DATE_FORMAT.format(calendar.getTime()), "deposit");
+        insertTransaction(sessionId, "200.00", Util.formatDate(calendar.getTime()), "deposit");
 
         calendar = Calendar.getInstance();
         calendar.add(Calendar.HOUR, -2);
-        insertTransaction(sessionId, "50.00", Util.DATE_FORMAT.format(calendar.getTime()), "withdrawal");
+        insertTransaction(sessionId, "50.00", Util.formatDate(calendar.getTime()), "withdrawal");
 
         JsonPath response = given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .queryParam("interval", "week")
                 .queryParam("intervals", 1)
                 .get("/api/v1/balance/history")
@@ -196,11 +271,11 @@ public class BalanceHistoryTests {
                 .getBody()
                 .jsonPath();
 
-        assertEquals( 300.00, response.getDouble("[0].open"), 0.01);
-        assertEquals(450.00, response.getDouble("[0].close"), 0.01);
-        assertEquals(500.00, response.getDouble("[0].high"), 0.01);
-        assertEquals(300.00, response.getDouble("[0].low"), 0.01);
-        assertEquals(250.00, response.getDouble("[0].volume"), 0.01);
+        assertEquals(300_00, Util.cents(response, "[0].open"));
+        assertEquals(450_00, Util.cents(response, "[0].close"));
+        assertEquals(500_00, Util.cents(response, "[0].high"));
+        assertEquals(300_00, Util.cents(response, "[0].low"));
+        assertEquals(250_00, Util.cents(response, "[0].volume"));
     }
 
     /**
@@ -211,56 +286,214 @@ public class BalanceHistoryTests {
      */
     @Test
     public void validSessionValidTransactionsValidIntervalMultipleIntervalsBalanceHistoryTest() {
+        List<TransactionSpec> specs = new ArrayList<>();
+
         Calendar calendar = Calendar.getInstance();
         calendar.add(Calendar.YEAR, -10);
-        insertTransaction(sessionId, "400.00", Util.DATE_FORMAT.format(calendar.getTime()), "deposit");
+        addTransactionPair(specs, calendar, "400.00", "100.00");
 
-        calendar = Calendar.getInstance();
-        calendar.add(Calendar.YEAR, -10);
-        insertTransaction(sessionId, "100.00", Util.DATE_FORMAT.format(calendar.getTime()), "withdrawal");
+        for (int years = 4; years >= 2; years--) {
+            calendar = Calendar.getInstance();
+            calendar.add(Calendar.YEAR, -years);
+            calendar.add(Calendar.HOUR, -2);
+            addTransactionPair(specs, calendar, "200.00", "50.00");
+        }
 
         calendar = Calendar.getInstance();
-        calendar.add(Calendar.YEAR, -4);
         calendar.add(Calendar.HOUR, -2);
-        insertTransaction(sessionId, "200.00", Util.DATE_FORMAT.format(calendar.getTime()), "deposit");
+        addTransactionPair(specs, calendar, "200.00", "50.00");
 
-        calendar = Calendar.getInstance();
-        calendar.add(Calendar.YEAR, -4);
-        calendar.add(Calendar.HOUR, -2);
-        insertTransaction(sessionId, "50.00", Util.DATE_FORMAT.format(calendar.getTime()), "withdrawal");
+        transactions.addAll(Util.insertTransactions(sessionId, specs));
 
-        calendar = Calendar.getInstance();
-        calendar.add(Calendar.YEAR, -3);
-        calendar.add(Calendar.HOUR, -2);
-        insertTransaction(sessionId, "200.00", Util.DATE_FORMAT.format(calendar.getTime()), "deposit");
+        JsonPath response = given()
+                .spec(ApiConfig.session(sessionId))
+                .queryParam("interval", "year")
+                .queryParam("intervals", 5)
+                .get("/api/v1/balance/history")
+                .then()
+                .assertThat()
+                .statusCode(200)
+                .body(matchesJsonSchema(BALANCE_HISTORY_SCHEMA))
+                .extract()
+                .response()
+                .getBody()
+                .jsonPath();
 
-        calendar = Calendar.getInstance();
-        calendar.add(Calendar.YEAR, -3);
-        calendar.add(Calendar.HOUR, -2);
-        insertTransaction(sessionId, "50.00", Util.DATE_FORMAT.format(calendar.getTime()), "withdrawal");
+        assertEquals(300_00, Util.cents(response, "[0].open"));
+        assertEquals(450_00, Util.cents(response, "[0].close"));
+        assertEquals(500_00, Util.cents(response, "[0].high"));
+        assertEquals(300_00, Util.cents(response, "[0].low"));
+        assertEquals(250_00, Util.cents(response, "[0].volume"));
+
+        assertEquals(450_00, Util.cents(response, "[1].open"));
+        assertEquals(600_00, Util.cents(response, "[1].close"));
+        assertEquals(650_00, Util.cents(response, "[1].high"));
+        assertEquals(450_00, Util.cents(response, "[1].low"));
+        assertEquals(250_00, Util.cents(response, "[1].volume"));
+
+        assertEquals(600_00, Util.cents(response, "[2].open"));
+        assertEquals(750_00, Util.cents(response, "[2].close"));
+        assertEquals(800_00, Util.cents(response, "[2].high"));
+        assertEquals(600_00, Util.cents(response, "[2].low"));
+        assertEquals(250_00, Util.cents(response, "[2].volume"));
+
+        assertEquals(750_00, Util.cents(response, "[4].open"));
+        assertEquals(900_00, Util.cents(response, "[4].close"));
+        assertEquals(950_00, Util.cents(response, "[4].high"));
+        assertEquals(750_00, Util.cents(response, "[4].low"));
+        assertEquals(250_00, Util.cents(response, "[4].volume"));
+    }
 
-        calendar = Calendar.getInstance();
-        calendar.add(Calendar.YEAR, -2);
+    /**
+     * Performs GET requests on the balanceHistory endpoint in between POST, PUT and DELETE requests on the
+     * transactions endpoint.
+     *
+     * This test creates the transactions of validSessionValidTransactionsValidIntervalBalanceHistoryTest newest first,
+     * and updates and deletes an additional transaction, to check whether the balance history reflects every write.
+     */
+    @Test
+    public void validSessionInterleavedWritesValidIntervalBalanceHistoryTest() {
+        Calendar calendar = Calendar.getInstance();
         calendar.add(Calendar.HOUR, -2);
-        insertTransaction(sessionId, "200.00", Util.DATE_FORMAT.format(calendar.getTime()), "deposit");
-
+        String recent = Util.formatDate(calendar.getTime());
+        calendar.add(Calendar.SECOND, 1);
+        String recentWithdrawal = Util.formatDate(calendar.getTime());
         calendar = Calendar.getInstance();
-        calendar.add(Calendar.YEAR, -2);
-        calendar.add(Calendar.HOUR, -2);
-        insertTransaction(sessionId, "50.00", Util.DATE_FORMAT.format(calendar.getTime()), "withdrawal");
+        calendar.add(Calendar.MONTH, -1);
+        String monthAgo = Util.formatDate(calendar.getTime());
+        calendar.add(Calendar.SECOND, 1);
+        String monthAgoWithdrawal = Util.formatDate(calendar.getTime());
 
-        calendar = Calendar.getInstance();
-        calendar.add(Calendar.HOUR, -2);
-        insertTransaction(sessionId, "200.00", Util.DATE_FORMAT.format(calendar.getTime()), "deposit");
+        insertTransaction(sessionId, "200.00", recent, "deposit");
+        assertCandle(getBalanceHistory("week", 1), 0, 0, 200_00, 200_00, 0, 200_00);
 
-        calendar = Calendar.getInstance();
+        insertTransaction(sessionId, "50.00", recentWithdrawal, "withdrawal");
+        assertCandle(getBalanceHistory("week", 1), 0, 0, 150_00, 200_00, 0, 250_00);
+
+        insertTransaction(sessionId, "400.00", monthAgo, "deposit");
+        assertCandle(getBalanceHistory("week", 1), 0, 400_00, 550_00, 600_00, 400_00, 250_00);
+
+        int extraId = Util.insertTransaction(sessionId, "1000.00", recent, "withdrawal", null, null);
+        assertCandle(getBalanceHistory("week", 1), 0, 400_00, -450_00, 600_00, -450_00, 1250_00);
+
+        updateTransaction(extraId, new TransactionSpec("1000.00", monthAgoWithdrawal, "deposit"));
+        assertCandle(getBalanceHistory("week", 1), 0, 1400_00, 1550_00, 1600_00, 1400_00, 250_00);
+
+        Util.deleteTestTransaction(extraId, sessionId);
+        insertTransaction(sessionId, "100.00", monthAgoWithdrawal, "withdrawal");
+        assertCandle(getBalanceHistory("week", 1), 0, 300_00, 450_00, 500_00, 300_00, 250_00);
+    }
+
+    /**
+     * Performs GET requests on the balanceHistory endpoint in between POST and PUT requests on the transactions
+     * endpoint.
+     *
+     * This test creates the transactions of the test with multiple intervals above newest first, so that every insert
+     * is backdated, to check whether earlier inserts correct the open of later candles.
+     */
+    @Test
+    public void validSessionInterleavedBackdatedWritesMultipleIntervalsBalanceHistoryTest() {
+        List<List<TransactionSpec>> pairs = new ArrayList<>();
+        Calendar calendar = Calendar.getInstance();
         calendar.add(Calendar.HOUR, -2);
-        insertTransaction(sessionId, "50.00", Util.DATE_FORMAT.format(calendar.getTime()), "withdrawal");
+        pairs.add(transactionPair(calendar, "200.00", "50.00"));
+        for (int years = 2; years <= 4; years++) {
+            calendar = Calendar.getInstance();
+            calendar.add(Calendar.YEAR, -years);
+            calendar.add(Calendar.HOUR, -2);
+            pairs.add(transactionPair(calendar, "200.00", "50.00"));
+        }
+        calendar = Calendar.getInstance();
+        calendar.add(Calendar.YEAR, -10);
+        List<TransactionSpec> oldest = transactionPair(calendar, "400.00", "100.00");
+
+        for (int i = 0; i < pairs.size(); i++) {
+            transactions.addAll(Util.insertTransactions(sessionId, pairs.get(i)));
+            // The i + 1 most recent years each add 150.
+            JsonPath response = getBalanceHistory("year", 5);
+            assertCandle(response, 4, 150_00 * i, 150_00 * (i + 1), 150_00 * i + 200_00, 150_00 * i, 250_00);
+        }
+
+        List<Integer> oldestIds = Util.insertTransactions(sessionId, oldest);
+        transactions.addAll(oldestIds);
+        updateTransaction(oldestIds.get(0), new TransactionSpec("1400.00", oldest.get(0).date, "deposit"));
+        assertCandle(getBalanceHistory("year", 5), 4, 1750_00, 1900_00, 1950_00, 1750_00, 250_00);
+        updateTransaction(oldestIds.get(0), oldest.get(0));
+
+        JsonPath response = getBalanceHistory("year", 5);
+        assertCandle(response, 0, 300_00, 450_00, 500_00, 300_00, 250_00);
+        assertCandle(response, 1, 450_00, 600_00, 650_00, 450_00, 250_00);
+        assertCandle(response, 2, 600_00, 750_00, 800_00, 600_00, 250_00);
+        assertCandle(response, 4, 750_00, 900_00, 950_00, 750_00, 250_00);
+    }
+
+    /**
+     * Performs GET requests on the balanceHistory endpoint.
+     *
+     * This test uses a valid session with a large number of transactions to check whether the endpoint stays within
+     * its latency budget.
+     */
+    @Test
+    public void validSessionManyTransactionsBalanceHistoryLatencyBudgetTest() {
+        LatencyBudget budget = LatencyBudget.of("GET /api/v1/balance/history");
+
+        // Spread the transactions evenly over the last two years. They are not added to the transactions list, as
+        // the session is not reused by other tests.
+        long now = System.currentTimeMillis();
+        long step = TimeUnit.DAYS.toMillis(2 * 365) / budget.transactions;
+        List<TransactionSpec> specs = new ArrayList<>(budget.transactions);
+        for (int i = 0; i < budget.transactions; i++) {
+            String date = Util.formatDate(new Date(now - (budget.transactions - i) * step));
+            specs.add(i % 2 == 0 ? new TransactionSpec("10.00", date, "deposit")
+                    : new TransactionSpec("5.00", date, "withdrawal"));
+        }
+        Util.insertTransactions(sessionId, specs);
+
+        budget.assertMet(() -> given()
+                .spec(ApiConfig.session(sessionId))
+                .get("/api/v1/balance/history")
+                .then()
+                .assertThat()
+                .statusCode(200));
+    }
+
+    /**
+     * Performs a GET request on the balanceHistory endpoint.
+     *
+     * This test uses a valid session with a million transactions, a thousand per day over the last thousand days, to
+     * check whether a thousand daily candles are computed correctly. It only runs with {@code -Dtests.scale=true}, as
+     * seeding the transactions takes minutes.
+     */
+    @Test
+    public void validSessionMillionTransactionsThousandIntervalsBalanceHistoryTest() {
+        Assume.assumeTrue("Scale tests are disabled", Boolean.getBoolean("tests.scale"));
+
+        int days = 1000;
+        int transactionsPerDay = 1000;
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        calendar.add(Calendar.DAY_OF_MONTH, 1 - days);
+        long firstDay = calendar.getTimeInMillis();
+        long step = TimeUnit.DAYS.toMillis(1) / transactionsPerDay;
+
+        // Every day alternates deposits of 10 and withdrawals of 5, adding 2500 to the balance.
+        List<TransactionSpec> specs = new ArrayList<>(days * transactionsPerDay);
+        for (int day = 0; day < days; day++) {
+            for (int i = 0; i < transactionsPerDay; i++) {
+                String date = Util.formatDate(new Date(firstDay + TimeUnit.DAYS.toMillis(day) + i * step));
+                specs.add(i % 2 == 0 ? new TransactionSpec("10.00", date, "deposit")
+                        : new TransactionSpec("5.00", date, "withdrawal"));
+            }
+        }
+        Util.insertTransactions(sessionId, specs);
 
         JsonPath response = given()
-                .header("X-session-ID", sessionId)
-                .queryParam("interval", "year")
-                .queryParam("intervals", 5)
+                .spec(ApiConfig.session(sessionId))
+                .queryParam("interval", "day")
+                .queryParam("intervals", days)
                 .get("/api/v1/balance/history")
                 .then()
                 .assertThat()
@@ -271,34 +504,74 @@ public class BalanceHistoryTests {
                 .getBody()
                 .jsonPath();
 
-        assertEquals( 300.00, response.getDouble("[0].open"), 0.01);
-        assertEquals(450.00, response.getDouble("[0].close"), 0.01);
-        assertEquals(500.00, response.getDouble("[0].high"), 0.01);
-        assertEquals(300.00, response.getDouble("[0].low"), 0.01);
-        assertEquals(250.00, response.getDouble("[0].volume"), 0.01);
-
-        assertEquals( 450.00, response.getDouble("[1].open"), 0.01);
-        assertEquals(600.00, response.getDouble("[1].close"), 0.01);
-        assertEquals(650.00, response.getDouble("[1].high"), 0.01);
-        assertEquals(450.00, response.getDouble("[1].low"), 0.01);
-        assertEquals(250.00, response.getDouble("[1].volume"), 0.01);
-
-        assertEquals( 600.00, response.getDouble("[2].open"), 0.01);
-        assertEquals(750.00, response.getDouble("[2].close"), 0.01);
-        assertEquals(800.00, response.getDouble("[2].high"), 0.01);
-        assertEquals(600.00, response.getDouble("[2].low"), 0.01);
-        assertEquals(250.00, response.getDouble("[2].volume"), 0.01);
-
-        assertEquals( 750.00, response.getDouble("[4].open"), 0.01);
-        assertEquals(900.00, response.getDouble("[4].close"), 0.01);
-        assertEquals(950.00, response.getDouble("[4].high"), 0.01);
-        assertEquals(750.00, response.getDouble("[4].low"), 0.01);
-        assertEquals(250.00, response.getDouble("[4].volume"), 0.01);
+        assertEquals(days, response.getList("$").size());
+        for (int day : new int[]{0, 1, days / 2, days - 1}) {
+            long open = 2500_00L * day;
+            assertEquals(firstDay / 1000 + TimeUnit.DAYS.toSeconds(day),
+                    response.getLong(String.format("[%d].timestamp", day)));
+            assertEquals(open, Util.cents(response, String.format("[%d].open", day)));
+            assertEquals(open + 2500_00, Util.cents(response, String.format("[%d].close", day)));
+            assertEquals(open + 2505_00, Util.cents(response, String.format("[%d].high", day)));
+            assertEquals(open, Util.cents(response, String.format("[%d].low", day)));
+            assertEquals(7500_00, Util.cents(response, String.format("[%d].volume", day)));
+        }
+    }
+
+    private JsonPath getBalanceHistory(String interval, int intervals) {
+        return given()
+                .spec(ApiConfig.session(sessionId))
+                .queryParam("interval", interval)
+                .queryParam("intervals", intervals)
+                .get("/api/v1/balance/history")
+                .then()
+                .assertThat()
+                .statusCode(200)
+                .body(matchesJsonSchema(BALANCE_HISTORY_SCHEMA))
+                .extract()
+                .response()
+                .getBody()
+                .jsonPath();
+    }
+
+    private static void assertCandle(JsonPath response, int index, long open, long close, long high, long low,
+                                     long volume) {
+        assertEquals(open, Util.cents(response, String.format("[%d].open", index)));
+        assertEquals(close, Util.cents(response, String.format("[%d].close", index)));
+        assertEquals(high, Util.cents(response, String.format("[%d].high", index)));
+        assertEquals(low, Util.cents(response, String.format("[%d].low", index)));
+        assertEquals(volume, Util.cents(response, String.format("[%d].volume", index)));
+    }
+
+    private void updateTransaction(int transactionId, TransactionSpec transaction) {
+        given()
+                .spec(ApiConfig.session(sessionId))
+                .body(Util.transactionJson(transaction))
+                .put(String.format("api/v1/transactions/%d", transactionId))
+                .then()
+                .assertThat()
+                .statusCode(200);
+    }
+
+    private static List<TransactionSpec> transactionPair(Calendar calendar, String deposit, String withdrawal) {
+        List<TransactionSpec> specs = new ArrayList<>();
+        addTransactionPair(specs, calendar, deposit, withdrawal);
+        return specs;
     }
 
     private void insertTransaction(String sessionId, String amount, String date, String type) {
         transactions.add(Util.insertTransaction(sessionId, amount, date, type, null, null));
     }
+
+    /**
+     * Adds a deposit followed by a withdrawal one second later. The withdrawal is dated explicitly after the deposit,
+     * as the seeder does not guarantee the order in which transactions with the same date are stored.
+     */
+    private static void addTransactionPair(List<TransactionSpec> specs, Calendar calendar, String deposit,
+                                    String withdrawal) {
+        specs.add(new TransactionSpec(deposit, Util.formatDate(calendar.getTime()), "deposit"));
+        calendar.add(Calendar.SECOND, 1);
+        specs.add(new TransactionSpec(withdrawal, Util.formatDate(calendar.getTime()), "withdrawal"));
+    }
 }
 
 
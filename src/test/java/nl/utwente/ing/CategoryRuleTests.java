@@ -25,14 +25,20 @@ package nl.utwente.ing;
 
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParser;
+import io.restassured.path.json.JsonPath;
 import org.junit.*;
 
 import java.net.URI;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
 
 import static io.restassured.RestAssured.given;
-import static io.restassured.module.jsv.JsonSchemaValidator.matchesJsonSchema;
+import static nl.utwente.ing.SchemaRegistry.matchesJsonSchema;
+import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class CategoryRuleTests {
 
@@ -44,6 +50,13 @@ public class CategoryRuleTests {
     private static final String TEST_CATEGORY_NAME = "TEST_CATEGORY";
     private static final String TEST_CATEGORY2_NAME = "TEST_CATEGORY2";
 
+    /**
+     * The number of transactions of a history large enough for the reference server to apply a rule on it in the
+     * background.
+     */
+    private static final int LARGE_HISTORY_SIZE = 35_000;
+    private static final long HISTORY_JOB_TIMEOUT_MILLIS = 60_000;
+
     private static String sessionId;
     private static Integer categoryId;
     private static Integer category2Id;
@@ -57,6 +70,8 @@ public class CategoryRuleTests {
      */
     @BeforeClass
     public static void setTestData() {
+        ApiConfig.configure();
+
         if (sessionId == null) {
             sessionId = Util.getSessionID();
         }
@@ -82,14 +97,17 @@ public class CategoryRuleTests {
     public static void deleteTestData() {
         if (categoryRuleId != null) {
             Util.deleteTestCategoryRule(categoryRuleId, sessionId);
+            categoryRuleId = null;
         }
 
         if (transactionId != null) {
             Util.deleteTestTransaction(transactionId, sessionId);
+            transactionId = null;
         }
 
         if (categoryId != null) {
             Util.deleteTestCategory(categoryId, sessionId);
+            categoryId = null;
         }
 
     }
@@ -109,7 +127,7 @@ public class CategoryRuleTests {
         validSessionValidCategoryRulesCreateTest();
 
         given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .get("/api/v1/categoryRules")
                 .then()
                 .assertThat()
@@ -152,7 +170,7 @@ public class CategoryRuleTests {
         JsonElement original = parser.parse(validCategoryRule);
 
         JsonElement response = parser.parse(given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .get(String.format("/api/v1/categoryRules/%d", categoryRuleId))
                 .then()
                 .assertThat()
@@ -192,7 +210,7 @@ public class CategoryRuleTests {
         validSessionValidCategoryRulesIdDeleteTest();
 
         given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .get(String.format("/api/v1/categoryRules/%d", categoryRuleId))
                 .then()
                 .assertThat()
@@ -220,7 +238,7 @@ public class CategoryRuleTests {
                 "}";
 
         categoryRuleId = given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .body(validCategoryRule)
                 .post("/api/v1/categoryRules")
                 .then()
@@ -246,7 +264,7 @@ public class CategoryRuleTests {
                 "  \"applyOnHistory\": true\n" +
                 "}";
         given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .body(invalidCategoryRule)
                 .post("/api/v1/categoryRules")
                 .then()
@@ -300,7 +318,7 @@ public class CategoryRuleTests {
 
         JsonElement original = parser.parse(validCategoryRule2);
         JsonElement response = parser.parse(given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .body(validCategoryRule2)
                 .put(String.format("/api/v1/categoryRules/%d", categoryRuleId))
                 .then()
@@ -334,7 +352,7 @@ public class CategoryRuleTests {
                 "}";
 
         given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .body(invalidCategoryRule)
                 .put(String.format("/api/v1/categoryRules/%d", categoryRuleId))
                 .then()
@@ -383,7 +401,7 @@ public class CategoryRuleTests {
                 "}";
 
         given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .body(validCategoryRule)
                 .put(String.format("/api/v1/categoryRules/%d", categoryRuleId))
                 .then()
@@ -405,11 +423,307 @@ public class CategoryRuleTests {
         validSessionValidCategoryRulesCreateTest();
 
         given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .delete(String.format("/api/v1/categoryRules/%d", categoryRuleId))
                 .then()
                 .assertThat()
                 .statusCode(204);
     }
 
+    /*
+     *  Tests related to applying categoryRules on large histories. The status endpoint is an extension of the
+     *  reference server, so these tests are skipped against other servers.
+     */
+    /**
+     * Performs a POST request on the CategoryRules API endpoint for a session with a large history.
+     *
+     * This test checks whether the rule is applied on every existing transaction, and whether the status endpoint
+     * reports the progress until the whole history is processed.
+     */
+    @Test
+    public void validSessionLargeHistoryCategoryRulesCreateTest() {
+        Assume.assumeTrue("Only the reference server reports the status", ApiConfig.usesReferenceServer());
+        String largeSessionId = Util.getSessionID();
+        int largeCategoryId = Util.createTestCategory(TEST_CATEGORY_NAME, largeSessionId);
+
+        // One transaction per minute, as a history of this size would be spread over time.
+        List<TransactionSpec> specs = new ArrayList<>(LARGE_HISTORY_SIZE);
+        long start = System.currentTimeMillis() - LARGE_HISTORY_SIZE * 60_000L;
+        for (int i = 0; i < LARGE_HISTORY_SIZE; i++) {
+            String date = Util.formatDate(new Date(start + i * 60_000L));
+            specs.add(new TransactionSpec("1.00", date, i % 2 == 0 ? "deposit" : "withdrawal"));
+        }
+        List<Integer> transactions = Util.insertTransactions(largeSessionId, specs);
+
+        String categoryRule = "{\n" +
+                "  \"description\": \"test\",\n" +
+                "  \"iBAN\": \"\",\n" +
+                "  \"type\": \"deposit\",\n" +
+                "  \"category_id\": " + largeCategoryId + ",\n" +
+                "  \"applyOnHistory\": true\n" +
+                "}";
+        int ruleId = given()
+                .spec(ApiConfig.session(largeSessionId))
+                .body(categoryRule)
+                .post("/api/v1/categoryRules")
+                .then()
+                .assertThat()
+                .statusCode(201)
+                .extract()
+                .jsonPath()
+                .getInt("id");
+
+        int total = awaitHistoryJob(largeSessionId, ruleId);
+        assertTrue(total >= LARGE_HISTORY_SIZE);
+
+        for (int i : new int[] {0, 1, LARGE_HISTORY_SIZE / 2, LARGE_HISTORY_SIZE / 2 + 1, LARGE_HISTORY_SIZE - 2,
+                LARGE_HISTORY_SIZE - 1}) {
+            Integer category = given()
+                    .spec(ApiConfig.session(largeSessionId))
+                    .get(String.format("/api/v1/transactions/%d", transactions.get(i)))
+                    .then()
+                    .assertThat()
+                    .statusCode(200)
+                    .extract()
+                    .jsonPath()
+                    .get("category.id");
+            assertEquals(i % 2 == 0 ? Integer.valueOf(largeCategoryId) : null, category);
+        }
+
+        // The last deposit is the last transaction listed for the category.
+        int last = given()
+                .spec(ApiConfig.session(largeSessionId))
+                .queryParam("category", TEST_CATEGORY_NAME)
+                .queryParam("offset", LARGE_HISTORY_SIZE / 2 - 1)
+                .get("/api/v1/transactions")
+                .then()
+                .assertThat()
+                .statusCode(200)
+                .extract()
+                .jsonPath()
+                .getInt("[0].id");
+        assertEquals(transactions.get(LARGE_HISTORY_SIZE - 2).intValue(), last);
+    }
+
+    /**
+     * Performs a PATCH request on the category of transactions while a categoryRule is applied on a large history.
+     *
+     * This test checks whether a category assigned after the rule was created is kept, also when the rule reaches the
+     * transaction only afterwards.
+     */
+    @Test
+    public void validSessionLargeHistoryCategoryRulesConcurrentPatchTest() {
+        Assume.assumeTrue("Only the reference server reports the status", ApiConfig.usesReferenceServer());
+        String largeSessionId = Util.getSessionID();
+        int ruleCategoryId = Util.createTestCategory(TEST_CATEGORY_NAME, largeSessionId);
+        int patchedCategoryId = Util.createTestCategory(TEST_CATEGORY2_NAME, largeSessionId);
+
+        List<TransactionSpec> specs = new ArrayList<>(LARGE_HISTORY_SIZE);
+        long start = System.currentTimeMillis() - LARGE_HISTORY_SIZE * 60_000L;
+        for (int i = 0; i < LARGE_HISTORY_SIZE; i++) {
+            specs.add(new TransactionSpec("1.00", Util.formatDate(new Date(start + i * 60_000L)), "deposit"));
+        }
+        List<Integer> transactions = Util.insertTransactions(largeSessionId, specs);
+
+        String categoryRule = "{\n" +
+                "  \"description\": \"test\",\n" +
+                "  \"iBAN\": \"\",\n" +
+                "  \"type\": \"deposit\",\n" +
+                "  \"category_id\": " + ruleCategoryId + ",\n" +
+                "  \"applyOnHistory\": true\n" +
+                "}";
+        int ruleId = given()
+                .spec(ApiConfig.session(largeSessionId))
+                .body(categoryRule)
+                .post("/api/v1/categoryRules")
+                .then()
+                .assertThat()
+                .statusCode(201)
+                .extract()
+                .jsonPath()
+                .getInt("id");
+
+        // The last transactions are in the last chunk, which the rule reaches last.
+        List<Integer> patched = transactions.subList(LARGE_HISTORY_SIZE - 3, LARGE_HISTORY_SIZE);
+        for (int transaction : patched) {
+            given()
+                    .spec(ApiConfig.session(largeSessionId))
+                    .body("{\"category_id\": " + patchedCategoryId + "}")
+                    .patch(String.format("/api/v1/transactions/%d/category", transaction))
+                    .then()
+                    .assertThat()
+                    .statusCode(200);
+        }
+
+        awaitHistoryJob(largeSessionId, ruleId);
+
+        for (int i = LARGE_HISTORY_SIZE - 5; i < LARGE_HISTORY_SIZE; i++) {
+            Integer transaction = transactions.get(i);
+            Integer category = given()
+                    .spec(ApiConfig.session(largeSessionId))
+                    .get(String.format("/api/v1/transactions/%d", transaction))
+                    .then()
+                    .assertThat()
+                    .statusCode(200)
+                    .extract()
+                    .jsonPath()
+                    .get("category.id");
+            assertEquals(Integer.valueOf(patched.contains(transaction) ? patchedCategoryId : ruleCategoryId),
+                    category);
+        }
+    }
+
+    /**
+     * Performs a GET request on the status of a categoryRule applied on a small history.
+     *
+     * This test checks whether a small history is processed before the rule is returned.
+     */
+    @Test
+    public void validSessionSmallHistoryCategoryRulesStatusTest() {
+        Assume.assumeTrue("Only the reference server reports the status", ApiConfig.usesReferenceServer());
+        validSessionValidCategoryRulesCreateTest();
+
+        given()
+                .spec(ApiConfig.session(sessionId))
+                .get(String.format("/api/v1/categoryRules/%d/status", categoryRuleId))
+                .then()
+                .assertThat()
+                .statusCode(200)
+                .body("state", equalTo("completed"));
+    }
+
+    /**
+     * Performs a GET request on the status of a categoryRule which is not applied on the history.
+     *
+     * This test checks whether the status of such a rule is not found.
+     */
+    @Test
+    public void validSessionNoHistoryCategoryRulesStatusTest() {
+        Assume.assumeTrue("Only the reference server reports the status", ApiConfig.usesReferenceServer());
+        String categoryRule = "{\n" +
+                "  \"description\": \"University of Twente\",\n" +
+                "  \"iBAN\": \"\",\n" +
+                "  \"type\": \"\",\n" +
+                "  \"category_id\": " + categoryId + ",\n" +
+                "  \"applyOnHistory\": false\n" +
+                "}";
+        int ruleId = given()
+                .spec(ApiConfig.session(sessionId))
+                .body(categoryRule)
+                .post("/api/v1/categoryRules")
+                .then()
+                .assertThat()
+                .statusCode(201)
+                .extract()
+                .jsonPath()
+                .getInt("id");
+
+        given()
+                .spec(ApiConfig.session(sessionId))
+                .get(String.format("/api/v1/categoryRules/%d/status", ruleId))
+                .then()
+                .assertThat()
+                .statusCode(404);
+
+        Util.deleteTestCategoryRule(ruleId, sessionId);
+    }
+
+    /**
+     * Performs a POST request on the CategoryRules API endpoint with a regular expression as description.
+     *
+     * This test checks whether a rule matches the transactions of which any part of the description matches the
+     * regular expression, and whether a description which is not a valid regular expression is rejected.
+     */
+    @Test
+    public void validSessionRegexCategoryRulesCreateTest() {
+        Assume.assumeTrue("Only the reference server matches descriptions as regular expressions",
+                ApiConfig.usesReferenceServer());
+        String regexSessionId = Util.getSessionID();
+        int regexCategoryId = Util.createTestCategory(TEST_CATEGORY_NAME, regexSessionId);
+        String categoryRule = "{\n" +
+                "  \"description\": \"Merchant \\\\d+ B\\\\.?V\",\n" +
+                "  \"iBAN\": \"\",\n" +
+                "  \"type\": \"\",\n" +
+                "  \"category_id\": " + regexCategoryId + ",\n" +
+                "  \"applyOnHistory\": false\n" +
+                "}";
+        given()
+                .spec(ApiConfig.session(regexSessionId))
+                .body(categoryRule)
+                .post("/api/v1/categoryRules")
+                .then()
+                .assertThat()
+                .statusCode(201);
+
+        assertEquals(Integer.valueOf(regexCategoryId), categoryOfNewTransaction(regexSessionId, "Merchant 42 BV"));
+        assertEquals(Integer.valueOf(regexCategoryId),
+                categoryOfNewTransaction(regexSessionId, "Paid Merchant 7 B.V."));
+        assertEquals(null, categoryOfNewTransaction(regexSessionId, "Merchant X BV"));
+        assertEquals(null, categoryOfNewTransaction(regexSessionId, "merchant 42 BV"));
+
+        given()
+                .spec(ApiConfig.session(regexSessionId))
+                .body(categoryRule.replace("Merchant", "Merchant ("))
+                .post("/api/v1/categoryRules")
+                .then()
+                .assertThat()
+                .statusCode(405);
+    }
+
+    /**
+     * Polls the status of the application of a categoryRule on the history until it is completed, checking that the
+     * progress never decreases.
+     *
+     * @return the number of transactions processed
+     */
+    private static int awaitHistoryJob(String sessionId, int ruleId) {
+        long deadline = System.currentTimeMillis() + HISTORY_JOB_TIMEOUT_MILLIS;
+        int processed = 0;
+        while (true) {
+            JsonPath status = given()
+                    .spec(ApiConfig.session(sessionId))
+                    .get(String.format("/api/v1/categoryRules/%d/status", ruleId))
+                    .then()
+                    .assertThat()
+                    .statusCode(200)
+                    .extract()
+                    .jsonPath();
+            int total = status.getInt("total");
+            assertTrue(status.getInt("processed") >= processed);
+            processed = status.getInt("processed");
+            assertTrue(processed <= total);
+            if (status.getString("state").equals("completed")) {
+                assertEquals(total, processed);
+                return processed;
+            }
+            assertEquals("running", status.getString("state"));
+            assertTrue("The rule was not applied on the history in time", System.currentTimeMillis() < deadline);
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the rule", e);
+            }
+        }
+    }
+
+    /**
+     * Creates a transaction without a category with the given description.
+     *
+     * @return the ID of the category assigned to the transaction by the categoryRules, or null if it has none
+     */
+    private static Integer categoryOfNewTransaction(String sessionId, String description) {
+        String transaction = Util.transactionJson(new TransactionSpec("1.00", null, "withdrawal"))
+                .replace("\"description\": \"test\"", "\"description\": \"" + description + "\"");
+        return given()
+                .spec(ApiConfig.session(sessionId))
+                .body(transaction)
+                .post("/api/v1/transactions")
+                .then()
+                .assertThat()
+                .statusCode(201)
+                .extract()
+                .jsonPath()
+                .get("category.id");
+    }
 }
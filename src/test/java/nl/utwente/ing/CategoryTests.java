@@ -24,8 +24,12 @@
  */
 package nl.utwente.ing;
 
+import io.restassured.response.Response;
+import io.restassured.specification.RequestSpecification;
 import org.junit.After;
+import org.junit.Assume;
 import org.junit.Before;
+import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.nio.file.Path;
@@ -33,8 +37,10 @@ import java.nio.file.Paths;
 
 import static io.restassured.RestAssured.get;
 import static io.restassured.RestAssured.given;
-import static io.restassured.module.jsv.JsonSchemaValidator.matchesJsonSchema;
+import static nl.utwente.ing.SchemaRegistry.matchesJsonSchema;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
 
 public class CategoryTests {
 
@@ -48,6 +54,14 @@ public class CategoryTests {
 
     private static String sessionId;
 
+    /**
+     * Configures the HTTP client used by the tests in this class.
+     */
+    @BeforeClass
+    public static void configureClient() {
+        ApiConfig.configure();
+    }
+
     /**
      * Makes sure all tests share the same session ID by setting sessionId if it does not exist yet.
      */
@@ -72,7 +86,7 @@ public class CategoryTests {
 
         if (testCategoryId != null) {
             given()
-                    .header("X-session-ID", sessionId)
+                    .spec(ApiConfig.session(sessionId))
                     .delete(String.format("api/v1/categories/%d", testCategoryId));
         }
     }
@@ -90,7 +104,7 @@ public class CategoryTests {
     @Test
     public void validSessionCategoriesGetTest() {
         given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .get("api/v1/categories")
                 .then()
                 .assertThat()
@@ -111,6 +125,52 @@ public class CategoryTests {
                 .statusCode(401);
     }
 
+    /**
+     * Performs conditional GET requests on the categories endpoint.
+     *
+     * This test uses a valid session ID to test whether the ETag of the categories is accepted in If-None-Match with
+     * 304 Not Modified while the categories are unchanged, and whether it changes when a category is created. Entity
+     * tags are an extension of the reference server, so it is skipped against other servers.
+     */
+    @Test
+    public void validSessionCategoriesConditionalGetTest() {
+        Assume.assumeTrue("Entity tags are only supported by the reference server", ApiConfig.usesReferenceServer());
+        String tagSessionId = Util.getSessionID();
+
+        String tag = getCategoriesTag(tagSessionId, null, 200);
+        assertNotNull(tag);
+        assertEquals(tag, getCategoriesTag(tagSessionId, tag, 304));
+
+        Util.createTestCategory(TEST_CATEGORY_NAME, tagSessionId);
+        String changedTag = getCategoriesTag(tagSessionId, tag, 200);
+        assertNotEquals(tag, changedTag);
+        assertEquals(changedTag, getCategoriesTag(tagSessionId, changedTag, 304));
+    }
+
+    /**
+     * @param ifNoneMatch the entity tag to send in If-None-Match, or null to send none
+     * @param status the expected status code
+     * @return the ETag of the response
+     */
+    private static String getCategoriesTag(String sessionId, String ifNoneMatch, int status) {
+        RequestSpecification request = given().spec(ApiConfig.session(sessionId));
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        Response response = request.get("api/v1/categories");
+        response.then()
+                .assertThat()
+                .statusCode(status);
+        if (status == 200) {
+            response.then()
+                    .assertThat()
+                    .body(matchesJsonSchema(CATEGORY_LIST_SCHEMA_PATH.toAbsolutePath().toUri()));
+        } else {
+            assertEquals("", response.asString());
+        }
+        return response.getHeader("ETag");
+    }
+
     /*
      *  Tests related to POST requests on the /categories API endpoint.
      *  API Documentation: https://app.swaggerhub.com/apis/djhuistra/INGHonours/1.0.1#/categories/post_categories
@@ -125,7 +185,7 @@ public class CategoryTests {
     @Test
     public void categoriesPostTest() {
         testCategoryId = given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .body(String.format("{\"name\": \"%s\"}", TEST_CATEGORY_NAME))
                 .post("api/v1/categories")
                 .then()
@@ -164,7 +224,7 @@ public class CategoryTests {
     @Test
     public void invalidFormatCategoriesPostTest() {
         given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .body(String.format("{\"invalid\": \"%s\"}", TEST_CATEGORY_NAME))
                 .post("api/v1/categories")
                 .then()
@@ -189,7 +249,7 @@ public class CategoryTests {
         categoriesPostTest();
 
         String categoryName = given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .get(String.format("api/v1/categories/%d", testCategoryId))
                 .then()
                 .assertThat()
@@ -215,7 +275,7 @@ public class CategoryTests {
         // categoriesPostTest();
 
         given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .get(String.format("api/v1/categories/%d", INVALID_CATEGORY_ID))
                 .then()
                 .assertThat()
@@ -257,7 +317,7 @@ public class CategoryTests {
         final String newCategoryName = "validSessionByIdPutTest() Updated Name";
 
         String categoryName = given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .body(String.format("{\"name\": \"%s\"}", newCategoryName))
                 .put(String.format("api/v1/categories/%d", testCategoryId))
                 .then()
@@ -284,7 +344,7 @@ public class CategoryTests {
         // categoriesPostTest();
 
         given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .body(String.format("{\"name\": \"%s\"}", TEST_CATEGORY_NAME))
                 .put(String.format("api/v1/categories/%d", INVALID_CATEGORY_ID))
                 .then()
@@ -321,7 +381,7 @@ public class CategoryTests {
         categoriesPostTest();
 
         given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .body("{\"invalid\"}")
                 .put(String.format("api/v1/categories/%d", testCategoryId))
                 .then()
@@ -345,7 +405,7 @@ public class CategoryTests {
         categoriesPostTest();
 
         given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .delete(String.format("api/v1/categories/%d", testCategoryId))
                 .then()
                 .assertThat()
@@ -363,7 +423,7 @@ public class CategoryTests {
         // categoriesPostTest();
 
         given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .delete(String.format("api/v1/categories/%d", INVALID_CATEGORY_ID))
                 .then()
                 .assertThat()
@@ -0,0 +1,51 @@
+package nl.utwente.ing;
+
+import io.restassured.RestAssured;
+import nl.utwente.ing.server.ReferenceServer;
+import nl.utwente.ing.server.SessionEviction;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the {@link TransactionTests} and {@link BalanceHistoryTests} against a {@link ReferenceServer} which moves
+ * every session off the heap as soon as a request completes, so that every request reads its session back. Skipped
+ * when the tests run against another server. Latency budgets are not asserted, as they are declared for a server
+ * which keeps its sessions on the heap.
+ */
+@RunWith(Suite.class)
+@Suite.SuiteClasses({TransactionTests.class, BalanceHistoryTests.class})
+public class EvictedSessionTests {
+
+    private static ReferenceServer server;
+    private static int previousPort;
+
+    @BeforeClass
+    public static void startEvictingServer() throws IOException {
+        ApiConfig.configure();
+        Assume.assumeTrue("Only the reference server evicts sessions", ApiConfig.usesReferenceServer());
+
+        server = ReferenceServer.start(SessionEviction.afterEveryRequest());
+        previousPort = RestAssured.port;
+        RestAssured.port = server.getPort();
+    }
+
+    @AfterClass
+    public static void stopEvictingServer() {
+        if (server == null) {
+            return;
+        }
+
+        RestAssured.port = previousPort;
+        long evictions = server.getEvictions();
+        server.stop();
+        server = null;
+        assertTrue("No session was evicted", evictions > 0);
+    }
+}
@@ -0,0 +1,98 @@
+package nl.utwente.ing;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.HdrHistogram.Histogram;
+import org.junit.Assume;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.fail;
+
+/**
+ * A latency budget for a single endpoint, as declared in {@code latency-budgets.json} (or the file set with the
+ * {@code latency.budgets} system property).
+ *
+ * A budget states that the given percentile of the latencies of a number of samples may not exceed a maximum, for
+ * example that the p99 of 200 requests to {@code GET /api/v1/balance/history} is below 50 ms. Budgets are enforced by
+ * default. On machines too noisy for wall-clock budgets, {@code -Dlatency.budgets.enforce=false} turns them off: the
+ * requests are still made, so their latencies are recorded in the {@link LatencyReport}, but exceeding the budget does
+ * not fail the test.
+ */
+final class LatencyBudget {
+
+    private static final Path BUDGETS_PATH = Paths.get(System.getProperty("latency.budgets",
+            "src/test/java/nl/utwente/ing/latency-budgets.json"));
+
+    private static final boolean ENFORCE =
+            Boolean.parseBoolean(System.getProperty("latency.budgets.enforce", "true"));
+
+    final String endpoint;
+    final int transactions;
+    final double percentile;
+    final double maxMillis;
+    final int warmup;
+    final int samples;
+
+    private LatencyBudget(String endpoint, JsonObject budget) {
+        this.endpoint = endpoint;
+        this.transactions = budget.has("transactions") ? budget.get("transactions").getAsInt() : 0;
+        this.percentile = budget.get("percentile").getAsDouble();
+        this.maxMillis = budget.get("maxMillis").getAsDouble();
+        this.warmup = budget.has("warmup") ? budget.get("warmup").getAsInt() : 0;
+        this.samples = budget.get("samples").getAsInt();
+    }
+
+    /**
+     * Loads the budget of an endpoint. Skips the calling test if the tests run against a server other than the
+     * configured one, for which the budgets are not declared.
+     *
+     * @param endpoint the method and templated path of the endpoint, as used in the {@link LatencyReport}
+     * @return the budget of the endpoint
+     */
+    static LatencyBudget of(String endpoint) {
+        Assume.assumeTrue("Latency budgets only apply to the configured server", ApiConfig.targetsConfiguredServer());
+
+        try (Reader reader = Files.newBufferedReader(BUDGETS_PATH, StandardCharsets.UTF_8)) {
+            JsonObject budgets = new JsonParser().parse(reader).getAsJsonObject();
+            if (!budgets.has(endpoint)) {
+                throw new IllegalArgumentException("No latency budget declared for " + endpoint);
+            }
+            return new LatencyBudget(endpoint, budgets.getAsJsonObject(endpoint));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the latency budgets in " + BUDGETS_PATH, e);
+        }
+    }
+
+    /**
+     * Performs the request repeatedly and, if budgets are enforced, fails if the latency at the budgeted percentile
+     * exceeds the budget. The request is expected to perform its own functional assertions.
+     *
+     * @param request performs a single request to the endpoint of this budget
+     */
+    void assertMet(Runnable request) {
+        for (int i = 0; i < warmup; i++) {
+            request.run();
+        }
+
+        Histogram histogram = new Histogram(3);
+        for (int i = 0; i < samples; i++) {
+            long start = System.nanoTime();
+            request.run();
+            histogram.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        }
+
+        double actualMillis = histogram.getValueAtPercentile(percentile) / 1_000.0;
+        if (ENFORCE && actualMillis > maxMillis) {
+            fail(String.format("%s exceeded its latency budget: p%s was %.3f ms over %d samples, budget is %.3f ms",
+                    endpoint, percentile, actualMillis, samples, maxMillis));
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package nl.utwente.ing;
+
+import io.restassured.filter.Filter;
+import io.restassured.filter.FilterContext;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+
+import java.util.regex.Pattern;
+
+/**
+ * Records the latency of every request in the {@link LatencyReport}, keyed by the request method and the templated
+ * request path, for example {@code GET /api/v1/transactions/{id}}.
+ */
+class LatencyFilter implements Filter {
+
+    private static final Pattern ID_SEGMENT = Pattern.compile("/(-?\\d+|null)(?=/|$)");
+
+    @Override
+    public Response filter(FilterableRequestSpecification requestSpec, FilterableResponseSpecification responseSpec,
+                           FilterContext ctx) {
+        long start = System.nanoTime();
+        Response response = ctx.next(requestSpec, responseSpec);
+        // Read the body, so that the connection is returned to the pool even if the test does not read it.
+        response.asByteArray();
+        LatencyReport.record(endpoint(requestSpec.getMethod(), requestSpec.getUserDefinedPath()),
+                System.nanoTime() - start);
+        return response;
+    }
+
+    /**
+     * Builds the endpoint name of a request, replacing identifiers in the path by {@code {id}}.
+     *
+     * @param method the request method
+     * @param path the request path, with or without leading slash and query string
+     * @return the endpoint name
+     */
+    static String endpoint(String method, String path) {
+        int query = path.indexOf('?');
+        if (query >= 0) {
+            path = path.substring(0, query);
+        }
+        if (!path.startsWith("/")) {
+            path = "/" + path;
+        }
+
+        return method + " " + ID_SEGMENT.matcher(path).replaceAll("/{id}");
+    }
+}
@@ -0,0 +1,89 @@
+package nl.utwente.ing;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.runner.Result;
+import org.junit.runner.notification.RunListener;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects per-endpoint latency histograms of all requests made by the tests, and writes their percentiles to a JSON
+ * report at {@code latency.report} (default {@code target/latency-report.json}) once all tests have run.
+ */
+final class LatencyReport {
+
+    private static final Path REPORT_PATH = Paths.get(System.getProperty("latency.report",
+            "target/latency-report.json"));
+
+    private static final Map<String, Histogram> HISTOGRAMS = new ConcurrentHashMap<>();
+
+    private LatencyReport() {
+    }
+
+    /**
+     * Records the latency of a single request.
+     *
+     * @param endpoint the method and templated path of the request
+     * @param nanos the latency of the request in nanoseconds
+     */
+    static void record(String endpoint, long nanos) {
+        HISTOGRAMS.computeIfAbsent(endpoint, key -> new ConcurrentHistogram(3))
+                .recordValue(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * Writes the percentiles of all recorded endpoints to the report file. Latencies are reported in milliseconds.
+     */
+    static void write() {
+        JsonObject report = new JsonObject();
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(HISTOGRAMS).entrySet()) {
+            Histogram histogram = entry.getValue();
+            JsonObject endpoint = new JsonObject();
+            endpoint.addProperty("count", histogram.getTotalCount());
+            endpoint.addProperty("p50", millis(histogram.getValueAtPercentile(50)));
+            endpoint.addProperty("p90", millis(histogram.getValueAtPercentile(90)));
+            endpoint.addProperty("p99", millis(histogram.getValueAtPercentile(99)));
+            endpoint.addProperty("max", millis(histogram.getMaxValue()));
+            report.add(entry.getKey(), endpoint);
+        }
+
+        try {
+            if (REPORT_PATH.toAbsolutePath().getParent() != null) {
+                Files.createDirectories(REPORT_PATH.toAbsolutePath().getParent());
+            }
+            try (Writer writer = Files.newBufferedWriter(REPORT_PATH, StandardCharsets.UTF_8)) {
+                new GsonBuilder().setPrettyPrinting().create().toJson(report, writer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write the latency report to " + REPORT_PATH, e);
+        }
+    }
+
+    private static double millis(long micros) {
+        return micros / 1_000.0;
+    }
+
+    /**
+     * Writes the report once all tests have run. Registered with surefire in the pom.
+     */
+    public static class Listener extends RunListener {
+
+        @Override
+        public void testRunFinished(Result result) {
+            write();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package nl.utwente.ing;
+
+import org.junit.runner.Runner;
+import org.junit.runners.ParentRunner;
+import org.junit.runners.Suite;
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.RunnerBuilder;
+import org.junit.runners.model.RunnerScheduler;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Suite runner which can run its test classes, and optionally the test methods within them, concurrently.
+ *
+ * The mode is selected with the {@code suite.parallel} system property:
+ * <ul>
+ *     <li>{@code none} (default): run everything sequentially, like a regular {@link Suite}.</li>
+ *     <li>{@code classes}: run the test classes concurrently. Every test class uses its own session.</li>
+ *     <li>{@code methods}: additionally run the test methods of classes annotated with {@link IsolatedMethods}
+ *     concurrently. These classes use a new session for every test method.</li>
+ * </ul>
+ * The size of the worker pools is set with the {@code suite.threads} system property and defaults to the number of
+ * available processors.
+ */
+public class ParallelSuite extends Suite {
+
+    /**
+     * Marks a test class of which every test method uses its own session and does not share any state with the other
+     * test methods, which makes it safe to run its methods concurrently.
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.TYPE)
+    public @interface IsolatedMethods {
+    }
+
+    enum Mode {
+        NONE, CLASSES, METHODS
+    }
+
+    public ParallelSuite(Class<?> klass, RunnerBuilder builder) throws InitializationError {
+        super(klass, builder);
+
+        Mode mode = Mode.valueOf(System.getProperty("suite.parallel", "none").toUpperCase(Locale.ROOT));
+        int threads = Integer.getInteger("suite.threads", Runtime.getRuntime().availableProcessors());
+
+        if (mode == Mode.NONE) {
+            return;
+        }
+
+        setScheduler(new PoolScheduler("suite-classes", threads));
+
+        if (mode == Mode.METHODS) {
+            for (Runner child : getChildren()) {
+                if (child instanceof ParentRunner && ((ParentRunner<?>) child).getTestClass()
+                        .getJavaClass().isAnnotationPresent(IsolatedMethods.class)) {
+                    String name = ((ParentRunner<?>) child).getTestClass().getJavaClass().getSimpleName();
+                    ((ParentRunner<?>) child).setScheduler(new PoolScheduler(name, threads));
+                }
+            }
+        }
+    }
+
+    /**
+     * Schedules children on a bounded worker pool and waits for all of them to complete when the runner finishes.
+     */
+    private static class PoolScheduler implements RunnerScheduler {
+
+        private final ExecutorService executor;
+
+        PoolScheduler(String name, int threads) {
+            AtomicInteger count = new AtomicInteger();
+            ThreadFactory factory = runnable -> {
+                Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            executor = Executors.newFixedThreadPool(threads, factory);
+        }
+
+        @Override
+        public void schedule(Runnable childStatement) {
+            executor.execute(childStatement);
+        }
+
+        @Override
+        public void finished() {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for tests to finish", e);
+            }
+        }
+    }
+}
@@ -1,19 +1,25 @@
 package nl.utwente.ing;
 
 import io.restassured.path.json.JsonPath;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.net.URI;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
 
 import static io.restassured.RestAssured.given;
-import static io.restassured.module.jsv.JsonSchemaValidator.matchesJsonSchema;
+import static nl.utwente.ing.SchemaRegistry.matchesJsonSchema;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+@ParallelSuite.IsolatedMethods
 public class PaymentRequestTests {
 
     private static final URI PAYMENT_REQUEST_SCHEMA = Paths.get
@@ -21,14 +27,22 @@ public class PaymentRequestTests {
     private static final URI PAYMENT_REQUEST_LIST_SCHEMA = Paths.get
             ("src/test/java/nl/utwente/ing/schemas/paymentrequests/payment-request-list.json").toAbsolutePath().toUri();
 
-    private static String sessionId;
+    private String sessionId;
     private Integer paymentRequestId;
 
     /**
-     * Makes sure each test is run with a new session ID.
+     * Configures the HTTP client used by the tests in this class.
      */
     @BeforeClass
-    public static void setTestData() {
+    public static void configureClient() {
+        ApiConfig.configure();
+    }
+
+    /**
+     * Makes sure each test is run with a new session ID.
+     */
+    @Before
+    public void setTestData() {
         sessionId = Util.getSessionID();
     }
 
@@ -52,7 +66,7 @@ public class PaymentRequestTests {
                 "}";
 
         paymentRequestId = given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .body(validPaymentRequest)
                 .post("/api/v1/paymentRequests")
                 .then()
@@ -76,7 +90,7 @@ public class PaymentRequestTests {
                 "  \"number_of_requests\": 2\n" +
                 "}";
         given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .body(invalidPaymentRequest)
                 .post("/api/v1/paymentRequests")
                 .then()
@@ -121,7 +135,7 @@ public class PaymentRequestTests {
         validSessionValidPaymentRequestsCreateTest();
 
         given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .get("/api/v1/paymentRequests")
                 .then()
                 .statusCode(200)
@@ -158,7 +172,7 @@ public class PaymentRequestTests {
         Util.insertTransaction(sessionId, "213.04", "2018-08-20T16:18:36.915Z", "deposit", null, null);
 
         JsonPath response = given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .get("/api/v1/paymentRequests")
                 .then()
                 .statusCode(200)
@@ -171,4 +185,104 @@ public class PaymentRequestTests {
         assertTrue(response.getBoolean("[0].filled"));
     }
 
+    /**
+     * Performs GET requests on the paymentRequests API endpoint.
+     *
+     * This test uses a valid session to check whether deposits pay the oldest unfilled payment request with their
+     * amount and a due date they do not exceed, including deposits made before the payment request was created, and
+     * whether the payments are recomputed after a deposit is deleted.
+     */
+    @Test
+    public void validSessionPaymentRequestsMatchingGetTest() {
+        int early = Util.insertTransaction(sessionId, "10.00", "2018-08-01T12:00:00.000Z", "deposit", null, null);
+        createPaymentRequest("10.00", "2018-08-10T12:00:00.000Z", 2);
+        createPaymentRequest("10.00", "2018-08-31T12:00:00.000Z", 1);
+        int onTime = Util.insertTransaction(sessionId, "10.00", "2018-08-05T12:00:00.000Z", "deposit", null, null);
+        int late = Util.insertTransaction(sessionId, "10.00", "2018-08-20T12:00:00.000Z", "deposit", null, null);
+        Util.insertTransaction(sessionId, "10.00", "2018-09-05T12:00:00.000Z", "deposit", null, null);
+        Util.insertTransaction(sessionId, "10.00", "2018-08-03T12:00:00.000Z", "withdrawal", null, null);
+
+        JsonPath response = getPaymentRequests();
+        assertTrue(response.getBoolean("[0].filled"));
+        assertEquals(early, response.getInt("[0].transactions[0].id"));
+        assertEquals(onTime, response.getInt("[0].transactions[1].id"));
+        assertTrue(response.getBoolean("[1].filled"));
+        assertEquals(1, response.getList("[1].transactions").size());
+        assertEquals(late, response.getInt("[1].transactions[0].id"));
+
+        Util.deleteTestTransaction(onTime, sessionId);
+        response = getPaymentRequests();
+        assertFalse(response.getBoolean("[0].filled"));
+        assertEquals(1, response.getList("[0].transactions").size());
+        assertTrue(response.getBoolean("[1].filled"));
+        assertEquals(late, response.getInt("[1].transactions[0].id"));
+    }
+
+    /**
+     * Performs a GET request on the paymentRequests API endpoint.
+     *
+     * This test uses a valid session with 100000 open payment requests of different amounts, half of which are paid
+     * by a deposit, to check whether all payments are found. It only runs with {@code -Dtests.scale=true}, as
+     * creating the payment requests takes minutes.
+     */
+    @Test
+    public void validSessionHundredThousandPaymentRequestsGetTest() {
+        Assume.assumeTrue("Scale tests are disabled", Boolean.getBoolean("tests.scale"));
+
+        int requests = 100_000;
+        for (int i = 0; i < requests; i++) {
+            createPaymentRequest(amount(i), "2030-01-01T00:00:00.000Z", 1);
+        }
+        List<TransactionSpec> deposits = new ArrayList<>(requests / 2);
+        for (int i = 0; i < requests; i += 2) {
+            deposits.add(new TransactionSpec(amount(i), "2018-08-01T12:00:00.000Z", "deposit"));
+        }
+        List<Integer> ids = Util.insertTransactions(sessionId, deposits);
+
+        // Evaluating a path per payment request would take longer than the request itself.
+        List<Map<String, Object>> response = getPaymentRequests().getList("$");
+        assertEquals(requests, response.size());
+        for (int i = 0; i < requests; i++) {
+            Map<String, Object> request = response.get(i);
+            List<?> transactions = (List<?>) request.get("transactions");
+            assertEquals(i % 2 == 0, request.get("filled"));
+            if (i % 2 == 0) {
+                assertEquals(ids.get(i / 2), ((Map<?, ?>) transactions.get(0)).get("id"));
+            } else {
+                assertTrue(transactions.isEmpty());
+            }
+        }
+    }
+
+    /**
+     * @return a different amount for every index, starting at 1.00
+     */
+    private static String amount(int index) {
+        return String.format("%d.%02d", 1 + index / 100, index % 100);
+    }
+
+    private void createPaymentRequest(String amount, String dueDate, int numberOfRequests) {
+        given()
+                .spec(ApiConfig.session(sessionId))
+                .body("{\n" +
+                        "  \"description\": \"Payback for lunch\",\n" +
+                        "  \"due_date\": \"" + dueDate + "\",\n" +
+                        "  \"amount\": " + amount + ",\n" +
+                        "  \"number_of_requests\": " + numberOfRequests + "\n" +
+                        "}")
+                .post("/api/v1/paymentRequests")
+                .then()
+                .statusCode(201);
+    }
+
+    private JsonPath getPaymentRequests() {
+        return given()
+                .spec(ApiConfig.session(sessionId))
+                .get("/api/v1/paymentRequests")
+                .then()
+                .statusCode(200)
+                .body(matchesJsonSchema(PAYMENT_REQUEST_LIST_SCHEMA))
+                .extract()
+                .jsonPath();
+    }
 }
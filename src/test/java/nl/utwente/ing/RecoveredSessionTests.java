@@ -0,0 +1,384 @@
+package nl.utwente.ing;
+
+import io.restassured.RestAssured;
+import io.restassured.builder.RequestSpecBuilder;
+import io.restassured.path.json.JsonPath;
+import io.restassured.specification.RequestSpecification;
+import nl.utwente.ing.server.ReferenceServer;
+import nl.utwente.ing.server.SessionEviction;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the {@link TransactionTests} against a {@link ReferenceServer} recovered from the log of a server which was
+ * killed while concurrent clients were creating transactions. The killed server runs in a process of its own, which
+ * is killed without shutting down. Before the tests run, every session, category and transaction of which the
+ * creation was acknowledged is checked to have been recovered unchanged, as is the outcome of a category rule applied
+ * on a large history while a transaction was changed. Skipped when the tests run against another server.
+ */
+@RunWith(Suite.class)
+@Suite.SuiteClasses({TransactionTests.class})
+public class RecoveredSessionTests {
+
+    private static final int LOAD_THREADS = 4;
+    /**
+     * The number of acknowledged transactions after which the server is killed.
+     */
+    private static final int KILL_AFTER_TRANSACTIONS = 400;
+    private static final long LOAD_TIMEOUT_MILLIS = 60_000;
+    /**
+     * The number of transactions of a history large enough for the server to apply a rule on it in the background.
+     */
+    private static final int HISTORY_TRANSACTIONS = 35_000;
+    private static final int HISTORY_BATCH_SIZE = 1_000;
+
+    private static Path logDirectory;
+    private static ReferenceServer server;
+    private static int previousPort;
+
+    @BeforeClass
+    public static void startRecoveredServer() throws IOException, InterruptedException, ExecutionException {
+        ApiConfig.configure();
+        Assume.assumeTrue("Only the reference server keeps a log", ApiConfig.usesReferenceServer());
+
+        logDirectory = Files.createTempDirectory("reference-log");
+        Path log = logDirectory.resolve("sessions.log");
+        List<Client> clients = new ArrayList<>();
+        HistoryClient history = new HistoryClient();
+        Process process = startServerProcess(log);
+        ExecutorService executor = Executors.newFixedThreadPool(LOAD_THREADS);
+        try {
+            int port = readPort(process);
+            history.run(port);
+            AtomicInteger acknowledged = new AtomicInteger();
+            List<Future<?>> load = new ArrayList<>();
+            for (int i = 0; i < LOAD_THREADS; i++) {
+                Client client = new Client(port, acknowledged);
+                clients.add(client);
+                load.add(executor.submit(client));
+            }
+
+            long deadline = System.currentTimeMillis() + LOAD_TIMEOUT_MILLIS;
+            while (acknowledged.get() < KILL_AFTER_TRANSACTIONS && System.currentTimeMillis() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            assertTrue("The load did not reach the server", acknowledged.get() >= KILL_AFTER_TRANSACTIONS);
+            // Kills the server while the clients are waiting for their next transaction.
+            process.destroyForcibly().waitFor();
+            for (Future<?> client : load) {
+                client.get();
+            }
+        } finally {
+            executor.shutdownNow();
+            process.destroyForcibly().waitFor();
+        }
+
+        server = ReferenceServer.start(SessionEviction.fromSystemProperties(), Clock.systemUTC(), log);
+        for (Client client : clients) {
+            client.verify(server.getPort());
+        }
+        history.verify(server.getPort());
+        previousPort = RestAssured.port;
+        RestAssured.port = server.getPort();
+    }
+
+    @AfterClass
+    public static void stopRecoveredServer() throws IOException {
+        if (server != null) {
+            RestAssured.port = previousPort;
+            server.stop();
+            server = null;
+        }
+        if (logDirectory != null) {
+            try (Stream<Path> files = Files.walk(logDirectory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+            logDirectory = null;
+        }
+    }
+
+    /**
+     * Starts a server in a new JVM with the class path of this one.
+     */
+    private static Process startServerProcess(Path log) throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                ReferenceServer.class.getName(), log.toString())
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+    }
+
+    private static int readPort(Process process) throws IOException {
+        BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream(),
+                StandardCharsets.UTF_8));
+        String port = out.readLine();
+        assertNotNull("The server process did not start", port);
+        return Integer.parseInt(port.trim());
+    }
+
+    private static RequestSpecification session(int port, String sessionId) {
+        return new RequestSpecBuilder()
+                .addRequestSpecification(ApiConfig.session(sessionId))
+                .setPort(port)
+                .build();
+    }
+
+    /**
+     * Creates a session with a category, and then transactions in the session one at a time until the server is
+     * killed, remembering what was acknowledged.
+     */
+    private static final class Client implements Runnable {
+
+        private final int port;
+        private final AtomicInteger acknowledged;
+        private final List<TransactionSpec> transactions = new ArrayList<>();
+        private final List<Integer> ids = new ArrayList<>();
+        private String sessionId;
+        private Integer categoryId;
+
+        Client(int port, AtomicInteger acknowledged) {
+            this.port = port;
+            this.acknowledged = acknowledged;
+        }
+
+        @Override
+        public void run() {
+            try {
+                sessionId = given()
+                        .port(port)
+                        .post("api/v1/sessions")
+                        .then()
+                        .statusCode(201)
+                        .extract()
+                        .jsonPath()
+                        .getString("id");
+                categoryId = given()
+                        .spec(session(port, sessionId))
+                        .body("{\"name\": \"RecoveredSessionTests Category\"}")
+                        .post("api/v1/categories")
+                        .then()
+                        .statusCode(201)
+                        .extract()
+                        .jsonPath()
+                        .getInt("id");
+                for (int i = 0; ; i++) {
+                    TransactionSpec transaction = new TransactionSpec(String.format("%d.%02d", i % 100 + 1, i % 100),
+                            String.format("2018-01-%02dT%02d:%02d:00.000Z", i / 1440 % 28 + 1, i / 60 % 24, i % 60),
+                            i % 2 == 0 ? "deposit" : "withdrawal", i % 3 == 0 ? categoryId : null,
+                            "RecoveredSessionTests Category");
+                    int transactionId = given()
+                            .spec(session(port, sessionId))
+                            .body(Util.transactionJson(transaction))
+                            .post("api/v1/transactions")
+                            .then()
+                            .statusCode(201)
+                            .extract()
+                            .jsonPath()
+                            .getInt("id");
+                    transactions.add(transaction);
+                    ids.add(transactionId);
+                    acknowledged.incrementAndGet();
+                }
+            } catch (Exception e) {
+                // The server was killed. Unlike an error response, which fails the assertions above, this ends the
+                // load of the client.
+            }
+        }
+
+        /**
+         * Checks whether the recovered server has everything that was acknowledged to this client. At most one
+         * transaction more may have been created, of which the response was lost when the server was killed.
+         */
+        void verify(int recoveredPort) {
+            if (sessionId == null) {
+                return;
+            }
+            if (categoryId != null) {
+                given()
+                        .spec(session(recoveredPort, sessionId))
+                        .get(String.format("api/v1/categories/%d", categoryId))
+                        .then()
+                        .statusCode(200);
+            }
+
+            JsonPath list = given()
+                    .spec(session(recoveredPort, sessionId))
+                    .queryParam("limit", ids.size() + 2)
+                    .get("api/v1/transactions")
+                    .then()
+                    .statusCode(200)
+                    .extract()
+                    .jsonPath();
+            int listed = list.getList("$").size();
+            assertTrue("Acknowledged transactions were lost", listed >= ids.size());
+            assertTrue("More transactions were recovered than created", listed <= ids.size() + 1);
+
+            Map<Integer, Integer> indices = new HashMap<>();
+            for (int i = 0; i < listed; i++) {
+                indices.put(list.getInt(String.format("[%d].id", i)), i);
+            }
+            for (int i = 0; i < ids.size(); i++) {
+                TransactionSpec transaction = transactions.get(i);
+                Integer index = indices.get(ids.get(i));
+                assertNotNull("Transaction " + ids.get(i) + " was lost", index);
+                String path = String.format("[%d]", index);
+                assertEquals(transaction.date, list.getString(path + ".date"));
+                assertEquals(transaction.type, list.getString(path + ".type"));
+                assertEquals(new BigDecimal(transaction.amount).movePointRight(2).longValueExact(),
+                        Util.cents(list, path + ".amount"));
+                assertEquals(transaction.categoryId, list.get(path + ".category.id"));
+            }
+
+            // The IDs of new transactions follow those of the recovered ones.
+            int created = given()
+                    .spec(session(recoveredPort, sessionId))
+                    .body(Util.transactionJson(new TransactionSpec("1.00", "2018-02-01T00:00:00.000Z", "deposit")))
+                    .post("api/v1/transactions")
+                    .then()
+                    .statusCode(201)
+                    .extract()
+                    .jsonPath()
+                    .getInt("id");
+            assertEquals(listed + 1, created);
+        }
+    }
+
+    /**
+     * Applies a category rule on a large history, and changes the description of the last transaction while the rule
+     * is applied in the background, before the rule reaches it.
+     */
+    private static final class HistoryClient {
+
+        private String sessionId;
+        private int categoryId;
+        private int lastId;
+        private Integer lastCategoryId;
+
+        void run(int port) throws InterruptedException {
+            sessionId = given()
+                    .port(port)
+                    .post("api/v1/sessions")
+                    .then()
+                    .statusCode(201)
+                    .extract()
+                    .jsonPath()
+                    .getString("id");
+            categoryId = given()
+                    .spec(session(port, sessionId))
+                    .body("{\"name\": \"RecoveredSessionTests History\"}")
+                    .post("api/v1/categories")
+                    .then()
+                    .statusCode(201)
+                    .extract()
+                    .jsonPath()
+                    .getInt("id");
+
+            TransactionSpec last = null;
+            for (int from = 0; from < HISTORY_TRANSACTIONS; from += HISTORY_BATCH_SIZE) {
+                StringBuilder batch = new StringBuilder("[");
+                for (int i = from; i < from + HISTORY_BATCH_SIZE; i++) {
+                    last = new TransactionSpec("1.00", String.format("2017-%02d-%02dT%02d:%02d:00.000Z",
+                            i / 40320 + 1, i / 1440 % 28 + 1, i / 60 % 24, i % 60), "withdrawal");
+                    batch.append(i > from ? "," : "").append(Util.transactionJson(last));
+                }
+                List<Integer> ids = given()
+                        .spec(session(port, sessionId))
+                        .body(batch.append(']').toString())
+                        .post("api/v1/transactions/batch")
+                        .then()
+                        .statusCode(201)
+                        .extract()
+                        .jsonPath()
+                        .getList("id", Integer.class);
+                lastId = ids.get(ids.size() - 1);
+            }
+
+            int ruleId = given()
+                    .spec(session(port, sessionId))
+                    .body("{\"description\": \"test\", \"iBAN\": \"\", \"type\": \"\", \"category_id\": "
+                            + categoryId + ", \"applyOnHistory\": true}")
+                    .post("api/v1/categoryRules")
+                    .then()
+                    .statusCode(201)
+                    .extract()
+                    .jsonPath()
+                    .getInt("id");
+            // The rule still matches the transaction, as it matches the description the transaction had when the
+            // rule was applied.
+            given()
+                    .spec(session(port, sessionId))
+                    .body(Util.transactionJson(last).replace("\"test\"", "\"changed\""))
+                    .put(String.format("api/v1/transactions/%d", lastId))
+                    .then()
+                    .statusCode(200);
+
+            long deadline = System.currentTimeMillis() + LOAD_TIMEOUT_MILLIS;
+            while (!given()
+                    .spec(session(port, sessionId))
+                    .get(String.format("api/v1/categoryRules/%d/status", ruleId))
+                    .then()
+                    .statusCode(200)
+                    .extract()
+                    .jsonPath()
+                    .getString("state")
+                    .equals("completed")) {
+                assertTrue("The rule was not applied on the history in time", System.currentTimeMillis() < deadline);
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            lastCategoryId = category(port);
+            assertEquals(Integer.valueOf(categoryId), lastCategoryId);
+        }
+
+        /**
+         * Checks whether the recovered server assigned the same category to the changed transaction.
+         */
+        void verify(int recoveredPort) {
+            assertEquals(lastCategoryId, category(recoveredPort));
+        }
+
+        /**
+         * @return the ID of the category of the changed transaction, or null if it has none
+         */
+        private Integer category(int port) {
+            JsonPath transaction = given()
+                    .spec(session(port, sessionId))
+                    .get(String.format("api/v1/transactions/%d", lastId))
+                    .then()
+                    .statusCode(200)
+                    .extract()
+                    .jsonPath();
+            assertEquals("changed", transaction.getString("description"));
+            return transaction.get("category.id");
+        }
+    }
+}
@@ -23,18 +23,30 @@
  */
 package nl.utwente.ing;
 
+import io.restassured.builder.RequestSpecBuilder;
 import io.restassured.path.json.JsonPath;
+import io.restassured.specification.RequestSpecification;
+import nl.utwente.ing.server.ReferenceServer;
+import nl.utwente.ing.server.SessionEviction;
+import nl.utwente.ing.server.VirtualClock;
+import org.junit.Assume;
 import org.junit.Before;
+import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.List;
 
 import static io.restassured.RestAssured.given;
-import static io.restassured.module.jsv.JsonSchemaValidator.matchesJsonSchema;
+import static nl.utwente.ing.SchemaRegistry.matchesJsonSchema;
 import static org.junit.Assert.assertEquals;
 
+@ParallelSuite.IsolatedMethods
 public class SavingGoalsTests {
 
     private static final URI SAVING_GOAL_SCHEMA = Paths.get
@@ -42,9 +54,17 @@ public class SavingGoalsTests {
     private static final URI SAVING_GOAL_LIST_SCHEMA = Paths.get
             ("src/test/java/nl/utwente/ing/schemas/savinggoals/saving-goal-list.json").toAbsolutePath().toUri();
 
-    private static String sessionId;
+    private String sessionId;
     private Integer savingGoalId;
 
+    /**
+     * Configures the HTTP client used by the tests in this class.
+     */
+    @BeforeClass
+    public static void configureClient() {
+        ApiConfig.configure();
+    }
+
     /**
      * Makes sure each test is run with a new session ID.
      */
@@ -73,7 +93,7 @@ public class SavingGoalsTests {
                 "}";
 
         savingGoalId = given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .body(validSavingGoal)
                 .post("/api/v1/savingGoals")
                 .then()
@@ -98,7 +118,7 @@ public class SavingGoalsTests {
                 "  \"applyOnHistory\": true\n" +
                 "}";
         given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .body(invalidSavingGoal)
                 .post("/api/v1/savingGoals")
                 .then()
@@ -143,7 +163,7 @@ public class SavingGoalsTests {
         validSessionValidSavingGoalsCreateTest();
 
         given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .get("/api/v1/savingGoals")
                 .then()
                 .statusCode(200)
@@ -175,24 +195,24 @@ public class SavingGoalsTests {
         calendar.add(Calendar.MONTH, -1);
 
         //Insert base balance into the API
-        Util.insertTransaction(sessionId, "1500.00", Util.DATE_FORMAT.format(calendar.getTime()), "deposit", null, null);
+        Util.insertTransaction(sessionId, "1500.00", Util.formatDate(calendar.getTime()), "deposit", null, null);
 
         //Insert the saving goal into the API
         validSessionValidSavingGoalsCreateTest();
 
         //Withdraw money from the session to update internal time of the API
         calendar = Calendar.getInstance();
-        Util.insertTransaction(sessionId, "50.00", Util.DATE_FORMAT.format(calendar.getTime()), "withdrawal", null, null);
+        Util.insertTransaction(sessionId, "50.00", Util.formatDate(calendar.getTime()), "withdrawal", null, null);
 
         //Check to see if the savingGoal balance is updated to withdrawal of 1 month
         JsonPath response = given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .get("/api/v1/savingGoals")
                 .then()
                 .body(matchesJsonSchema(SAVING_GOAL_LIST_SCHEMA))
                 .extract()
                 .jsonPath();
-        assertEquals(250, response.getInt("[0].balance"));
+        assertEquals(250_00, Util.cents(response, "[0].balance"));
     }
 
     @Test
@@ -202,42 +222,37 @@ public class SavingGoalsTests {
         calendar.add(Calendar.HOUR, -2);
 
         //Insert base balance into the API
-        Util.insertTransaction(sessionId, "1500.00", Util.DATE_FORMAT.format(calendar.getTime()), "deposit", null, null);
+        Util.insertTransaction(sessionId, "1500.00", Util.formatDate(calendar.getTime()), "deposit", null, null);
 
         //Insert the saving goal into the API
         validSessionValidSavingGoalsCreateTest();
 
         //Withdraw money from the session to update internal time of the API
-        calendar = Calendar.getInstance();
-        calendar.add(Calendar.MONTH, -2);
-        calendar.add(Calendar.HOUR, -2);
-        Util.insertTransaction(sessionId, "50.00", Util.DATE_FORMAT.format(calendar.getTime()), "withdrawal", null, null);
+        List<TransactionSpec> transactions = new ArrayList<>();
 
         calendar = Calendar.getInstance();
         calendar.add(Calendar.MONTH, -2);
         calendar.add(Calendar.HOUR, -2);
-        Util.insertTransaction(sessionId, "400.00", Util.DATE_FORMAT.format(calendar.getTime()), "deposit", null, null);
-
-        calendar = Calendar.getInstance();
-        calendar.add(Calendar.MONTH, -1);
-        calendar.add(Calendar.HOUR, -2);
-        Util.insertTransaction(sessionId, "100.00", Util.DATE_FORMAT.format(calendar.getTime()), "withdrawal", null, null);
+        transactions.add(new TransactionSpec("50.00", Util.formatDate(calendar.getTime()), "withdrawal"));
+        calendar.add(Calendar.SECOND, 1);
+        transactions.add(new TransactionSpec("400.00", Util.formatDate(calendar.getTime()), "deposit"));
 
         calendar = Calendar.getInstance();
         calendar.add(Calendar.MONTH, -1);
         calendar.add(Calendar.HOUR, -2);
-        Util.insertTransaction(sessionId, "100.00", Util.DATE_FORMAT.format(calendar.getTime()), "withdrawal", null, null);
+        transactions.add(new TransactionSpec("100.00", Util.formatDate(calendar.getTime()), "withdrawal"));
+        transactions.add(new TransactionSpec("100.00", Util.formatDate(calendar.getTime()), "withdrawal"));
 
         calendar = Calendar.getInstance();
         calendar.add(Calendar.HOUR, -2);
-        Util.insertTransaction(sessionId, "200.00", Util.DATE_FORMAT.format(calendar.getTime()), "deposit", null, null);
+        transactions.add(new TransactionSpec("200.00", Util.formatDate(calendar.getTime()), "deposit"));
+        calendar.add(Calendar.SECOND, 1);
+        transactions.add(new TransactionSpec("50.00", Util.formatDate(calendar.getTime()), "withdrawal"));
 
-        calendar = Calendar.getInstance();
-        calendar.add(Calendar.HOUR, -2);
-        Util.insertTransaction(sessionId, "50.00", Util.DATE_FORMAT.format(calendar.getTime()), "withdrawal", null, null);
+        Util.insertTransactions(sessionId, transactions);
 
         JsonPath response = given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .queryParam("interval", "month")
                 .queryParam("intervals", 3)
                 .get("/api/v1/balance/history")
@@ -249,23 +264,23 @@ public class SavingGoalsTests {
                 .getBody()
                 .jsonPath();
 
-        assertEquals( 1250.00, response.getDouble("[0].open"), 0.01);
-        assertEquals(1600.00, response.getDouble("[0].close"), 0.01);
-        assertEquals(1600.00, response.getDouble("[0].high"), 0.01);
-        assertEquals(1200.00, response.getDouble("[0].low"), 0.01);
-        assertEquals(450.00, response.getDouble("[0].volume"), 0.01);
-
-        assertEquals( 1400.00, response.getDouble("[1].open"), 0.01);
-        assertEquals(1200.00, response.getDouble("[1].close"), 0.01);
-        assertEquals(1400.00, response.getDouble("[1].high"), 0.01);
-        assertEquals(1200.00, response.getDouble("[1].low"), 0.01);
-        assertEquals(200.00, response.getDouble("[1].volume"), 0.01);
-
-        assertEquals( 1200.00, response.getDouble("[2].open"), 0.01);
-        assertEquals(1350.00, response.getDouble("[2].close"), 0.01);
-        assertEquals(1400.00, response.getDouble("[2].high"), 0.01);
-        assertEquals(1200.00, response.getDouble("[2].low"), 0.01);
-        assertEquals(250.00, response.getDouble("[2].volume"), 0.01);
+        assertEquals(1250_00, Util.cents(response, "[0].open"));
+        assertEquals(1600_00, Util.cents(response, "[0].close"));
+        assertEquals(1600_00, Util.cents(response, "[0].high"));
+        assertEquals(1200_00, Util.cents(response, "[0].low"));
+        assertEquals(450_00, Util.cents(response, "[0].volume"));
+
+        assertEquals(1400_00, Util.cents(response, "[1].open"));
+        assertEquals(1200_00, Util.cents(response, "[1].close"));
+        assertEquals(1400_00, Util.cents(response, "[1].high"));
+        assertEquals(1200_00, Util.cents(response, "[1].low"));
+        assertEquals(200_00, Util.cents(response, "[1].volume"));
+
+        assertEquals(1200_00, Util.cents(response, "[2].open"));
+        assertEquals(1350_00, Util.cents(response, "[2].close"));
+        assertEquals(1400_00, Util.cents(response, "[2].high"));
+        assertEquals(1200_00, Util.cents(response, "[2].low"));
+        assertEquals(250_00, Util.cents(response, "[2].volume"));
     }
 
     /*
@@ -282,7 +297,7 @@ public class SavingGoalsTests {
         validSessionValidSavingGoalsCreateTest();
 
         given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .delete(String.format("/api/v1/savingGoals/%d", savingGoalId))
                 .then()
                 .statusCode(204);
@@ -314,9 +329,153 @@ public class SavingGoalsTests {
         validSessionValidSavingGoalsIdDeleteTest();
 
         given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .delete(String.format("/api/v1/savingGoals/%d", savingGoalId))
                 .then()
                 .statusCode(404);
     }
+    /*
+     *  Tests of saving goals over many years. These run against a reference server with a virtual clock, so they do
+     *  not depend on the current time, and are skipped when the tests run against another server.
+     */
+    /**
+     * Performs requests on the SavingGoals API endpoint over four decades of transactions.
+     *
+     * This test checks the monthly savings while the balance is above and below minBalanceRequired, after a
+     * backdated transaction changes the balance of earlier months, and after the goal is deleted.
+     */
+    @Test
+    public void virtualClockSavingGoalsDecadesTest() throws IOException {
+        Assume.assumeTrue("Only the reference server has a virtual clock", ApiConfig.usesReferenceServer());
+        VirtualClock clock = new VirtualClock(Instant.parse("1990-01-15T12:00:00Z"));
+        ReferenceServer server = ReferenceServer.start(SessionEviction.fromSystemProperties(), clock);
+        try {
+            RequestSpecification session = virtualSession(server);
+            insertTransaction(session, "1000.00", "1990-01-15T12:00:00.000Z", "deposit");
+            createSavingGoal(session, "3000", "10", "500");
+
+            // 51 months are saved before the balance drops below the minimum.
+            insertTransaction(session, "0.01", "2020-01-15T12:00:00.000Z", "withdrawal");
+            assertEquals(510_00, savedBalance(session));
+
+            // 99 months are saved from the new deposit, again until the balance drops below the minimum.
+            insertTransaction(session, "1000.00", "2020-01-20T12:00:00.000Z", "deposit");
+            insertTransaction(session, "0.01", "2030-01-15T12:00:00.000Z", "withdrawal");
+            assertEquals(1500_00, savedBalance(session));
+
+            // With this deposit, every month from February 1995 is saved until the goal is reached.
+            insertTransaction(session, "10000.00", "1995-01-10T12:00:00.000Z", "deposit");
+            assertEquals(3000_00, savedBalance(session));
+
+            clock.set(Instant.parse("2030-06-01T00:00:00Z"));
+            JsonPath history = yearlyBalanceHistory(session);
+            assertEquals(8999_99, Util.cents(history, "[0].open"));
+            assertEquals(8999_98, Util.cents(history, "[0].close"));
+
+            given()
+                    .spec(session)
+                    .delete("/api/v1/savingGoals/1")
+                    .then()
+                    .statusCode(204);
+            history = yearlyBalanceHistory(session);
+            assertEquals(11999_99, Util.cents(history, "[0].open"));
+            assertEquals(11999_98, Util.cents(history, "[0].close"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Performs a POST request on the SavingGoals API endpoint in a session without transactions.
+     *
+     * This test checks whether such a goal starts saving at the month start after the current time of the server.
+     */
+    @Test
+    public void virtualClockSavingGoalWithoutTransactionsTest() throws IOException {
+        Assume.assumeTrue("Only the reference server has a virtual clock", ApiConfig.usesReferenceServer());
+        VirtualClock clock = new VirtualClock(Instant.parse("2000-03-10T12:00:00Z"));
+        ReferenceServer server = ReferenceServer.start(SessionEviction.fromSystemProperties(), clock);
+        try {
+            RequestSpecification session = virtualSession(server);
+            createSavingGoal(session, "100", "40", "0");
+            insertTransaction(session, "200.00", "2000-03-20T12:00:00.000Z", "deposit");
+
+            // April, May and June, where the last month only saves what is left of the goal.
+            insertTransaction(session, "0.01", "2000-06-15T12:00:00.000Z", "withdrawal");
+            assertEquals(100_00, savedBalance(session));
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Creates a session on the given server.
+     *
+     * @return a request specification sending requests to the server with the new session
+     */
+    private static RequestSpecification virtualSession(ReferenceServer server) {
+        String sessionId = given()
+                .port(server.getPort())
+                .post("/api/v1/sessions")
+                .then()
+                .statusCode(201)
+                .extract()
+                .jsonPath()
+                .getString("id");
+        return new RequestSpecBuilder()
+                .addRequestSpecification(ApiConfig.session(sessionId))
+                .setPort(server.getPort())
+                .build();
+    }
+
+    private static void insertTransaction(RequestSpecification session, String amount, String date, String type) {
+        given()
+                .spec(session)
+                .body(Util.transactionJson(new TransactionSpec(amount, date, type)))
+                .post("/api/v1/transactions")
+                .then()
+                .statusCode(201);
+    }
+
+    private static void createSavingGoal(RequestSpecification session, String goal, String savePerMonth,
+                                         String minBalanceRequired) {
+        given()
+                .spec(session)
+                .body("{\n" +
+                        "  \"name\": \"Pension\",\n" +
+                        "  \"goal\": " + goal + ",\n" +
+                        "  \"savePerMonth\": " + savePerMonth + ",\n" +
+                        "  \"minBalanceRequired\": " + minBalanceRequired + "\n" +
+                        "}")
+                .post("/api/v1/savingGoals")
+                .then()
+                .statusCode(201);
+    }
+
+    /**
+     * @return the balance of the only saving goal of the session in cents
+     */
+    private static long savedBalance(RequestSpecification session) {
+        JsonPath response = given()
+                .spec(session)
+                .get("/api/v1/savingGoals")
+                .then()
+                .statusCode(200)
+                .body(matchesJsonSchema(SAVING_GOAL_LIST_SCHEMA))
+                .extract()
+                .jsonPath();
+        return Util.cents(response, "[0].balance");
+    }
+
+    private static JsonPath yearlyBalanceHistory(RequestSpecification session) {
+        return given()
+                .spec(session)
+                .queryParam("interval", "year")
+                .queryParam("intervals", 1)
+                .get("/api/v1/balance/history")
+                .then()
+                .statusCode(200)
+                .extract()
+                .jsonPath();
+    }
 }
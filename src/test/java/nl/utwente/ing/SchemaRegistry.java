@@ -0,0 +1,170 @@
+package nl.utwente.ing;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fge.jsonschema.core.exceptions.ProcessingException;
+import com.github.fge.jsonschema.core.report.ProcessingReport;
+import com.github.fge.jsonschema.main.JsonSchema;
+import com.github.fge.jsonschema.main.JsonSchemaFactory;
+import org.hamcrest.Description;
+import org.hamcrest.Matcher;
+import org.hamcrest.TypeSafeMatcher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Loads and compiles all JSON schemas used by the tests once, and provides matchers validating against the compiled
+ * schemas.
+ *
+ * {@link io.restassured.module.jsv.JsonSchemaValidator#matchesJsonSchema(URI)} creates a new schema factory for
+ * every assertion, so every assertion reloads the schema and every schema it references. The matchers returned by
+ * {@link #matchesJsonSchema(URI)} share a single factory, in which all schemas and their references are loaded up
+ * front.
+ */
+class SchemaRegistry {
+
+    static final Path SCHEMA_DIRECTORY = Paths.get("src/test/java/nl/utwente/ing/schemas");
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final JsonSchemaFactory FACTORY = JsonSchemaFactory.byDefault();
+    private static final Map<URI, JsonSchema> SCHEMAS = new ConcurrentHashMap<>();
+
+    static {
+        try (Stream<Path> paths = Files.walk(SCHEMA_DIRECTORY)) {
+            paths.filter(path -> path.toString().endsWith(".json"))
+                    .forEach(path -> SCHEMAS.put(path.toAbsolutePath().toUri(), load(path.toAbsolutePath().toUri())));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the schemas in " + SCHEMA_DIRECTORY, e);
+        }
+    }
+
+    private SchemaRegistry() {
+    }
+
+    /**
+     * Loads all schemas, if this has not happened yet.
+     *
+     * @return the number of loaded schemas
+     */
+    static int preload() {
+        return SCHEMAS.size();
+    }
+
+    /**
+     * Creates a matcher which validates a JSON document against the schema at the given location. The schema is
+     * loaded and cached if it was not loaded yet.
+     *
+     * @param uri the location of the schema
+     * @return a matcher which validates against the compiled schema
+     */
+    static Matcher<String> matchesJsonSchema(URI uri) {
+        return new SchemaMatcher(uri, SCHEMAS.computeIfAbsent(uri, SchemaRegistry::load));
+    }
+
+    /**
+     * Validates every element of a JSON array against the schema at the given location while the array is read, so
+     * that a large array is never held in memory as a whole.
+     *
+     * @param in the JSON array
+     * @param uri the location of the schema of the elements
+     * @param consumer receives every element after it is validated
+     * @return the number of elements
+     * @throws AssertionError if the document is not an array, or an element does not match the schema
+     */
+    static int validateElements(InputStream in, URI uri, Consumer<JsonNode> consumer) throws IOException {
+        JsonSchema schema = SCHEMAS.computeIfAbsent(uri, SchemaRegistry::load);
+        try (JsonParser parser = MAPPER.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new AssertionError("Expected a JSON array of elements matching " + uri);
+            }
+            int count = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                JsonNode element = MAPPER.readTree(parser);
+                ProcessingReport report;
+                try {
+                    report = schema.validate(element);
+                } catch (ProcessingException e) {
+                    throw new IllegalArgumentException("Could not validate " + element + " against " + uri, e);
+                }
+                if (!report.isSuccess()) {
+                    throw new AssertionError("Element " + count + " does not match the JSON schema " + uri + "\n"
+                            + report);
+                }
+                consumer.accept(element);
+                count++;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Loads a schema, and all schemas it references, into the shared factory.
+     */
+    private static JsonSchema load(URI uri) {
+        try {
+            JsonSchema schema = FACTORY.getJsonSchema(uri.toString());
+            loadReferences(MAPPER.readTree(uri.toURL()));
+            return schema;
+        } catch (ProcessingException | IOException e) {
+            throw new IllegalStateException("Could not load JSON schema " + uri, e);
+        }
+    }
+
+    private static void loadReferences(JsonNode node) throws ProcessingException {
+        if (node.isObject() && node.has("$ref") && node.get("$ref").isTextual()) {
+            // The factory caches every loaded document, so resolving the reference later on is a cache hit.
+            FACTORY.getJsonSchema(node.get("$ref").asText());
+        }
+
+        Iterator<JsonNode> children = node.elements();
+        while (children.hasNext()) {
+            loadReferences(children.next());
+        }
+    }
+
+    /**
+     * Validates a JSON document against a compiled schema.
+     */
+    private static class SchemaMatcher extends TypeSafeMatcher<String> {
+
+        private final URI uri;
+        private final JsonSchema schema;
+        private ProcessingReport report;
+
+        SchemaMatcher(URI uri, JsonSchema schema) {
+            this.uri = uri;
+            this.schema = schema;
+        }
+
+        @Override
+        protected boolean matchesSafely(String content) {
+            try {
+                report = schema.validate(MAPPER.readTree(content));
+                return report.isSuccess();
+            } catch (IOException | ProcessingException e) {
+                throw new IllegalArgumentException("Could not validate " + content + " against " + uri, e);
+            }
+        }
+
+        @Override
+        public void describeTo(Description description) {
+            description.appendText("The content to match the given JSON schema ").appendValue(uri);
+            if (report != null) {
+                description.appendText("\n").appendText(report.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package nl.utwente.ing;
+
+import io.restassured.module.jsv.JsonSchemaValidator;
+import org.hamcrest.Matcher;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the cost of a single schema assertion using RestAssured's validator, which loads the schema for every
+ * assertion, with the cost using the compiled schemas of the {@link SchemaRegistry}.
+ *
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+public class SchemaValidationBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 200;
+    private static final int ITERATIONS = 2_000;
+
+    private static final URI TRANSACTION_SCHEMA = SchemaRegistry.SCHEMA_DIRECTORY
+            .resolve("transactions/transaction.json").toAbsolutePath().toUri();
+    private static final URI PAYMENT_REQUEST_SCHEMA = SchemaRegistry.SCHEMA_DIRECTORY
+            .resolve("paymentrequests/payment-request.json").toAbsolutePath().toUri();
+
+    private static final String TRANSACTION =
+            "{" +
+            "\"id\": 1, " +
+            "\"date\": \"1889-04-20T19:45:04.030Z\", " +
+            "\"amount\": 213.12, " +
+            "\"externalIBAN\": \"NL05INGB0374182583\", " +
+            "\"type\": \"deposit\", " +
+            "\"description\": \"test\", " +
+            "\"category\": {\"id\": 1, \"name\": \"work\"}" +
+            "}";
+
+    private static final String PAYMENT_REQUEST =
+            "{" +
+            "\"id\": 1, " +
+            "\"description\": \"Payback for lunch\", " +
+            "\"due_date\": \"2018-08-22T16:09:32.998Z\", " +
+            "\"amount\": 213.04, " +
+            "\"number_of_requests\": 2, " +
+            "\"filled\": false, " +
+            "\"transactions\": [" + TRANSACTION + "]" +
+            "}";
+
+    @Test
+    public void transactionSchemaBenchmark() {
+        compare("transaction.json", TRANSACTION_SCHEMA, TRANSACTION);
+    }
+
+    @Test
+    public void paymentRequestSchemaBenchmark() {
+        compare("payment-request.json", PAYMENT_REQUEST_SCHEMA, PAYMENT_REQUEST);
+    }
+
+    private static void compare(String name, URI schema, String document) {
+        double uncached = measure(() -> JsonSchemaValidator.matchesJsonSchema(schema), document);
+        double cached = measure(() -> SchemaRegistry.matchesJsonSchema(schema), document);
+
+        System.out.println(String.format("%s: %.1f us per assertion uncached, %.1f us per assertion cached (%.1fx)",
+                name, uncached / 1_000, cached / 1_000, uncached / cached));
+        assertTrue(cached < uncached);
+    }
+
+    /**
+     * @return the average number of nanoseconds needed to create a matcher and match the document
+     */
+    private static double measure(Supplier<Matcher<?>> matchers, String document) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            assertTrue(matchers.get().matches(document));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            assertTrue(matchers.get().matches(document));
+        }
+        return (System.nanoTime() - start) / (double) ITERATIONS;
+    }
+}
@@ -0,0 +1,135 @@
+package nl.utwente.ing;
+
+import io.restassured.builder.RequestSpecBuilder;
+import io.restassured.specification.RequestSpecification;
+import nl.utwente.ing.server.ReferenceServer;
+import nl.utwente.ing.server.SessionEviction;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the expiry of sessions on a {@link ReferenceServer} of its own, which expires sessions after a short idle
+ * time. The requests of this class go to another port than those of the other tests, which RestAssured does not
+ * support while requests are made concurrently through the shared HTTP client, so this class is not part of the
+ * {@link TestSuite} and runs on its own. Skipped when the tests run against another server.
+ */
+public class SessionExpiryTests {
+
+    private static final long SOAK_IDLE_MILLIS = 100;
+    private static final long SOAK_EXPIRY_MILLIS = 1_000;
+    private static final int SOAK_ROUNDS = 3;
+    private static final int SOAK_THREADS = 8;
+    private static final int SOAK_SESSIONS_PER_THREAD = 25;
+    private static final long SOAK_TIMEOUT_MILLIS = 10_000;
+
+    @BeforeClass
+    public static void configureClient() {
+        ApiConfig.configure();
+    }
+
+    /**
+     * Creates sessions in bursts from concurrent clients on a reference server expiring sessions after a short idle
+     * time.
+     *
+     * This test checks whether every burst of sessions is deleted once it is no longer used, after which its
+     * requests are unauthorized, while a session which keeps being used survives all bursts. Session expiry is an
+     * extension of the reference server, so it is skipped against other servers.
+     */
+    @Test
+    public void expiredSessionsReclaimedSoakTest() throws IOException, InterruptedException, ExecutionException {
+        Assume.assumeTrue("Only the reference server expires sessions", ApiConfig.usesReferenceServer());
+        ReferenceServer server = ReferenceServer.start(new SessionEviction(SOAK_IDLE_MILLIS, 10_000,
+                SOAK_EXPIRY_MILLIS));
+        ExecutorService clients = Executors.newFixedThreadPool(SOAK_THREADS);
+        try {
+            // The first requests of a client are slow, so the kept session is created once they have been made.
+            getCategories(server, createSession(server), 200);
+            String kept = createSession(server);
+            for (int round = 0; round < SOAK_ROUNDS; round++) {
+                List<Future<String>> bursts = new ArrayList<>();
+                for (int i = 0; i < SOAK_THREADS; i++) {
+                    bursts.add(clients.submit(() -> {
+                        String last = null;
+                        for (int j = 0; j < SOAK_SESSIONS_PER_THREAD; j++) {
+                            last = createSession(server);
+                            getCategories(server, last, 200);
+                        }
+                        return last;
+                    }));
+                }
+
+                // The kept session keeps being used while the sessions of the bursts are left alone after their
+                // first request.
+                while (!done(bursts)) {
+                    getCategories(server, kept, 200);
+                    TimeUnit.MILLISECONDS.sleep(SOAK_IDLE_MILLIS);
+                }
+                long deadline = System.currentTimeMillis() + SOAK_TIMEOUT_MILLIS;
+                while (server.getSessions() > 1 && System.currentTimeMillis() < deadline) {
+                    getCategories(server, kept, 200);
+                    TimeUnit.MILLISECONDS.sleep(SOAK_IDLE_MILLIS);
+                }
+                List<String> created = new ArrayList<>();
+                for (Future<String> burst : bursts) {
+                    created.add(burst.get());
+                }
+                assertEquals("Expired sessions were not deleted", 1, server.getSessions());
+                for (String sessionId : created) {
+                    getCategories(server, sessionId, 401);
+                }
+            }
+            getCategories(server, kept, 200);
+            assertEquals(1 + SOAK_ROUNDS * SOAK_THREADS * SOAK_SESSIONS_PER_THREAD, server.getExpirations());
+            assertTrue("No session was evicted before it expired", server.getEvictions() > 0);
+        } finally {
+            clients.shutdownNow();
+            server.stop();
+        }
+    }
+
+    private static boolean done(List<Future<String>> futures) {
+        for (Future<String> future : futures) {
+            if (!future.isDone()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String createSession(ReferenceServer server) {
+        return given()
+                .port(server.getPort())
+                .post("/api/v1/sessions")
+                .then()
+                .statusCode(201)
+                .extract()
+                .jsonPath()
+                .getString("id");
+    }
+
+    private static void getCategories(ReferenceServer server, String sessionId, int status) {
+        RequestSpecification session = new RequestSpecBuilder()
+                .addRequestSpecification(ApiConfig.session(sessionId))
+                .setPort(server.getPort())
+                .build();
+        given()
+                .spec(session)
+                .get("/api/v1/categories")
+                .then()
+                .statusCode(status);
+    }
+}
@@ -24,10 +24,20 @@
  */
 package nl.utwente.ing;
 
+import org.junit.BeforeClass;
 import org.junit.Test;
 
+@ParallelSuite.IsolatedMethods
 public class SessionTests {
 
+    /**
+     * Configures the HTTP client used by the tests in this class.
+     */
+    @BeforeClass
+    public static void configureClient() {
+        ApiConfig.configure();
+    }
+
     /**
      * Performs a GET request on the sessions endpoint.
      * <p>
@@ -25,16 +25,27 @@
 package nl.utwente.ing;
 
 import org.junit.AfterClass;
+import org.junit.BeforeClass;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
-@RunWith(Suite.class)
+/**
+ * Runs all tests. Set the {@code suite.parallel} system property to run the tests concurrently, see
+ * {@link ParallelSuite}.
+ */
+@RunWith(ParallelSuite.class)
 @Suite.SuiteClasses({SessionTests.class, CategoryTests.class, TransactionTests.class, CategoryRuleTests.class,
         BalanceHistoryTests.class, SavingGoalsTests.class, PaymentRequestTests.class})
 public class TestSuite {
 
+    @BeforeClass
+    public static void setUp() {
+        ApiConfig.configure();
+        SchemaRegistry.preload();
+    }
+
     @AfterClass
-    public static void cleanUp() {
-        Util.deleteTestCategory(TransactionTests.testCategoryId, TransactionTests.sessionId);
+    public static void writeLatencyReport() {
+        LatencyReport.write();
     }
 }
@@ -0,0 +1,30 @@
+package nl.utwente.ing;
+
+/**
+ * Describes a transaction to be created by {@link Util#insertTransactions(String, java.util.List)}.
+ */
+class TransactionSpec {
+
+    final String amount;
+    final String date;
+    final String type;
+    final Integer categoryId;
+    final String categoryName;
+
+    /**
+     * @param amount Amount the transaction needs to be.
+     * @param date Date which the transaction was done, or null to use the current date.
+     * @param type Either deposit or withdrawal.
+     */
+    TransactionSpec(String amount, String date, String type) {
+        this(amount, date, type, null, null);
+    }
+
+    TransactionSpec(String amount, String date, String type, Integer categoryId, String categoryName) {
+        this.amount = amount;
+        this.date = date;
+        this.type = type;
+        this.categoryId = categoryId;
+        this.categoryName = categoryName;
+    }
+}
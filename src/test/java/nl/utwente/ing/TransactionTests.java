@@ -25,20 +25,42 @@
 package nl.utwente.ing;
 
 import io.restassured.http.ContentType;
+import io.restassured.response.Response;
+import io.restassured.specification.RequestSpecification;
 import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assume;
 import org.junit.Before;
+import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.URI;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static io.restassured.RestAssured.get;
 import static io.restassured.RestAssured.given;
-import static io.restassured.module.jsv.JsonSchemaValidator.matchesJsonSchema;
+import static nl.utwente.ing.SchemaRegistry.matchesJsonSchema;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 public class TransactionTests {
 
@@ -47,12 +69,12 @@ public class TransactionTests {
     private static final URI TRANSACTION_SCHEMA_PATH = Paths.get("src/test/java/nl/utwente/ing/schemas" +
                     "/transactions/transaction.json").toAbsolutePath().toUri();
 
-    public static String sessionId;
+    private static String sessionId;
 
     private static Integer testTransactionId;
     private static Integer clutterTransactionId;
 
-    public static Integer testCategoryId;
+    private static Integer testCategoryId;
     private static final String TEST_CATEGORY_NAME = "TransactionTests Test Category";
 
     private static final String TEST_TRANSACTION_INPUT_FORMAT =
@@ -78,6 +100,24 @@ public class TransactionTests {
             "}";
 
     private static final int TEST_OFFSET_NUMBER = 1;
+    private static final int CURSOR_TEST_TRANSACTIONS = 45;
+    private static final int CURSOR_TEST_LIMIT = 20;
+    private static final int RANGE_TEST_TRANSACTIONS = 120;
+    private static final int STREAMING_TEST_TRANSACTIONS = 5_000;
+    /**
+     * The number of transactions of a page too large for the socket buffers, so that the server is still sending it
+     * while the client pauses reading.
+     */
+    private static final int STREAMING_STALL_TEST_TRANSACTIONS = 40_000;
+    private static final long STREAMING_STALL_TIMEOUT_MILLIS = 10_000;
+
+    /**
+     * Configures the HTTP client used by the tests in this class.
+     */
+    @BeforeClass
+    public static void configureClient() {
+        ApiConfig.configure();
+    }
 
     /**
      * Makes sure all tests share the same session ID by setting sessionId if it does not exist yet.
@@ -117,17 +157,30 @@ public class TransactionTests {
         // No test transaction has been made yet, thus no need to delete anything.
         if (testTransactionId != null) {
             given()
-                    .header("X-session-ID", sessionId)
+                    .spec(ApiConfig.session(sessionId))
                     .delete(String.format("api/v1/transactions/%d", testTransactionId));
         }
 
         if (clutterTransactionId != null) {
             given()
-                    .header("X-session-ID", sessionId)
+                    .spec(ApiConfig.session(sessionId))
                     .delete(String.format("api/v1/transactions/%d", clutterTransactionId));
         }
     }
 
+    /**
+     * Removes the test category once all tests in this class have run.
+     */
+    @AfterClass
+    public static void deleteTestCategory() {
+        if (testCategoryId != null) {
+            Util.deleteTestCategory(testCategoryId, sessionId);
+            testCategoryId = null;
+        }
+        // The next run of this class may use another server, see EvictedSessionTests.
+        sessionId = null;
+    }
+
     /*
      *  Tests related to GET requests on the /transactions API endpoint.
      *  API Documentation: https://app.swaggerhub.com/apis/djhuistra/INGHonours/1.0.1#/transactions
@@ -143,7 +196,7 @@ public class TransactionTests {
         validSessionValidTransactionPostTest();
 
         int size = given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .get("api/v1/transactions")
                 .then()
                 .assertThat()
@@ -182,7 +235,7 @@ public class TransactionTests {
 
         // Insert test transaction 2.
         clutterTransactionId = given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .body(clutterTransaction)
                 .post("api/v1/transactions")
                 .then()
@@ -196,7 +249,7 @@ public class TransactionTests {
 
         // Send a valid get request with offset 1.
         int responseId = given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .queryParam("offset", 1)
                 .get("api/v1/transactions")
                 .then()
@@ -224,7 +277,7 @@ public class TransactionTests {
         validSessionTransactionsGetOffsetTest();
 
         Object[] categories = given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .queryParam("category", "work")
                 .get("/api/v1/transactions")
                 .then()
@@ -253,7 +306,7 @@ public class TransactionTests {
         validSessionTransactionsGetOffsetTest();
 
         int size = given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .queryParam("limit", TEST_OFFSET_NUMBER)
                 .get("/api/v1/transactions")
                 .then()
@@ -269,6 +322,344 @@ public class TransactionTests {
         assertThat(TEST_OFFSET_NUMBER, equalTo(size));
     }
 
+    /**
+     * Performs GET requests on the transactions endpoint.
+     *
+     * This test uses a valid session ID to test whether the category parameter reflects every way in which a
+     * transaction gets or loses a category: POST, PUT, PATCH of its category and DELETE.
+     */
+    @Test
+    public void validSessionTransactionsGetCategoryChangesTest() {
+        String categorySessionId = Util.getSessionID();
+        int work = Util.createTestCategory("work", categorySessionId);
+        int fun = Util.createTestCategory("fun", categorySessionId);
+
+        int first = Util.insertTransaction(categorySessionId, "10.00", "2018-01-01T12:00:00.000Z", "deposit", work,
+                "work");
+        int second = Util.insertTransaction(categorySessionId, "20.00", "2018-01-02T12:00:00.000Z", "deposit", work,
+                "work");
+        int third = Util.insertTransaction(categorySessionId, "30.00", "2018-01-03T12:00:00.000Z", "deposit", null,
+                null);
+        assertEquals(Arrays.asList(first, second), getTransactionIds(categorySessionId, "work"));
+
+        given()
+                .spec(ApiConfig.session(categorySessionId))
+                .body(String.format(TEST_CATEGORY_INPUT_FORMAT, work))
+                .patch(String.format("api/v1/transactions/%d/category", third))
+                .then()
+                .assertThat()
+                .statusCode(200);
+        given()
+                .spec(ApiConfig.session(categorySessionId))
+                .body(String.format(TEST_CATEGORY_INPUT_FORMAT, fun))
+                .patch(String.format("api/v1/transactions/%d/category", first))
+                .then()
+                .assertThat()
+                .statusCode(200);
+        assertEquals(Arrays.asList(second, third), getTransactionIds(categorySessionId, "work"));
+        assertEquals(Collections.singletonList(first), getTransactionIds(categorySessionId, "fun"));
+
+        // Moving the second transaction before the first one changes its place within its new category.
+        given()
+                .spec(ApiConfig.session(categorySessionId))
+                .body(Util.transactionJson(new TransactionSpec("20.00", "2017-12-31T12:00:00.000Z", "deposit", fun,
+                        "fun")))
+                .put(String.format("api/v1/transactions/%d", second))
+                .then()
+                .assertThat()
+                .statusCode(200);
+        assertEquals(Collections.singletonList(third), getTransactionIds(categorySessionId, "work"));
+        assertEquals(Arrays.asList(second, first), getTransactionIds(categorySessionId, "fun"));
+
+        Util.deleteTestTransaction(second, categorySessionId);
+        assertEquals(Collections.singletonList(first), getTransactionIds(categorySessionId, "fun"));
+    }
+
+    /**
+     * @return the IDs of the transactions of the given category, in the order in which they are listed
+     */
+    private static List<Integer> getTransactionIds(String sessionId, String category) {
+        return given()
+                .spec(ApiConfig.session(sessionId))
+                .queryParam("category", category)
+                .get("api/v1/transactions")
+                .then()
+                .assertThat()
+                .statusCode(200)
+                .body(matchesJsonSchema(TRANSACTION_LIST_SCHEMA_PATH))
+                .extract()
+                .jsonPath()
+                .getList("id", Integer.class);
+    }
+
+    /**
+     * Performs GET requests on the transactions endpoint.
+     *
+     * This test uses a valid session ID to test whether following the X-Next-Cursor header lists the same transactions
+     * as increasing offsets, whether the last page has no cursor, and whether a cursor keeps its place when a listed
+     * transaction is deleted. Cursors are an extension of the reference server, so it is skipped against other servers.
+     */
+    @Test
+    public void validSessionTransactionsGetCursorTest() {
+        Assume.assumeTrue("Cursors are only supported by the reference server", ApiConfig.usesReferenceServer());
+        String cursorSessionId = Util.getSessionID();
+
+        // Transactions inserted out of chronological order, three at every date.
+        List<TransactionSpec> specs = new ArrayList<>();
+        for (int i = 0; i < CURSOR_TEST_TRANSACTIONS; i++) {
+            int day = 1 + (i * 7) % (CURSOR_TEST_TRANSACTIONS / 3);
+            specs.add(new TransactionSpec("1.00", String.format("2018-01-%02dT12:00:00.000Z", day), "deposit"));
+        }
+        Util.insertTransactions(cursorSessionId, specs);
+
+        List<Integer> byOffset = new ArrayList<>();
+        for (int offset = 0; offset < CURSOR_TEST_TRANSACTIONS; offset += CURSOR_TEST_LIMIT) {
+            byOffset.addAll(getTransactionPage(cursorSessionId, offset, null).jsonPath().getList("id"));
+        }
+        assertEquals(CURSOR_TEST_TRANSACTIONS, byOffset.size());
+
+        List<Integer> byCursor = new ArrayList<>();
+        Response page = getTransactionPage(cursorSessionId, null, null);
+        byCursor.addAll(page.jsonPath().getList("id"));
+        String firstCursor = page.getHeader("X-Next-Cursor");
+        for (String cursor = firstCursor; cursor != null; cursor = page.getHeader("X-Next-Cursor")) {
+            page = getTransactionPage(cursorSessionId, null, cursor);
+            byCursor.addAll(page.jsonPath().getList("id"));
+        }
+        assertEquals(byOffset, byCursor);
+
+        // Deleting a transaction of the first page does not move the second page.
+        assertNotNull(firstCursor);
+        Util.deleteTestTransaction(byOffset.get(0), cursorSessionId);
+        assertEquals(byOffset.subList(CURSOR_TEST_LIMIT, 2 * CURSOR_TEST_LIMIT),
+                getTransactionPage(cursorSessionId, null, firstCursor).jsonPath().getList("id"));
+    }
+
+    /**
+     * Performs a GET request on the transactions endpoint.
+     *
+     * This test uses a valid session ID to test whether a cursor which was not returned by the server is rejected.
+     */
+    @Test
+    public void validSessionTransactionsGetInvalidCursorTest() {
+        Assume.assumeTrue("Cursors are only supported by the reference server", ApiConfig.usesReferenceServer());
+
+        given()
+                .spec(ApiConfig.session(sessionId))
+                .queryParam("cursor", "not a cursor")
+                .get("api/v1/transactions")
+                .then()
+                .assertThat()
+                .statusCode(405);
+    }
+
+    /**
+     * Performs GET requests on the transactions endpoint.
+     *
+     * This test uses a valid session ID to test whether the from and to parameters list exactly the transactions from
+     * the first date up to the second in order, also when following the X-Next-Cursor header, and whether an invalid
+     * date is rejected. Date ranges are an extension of the reference server, so it is skipped against other servers.
+     */
+    @Test
+    public void validSessionTransactionsGetDateRangeTest() {
+        Assume.assumeTrue("Date ranges are only supported by the reference server", ApiConfig.usesReferenceServer());
+        String rangeSessionId = Util.getSessionID();
+
+        // Transactions in four months inserted out of chronological order, including the bounds of February.
+        List<TransactionSpec> specs = new ArrayList<>();
+        for (int i = 0; i < RANGE_TEST_TRANSACTIONS; i++) {
+            int day = 1 + (i * 7) % 28;
+            specs.add(new TransactionSpec("1.00", String.format("2018-%02d-%02dT00:00:00.000Z", 1 + i % 4, day),
+                    "deposit"));
+        }
+        specs.add(new TransactionSpec("1.00", "2018-03-01T00:00:00.000Z", "deposit"));
+        specs.add(new TransactionSpec("1.00", "2018-01-31T23:59:59.999Z", "deposit"));
+        Util.insertTransactions(rangeSessionId, specs);
+
+        List<Integer> february = new ArrayList<>();
+        Response page = getTransactionPage(rangeSessionId, null, null);
+        while (true) {
+            List<Integer> ids = page.jsonPath().getList("id");
+            List<String> dates = page.jsonPath().getList("date");
+            for (int i = 0; i < ids.size(); i++) {
+                if (dates.get(i).startsWith("2018-02")) {
+                    february.add(ids.get(i));
+                }
+            }
+            String cursor = page.getHeader("X-Next-Cursor");
+            if (cursor == null) {
+                break;
+            }
+            page = getTransactionPage(rangeSessionId, null, cursor);
+        }
+        assertTrue(february.size() > CURSOR_TEST_LIMIT);
+
+        String from = "2018-02-01T00:00:00.000Z";
+        String to = "2018-03-01T00:00:00.000Z";
+        List<Integer> byCursor = new ArrayList<>();
+        page = getTransactionRangePage(rangeSessionId, from, to, null);
+        byCursor.addAll(page.jsonPath().getList("id"));
+        for (String cursor = page.getHeader("X-Next-Cursor"); cursor != null;
+             cursor = page.getHeader("X-Next-Cursor")) {
+            page = getTransactionRangePage(rangeSessionId, from, to, cursor);
+            byCursor.addAll(page.jsonPath().getList("id"));
+        }
+        assertEquals(february, byCursor);
+
+        given()
+                .spec(ApiConfig.session(rangeSessionId))
+                .queryParam("from", "February")
+                .get("api/v1/transactions")
+                .then()
+                .assertThat()
+                .statusCode(405);
+    }
+
+    /**
+     * @param from the first date of the page
+     * @param to the date up to which the page lists transactions
+     * @param cursor the cursor of the page, or null for none
+     * @return a page of at most {@link #CURSOR_TEST_LIMIT} transactions, of which the last page within the range has no
+     * cursor
+     */
+    private static Response getTransactionRangePage(String sessionId, String from, String to, String cursor) {
+        RequestSpecification request = given()
+                .spec(ApiConfig.session(sessionId))
+                .queryParam("limit", CURSOR_TEST_LIMIT)
+                .queryParam("from", from)
+                .queryParam("to", to);
+        if (cursor != null) {
+            request.queryParam("cursor", cursor);
+        }
+        Response response = request.get("api/v1/transactions");
+        response.then()
+                .assertThat()
+                .statusCode(200)
+                .body(matchesJsonSchema(TRANSACTION_LIST_SCHEMA_PATH));
+        if (response.jsonPath().getList("$").size() < CURSOR_TEST_LIMIT) {
+            assertNull(response.getHeader("X-Next-Cursor"));
+        }
+        return response;
+    }
+
+    /**
+     * Performs a GET request on the transactions endpoint.
+     *
+     * This test uses a valid session ID to test whether a large page of transactions is formatted according to the
+     * specification, validating every transaction while the response arrives instead of reading it into memory. The
+     * reference server is also expected to send the page in chunks.
+     */
+    @Test
+    public void validSessionTransactionsStreamingGetTest() throws IOException {
+        String streamingSessionId = Util.getSessionID();
+        List<TransactionSpec> specs = new ArrayList<>();
+        for (int i = 0; i < STREAMING_TEST_TRANSACTIONS; i++) {
+            specs.add(new TransactionSpec("1.00", String.format("2018-01-01T12:%02d:%02d.000Z", i / 60 % 60, i % 60),
+                    i % 2 == 0 ? "deposit" : "withdrawal"));
+        }
+        Set<Integer> inserted = new HashSet<>(Util.insertTransactions(streamingSessionId, specs));
+
+        HttpURLConnection connection = Util.openGet(streamingSessionId,
+                "api/v1/transactions?limit=" + STREAMING_TEST_TRANSACTIONS);
+        assertEquals(200, connection.getResponseCode());
+        if (ApiConfig.usesReferenceServer()) {
+            assertEquals("chunked", connection.getHeaderField("Transfer-Encoding"));
+        }
+        Set<Integer> listed = new HashSet<>();
+        try (InputStream in = connection.getInputStream()) {
+            assertEquals(STREAMING_TEST_TRANSACTIONS, SchemaRegistry.validateElements(in, TRANSACTION_SCHEMA_PATH,
+                    transaction -> listed.add(transaction.get("id").asInt())));
+        }
+        assertEquals(inserted, listed);
+    }
+
+    /**
+     * Performs a GET request on the transactions endpoint, and other requests of the same session while the response
+     * is read.
+     *
+     * This test reads the first transaction of a page too large to be buffered by the connection, and then creates a
+     * transaction and lists the categories of the session before reading the rest. The reference server is expected
+     * to answer these requests while it is still sending the page, and to send the page as it was requested.
+     */
+    @Test
+    public void validSessionTransactionsStreamingConcurrentGetTest() throws IOException {
+        Assume.assumeTrue("Only the reference server sends a list without locking its session",
+                ApiConfig.usesReferenceServer());
+        String streamingSessionId = Util.getSessionID();
+        List<TransactionSpec> specs = new ArrayList<>();
+        for (int i = 0; i < STREAMING_STALL_TEST_TRANSACTIONS; i++) {
+            specs.add(new TransactionSpec("1.00", String.format("2018-01-01T%02d:%02d:%02d.000Z", i / 3600 % 24,
+                    i / 60 % 60, i % 60), i % 2 == 0 ? "deposit" : "withdrawal"));
+        }
+        Set<Integer> inserted = new HashSet<>(Util.insertTransactions(streamingSessionId, specs));
+
+        HttpURLConnection connection = Util.openGet(streamingSessionId,
+                "api/v1/transactions?limit=" + STREAMING_STALL_TEST_TRANSACTIONS);
+        assertEquals(200, connection.getResponseCode());
+        Set<Integer> listed = new HashSet<>();
+        try (InputStream in = connection.getInputStream()) {
+            SchemaRegistry.validateElements(in, TRANSACTION_SCHEMA_PATH, transaction -> {
+                if (listed.isEmpty()) {
+                    awaitConcurrentRequests(streamingSessionId);
+                }
+                listed.add(transaction.get("id").asInt());
+            });
+        }
+        // The transaction created while the page was sent is not part of it.
+        assertEquals(inserted, listed);
+    }
+
+    /**
+     * Creates a transaction and lists the categories of a session, failing if they are not answered in time.
+     */
+    private static void awaitConcurrentRequests(String sessionId) {
+        CompletableFuture<Void> requests = CompletableFuture.runAsync(() -> {
+            Util.insertTransaction(sessionId, "2.00", "2018-01-02T12:00:00.000Z", "deposit", null, null);
+            given()
+                    .spec(ApiConfig.session(sessionId))
+                    .get("api/v1/categories")
+                    .then()
+                    .assertThat()
+                    .statusCode(200);
+        });
+        try {
+            requests.get(STREAMING_STALL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new AssertionError("The session was locked while a list of it was sent", e);
+        } catch (ExecutionException e) {
+            throw new AssertionError("A request failed while a list of its session was sent", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the requests", e);
+        }
+    }
+
+    /**
+     * @param offset the offset of the page, or null for none
+     * @param cursor the cursor of the page, or null for none
+     * @return a page of at most {@link #CURSOR_TEST_LIMIT} transactions
+     */
+    private static Response getTransactionPage(String sessionId, Integer offset, String cursor) {
+        RequestSpecification request = given()
+                .spec(ApiConfig.session(sessionId))
+                .queryParam("limit", CURSOR_TEST_LIMIT);
+        if (offset != null) {
+            request.queryParam("offset", offset);
+        }
+        if (cursor != null) {
+            request.queryParam("cursor", cursor);
+        }
+        Response response = request.get("api/v1/transactions");
+        response.then()
+                .assertThat()
+                .statusCode(200)
+                .body(matchesJsonSchema(TRANSACTION_LIST_SCHEMA_PATH));
+        if (response.jsonPath().getList("$").size() < CURSOR_TEST_LIMIT) {
+            assertNull(response.getHeader("X-Next-Cursor"));
+        }
+        return response;
+    }
+
     /**
      * Performs a GET request on the transactions endpoint.
      *
@@ -299,7 +690,7 @@ public class TransactionTests {
         validSessionValidTransactionPostTest();
 
         int transactionId = given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .get(String.format("api/v1/transactions/%d", testTransactionId))
                 .then()
                 .assertThat()
@@ -324,7 +715,7 @@ public class TransactionTests {
     @Test
     public void validSessionInvalidTransactionIdGetTest() {
         given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .get(String.format("api/v1/transactions/%d", testTransactionId))
                 .then()
                 .assertThat()
@@ -342,7 +733,7 @@ public class TransactionTests {
         validSessionValidTransactionPostTest();
 
         given()
-                .header("X-session-id", Util.getSessionID())
+                .spec(ApiConfig.session(Util.getSessionID()))
                 .get(String.format("api/v1/transactions/%d", testTransactionId))
                 .then()
                 .assertThat()
@@ -376,7 +767,7 @@ public class TransactionTests {
     @Test
     public void validSessionValidTransactionPostTest() {
         testTransactionId = given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .body(String.format(TEST_TRANSACTION_INPUT_FORMAT, testCategoryId))
                 .post("api/v1/transactions")
                 .then()
@@ -412,7 +803,7 @@ public class TransactionTests {
     @Test
     public void validSessionInvalidTransactionPostTest() {
         given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .body(TEST_TRANSACTION_INVALID)
                 .post("api/v1/transactions")
                 .then()
@@ -420,6 +811,94 @@ public class TransactionTests {
                 .statusCode(405);
     }
 
+    /*
+     *  Tests related to POST requests on the /transactions/batch API endpoint.
+     *  This endpoint is an extension to the API used to seed large data sets; the tests are skipped when the server
+     *  does not support it.
+     */
+
+    /**
+     * Performs a POST request on the transactions/batch endpoint.
+     *
+     * This test uses a valid session ID to test whether multiple transactions can be created at once, and whether
+     * the created transactions are returned in the order in which they were sent.
+     */
+    @Test
+    public void validSessionValidTransactionsBatchPostTest() {
+        Assume.assumeTrue(Util.supportsBatchInsert(sessionId));
+
+        String batch = "[" +
+                String.format(TEST_TRANSACTION_INPUT_FORMAT, testCategoryId) + ", " +
+                Util.transactionJson(new TransactionSpec("23.53", "1889-04-20T19:45:05.030Z", "withdrawal")) +
+                "]";
+
+        List<Integer> ids = given()
+                .spec(ApiConfig.session(sessionId))
+                .body(batch)
+                .post("api/v1/transactions/batch")
+                .then()
+                .assertThat()
+                .statusCode(201)
+                .contentType(ContentType.JSON)
+                .body(matchesJsonSchema(TRANSACTION_LIST_SCHEMA_PATH))
+                .body("$", hasSize(2))
+                .body("[0].type", equalTo("deposit"))
+                .body("[1].type", equalTo("withdrawal"))
+                .extract()
+                .jsonPath()
+                .getList("id", Integer.class);
+
+        testTransactionId = ids.get(0);
+        clutterTransactionId = ids.get(1);
+
+        for (int id : ids) {
+            given()
+                    .spec(ApiConfig.session(sessionId))
+                    .get(String.format("api/v1/transactions/%d", id))
+                    .then()
+                    .assertThat()
+                    .statusCode(200)
+                    .body(matchesJsonSchema(TRANSACTION_SCHEMA_PATH));
+        }
+    }
+
+    /**
+     * Performs a POST request on the transactions/batch endpoint.
+     *
+     * This test uses a valid session ID with a batch containing an invalid transaction to test whether the whole
+     * batch is rejected.
+     */
+    @Test
+    public void validSessionInvalidTransactionsBatchPostTest() {
+        Assume.assumeTrue(Util.supportsBatchInsert(sessionId));
+
+        given()
+                .spec(ApiConfig.session(sessionId))
+                .body("[" + String.format(TEST_TRANSACTION_INPUT_FORMAT, testCategoryId) + ", " +
+                        TEST_TRANSACTION_INVALID + "]")
+                .post("api/v1/transactions/batch")
+                .then()
+                .assertThat()
+                .statusCode(405);
+    }
+
+    /**
+     * Performs a POST request on the transactions/batch endpoint.
+     *
+     * This test uses an invalid session ID to test whether the status code is 401 Unauthorized.
+     */
+    @Test
+    public void invalidSessionTransactionsBatchPostTest() {
+        Assume.assumeTrue(Util.supportsBatchInsert(sessionId));
+
+        given()
+                .body("[" + String.format(TEST_TRANSACTION_INPUT_FORMAT, testCategoryId) + "]")
+                .post("api/v1/transactions/batch")
+                .then()
+                .assertThat()
+                .statusCode(401);
+    }
+
     /*
      *  Tests related to PUT requests on the /transactions/{transactionId} API endpoint.
      *  API Documentation: https://app.swaggerhub.com/apis/djhuistra/INGHonours/1.0.1#/transactions/putTransactions
@@ -444,7 +923,7 @@ public class TransactionTests {
                 "\"type\": \"deposit\" }";
 
         String response = given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .body(newTransaction)
                 .put(String.format("api/v1/transactions/%d", testTransactionId))
                 .then()
@@ -473,7 +952,7 @@ public class TransactionTests {
         validSessionValidTransactionPostTest();
 
         given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .body(TEST_TRANSACTION_INVALID)
                 .put(String.format("api/v1/transactions/%d", testTransactionId))
                 .then()
@@ -500,7 +979,7 @@ public class TransactionTests {
                 "\"description\": \"asiodjf\" }";
 
         given()
-                .header("X-session-ID", Util.getSessionID())
+                .spec(ApiConfig.session(Util.getSessionID()))
                 .body(newTransaction)
                 .put(String.format("api/v1/transactions/%d", testTransactionId))
                 .then()
@@ -531,7 +1010,7 @@ public class TransactionTests {
     @Test
     public void validSessionInvalidTransactionIdPutTest() {
         given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .body(String.format(TEST_TRANSACTION_INPUT_FORMAT, testCategoryId))
                 .put(String.format("api/v1/transactions/%d", -42))
                 .then()
@@ -556,7 +1035,7 @@ public class TransactionTests {
         validSessionValidTransactionPostTest();
 
         given()
-                .header("X-session-id", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .delete(String.format("api/v1/transactions/%d", testTransactionId))
                 .then()
                 .assertThat()
@@ -575,7 +1054,7 @@ public class TransactionTests {
         validSessionValidTransactionPostTest();
 
         given()
-                .header("X-session-id", Util.getSessionID())
+                .spec(ApiConfig.session(Util.getSessionID()))
                 .delete(String.format("api/v1/transactions/%d", testTransactionId))
                 .then()
                 .assertThat()
@@ -609,7 +1088,7 @@ public class TransactionTests {
     @Test
     public void validSessionInvalidTransactionIdDeleteTest() {
         given()
-                .header("X-session-id", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .delete(String.format("api/v1/transactions/%d", -42))
                 .then()
                 .assertThat()
@@ -633,7 +1112,7 @@ public class TransactionTests {
         validSessionValidTransactionPostTest();
 
         int categoryId = given()
-                .header("X-session-id", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .body(String.format(TEST_CATEGORY_INPUT_FORMAT, testCategoryId))
                 .patch(String.format("api/v1/transactions/%d/category", testTransactionId))
                 .then()
@@ -659,7 +1138,7 @@ public class TransactionTests {
         validSessionValidTransactionPostTest();
 
         given()
-                .header("X-session-id", Util.getSessionID())
+                .spec(ApiConfig.session(Util.getSessionID()))
                 .body(String.format(TEST_CATEGORY_INPUT_FORMAT, testCategoryId))
                 .patch(String.format("api/v1/transactions/%d/category", testTransactionId))
                 .then()
@@ -694,7 +1173,7 @@ public class TransactionTests {
         validSessionValidTransactionPostTest();
 
         given()
-                .header("X-session-id", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .body(String.format(TEST_CATEGORY_INPUT_FORMAT, -42))
                 .patch(String.format("api/v1/transactions/%d/category", testTransactionId))
                 .then()
@@ -711,7 +1190,7 @@ public class TransactionTests {
     @Test
     public void validSessionInvalidTransactionIdValidCategoryIdPatchTest() {
     given()
-            .header("X-session-id", sessionId)
+            .spec(ApiConfig.session(sessionId))
             .body(String.format(TEST_CATEGORY_INPUT_FORMAT, testCategoryId))
             .patch(String.format("api/v1/transactions/%d/category", -42))
             .then()
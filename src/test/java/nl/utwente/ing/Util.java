@@ -24,19 +24,82 @@
  */
 package nl.utwente.ing;
 
+import io.restassured.RestAssured;
+import io.restassured.path.json.JsonPath;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.net.URL;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static io.restassured.RestAssured.given;
 import static io.restassured.RestAssured.post;
-import static io.restassured.module.jsv.JsonSchemaValidator.matchesJsonSchema;
+import static nl.utwente.ing.SchemaRegistry.matchesJsonSchema;
 
 class Util {
 
     private static final Path SESSION_SCHEMA_PATH = Paths.get("src/test/java/nl/utwente/ing/schemas/session.json");
-    static SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+
+    /**
+     * Maximum number of transactions sent in a single request to the batch endpoint.
+     */
+    private static final int SEED_BATCH_SIZE = Integer.getInteger("seed.batchSize", 1000);
+
+    /**
+     * Number of concurrent requests used to seed transactions on servers without a batch endpoint.
+     */
+    private static final int SEED_THREADS = Integer.getInteger("seed.threads", 8);
+
+    private static ExecutorService seedExecutor;
+    private static Boolean batchInsertSupported;
+    /**
+     * SimpleDateFormat is not thread-safe, so every thread gets its own instance. This allows test classes to run
+     * concurrently in the {@link ParallelSuite}. Dates are formatted in UTC, as indicated by the 'Z' suffix.
+     */
+    private static final ThreadLocal<SimpleDateFormat> DATE_FORMAT = ThreadLocal.withInitial(() -> {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format;
+    });
+
+    /**
+     * Formats a date in the format expected by the API.
+     *
+     * @param date the date to format
+     * @return the formatted date
+     */
+    static String formatDate(Date date) {
+        return DATE_FORMAT.get().format(date);
+    }
+
+    /**
+     * Reads an amount from a response as a number of cents. Decimals are parsed as {@link BigDecimal} (see
+     * {@link ApiConfig}), so no rounding takes place.
+     *
+     * @param response the response body
+     * @param path the path of the amount
+     * @return the amount in cents
+     * @throws ArithmeticException if the amount has more than two decimals
+     */
+    static long cents(JsonPath response, String path) {
+        Object amount = response.get(path);
+        if (amount == null) {
+            throw new AssertionError("Missing amount at " + path);
+        }
+        return new BigDecimal(amount.toString()).movePointRight(2).longValueExact();
+    }
 
     /**
      * Accesses the session API endpoint to generate a new session ID.
@@ -58,7 +121,7 @@ class Util {
 
     static int createTestCategory(String name, String sessionId) {
         return given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .body(String.format("{\"name\": \"%s\"}", name))
                 .post("api/v1/categories")
                 .then()
@@ -82,27 +145,100 @@ class Util {
      */
     static int insertTransaction(String sessionId, String amount, String date, String type, Integer categoryId,
                                  String categoryName) {
-        if (date == null) date = DATE_FORMAT.format(Calendar.getInstance().getTime());
+        String transaction = transactionJson(new TransactionSpec(amount, date, type, categoryId, categoryName));
+        System.out.println(transaction);
+        return postTransaction(sessionId, transaction);
+    }
+
+    /**
+     * Creates all given transactions and returns their IDs in the same order.
+     *
+     * Servers supporting the batch endpoint receive the transactions in chunks of {@code seed.batchSize}. Other
+     * servers receive one request per transaction, submitted concurrently by {@code seed.threads} workers. In that
+     * case transactions sharing the same date may be stored in any order.
+     *
+     * @param sessionId The session ID which needs to be used to create the transactions.
+     * @param transactions The transactions to create.
+     * @return the IDs of the newly created transactions.
+     */
+    static List<Integer> insertTransactions(String sessionId, List<TransactionSpec> transactions) {
+        List<Integer> ids = new ArrayList<>(transactions.size());
+
+        if (supportsBatchInsert(sessionId)) {
+            for (int from = 0; from < transactions.size(); from += SEED_BATCH_SIZE) {
+                List<TransactionSpec> chunk =
+                        transactions.subList(from, Math.min(from + SEED_BATCH_SIZE, transactions.size()));
+                ids.addAll(postTransactionBatch(sessionId, chunk));
+            }
+            return ids;
+        }
+
+        List<Future<Integer>> futures = new ArrayList<>(transactions.size());
+        for (TransactionSpec transaction : transactions) {
+            String body = transactionJson(transaction);
+            futures.add(seedExecutor().submit(() -> postTransaction(sessionId, body)));
+        }
+
+        try {
+            for (Future<Integer> future : futures) {
+                ids.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while seeding transactions", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not seed transactions", e.getCause());
+        }
+
+        return ids;
+    }
+
+    /**
+     * Checks whether the server under test supports {@code POST api/v1/transactions/batch} by sending it an empty
+     * batch. The result is cached, as all tests run against the same server.
+     *
+     * @param sessionId A valid session ID.
+     * @return whether the batch endpoint is supported.
+     */
+    static synchronized boolean supportsBatchInsert(String sessionId) {
+        if (batchInsertSupported == null) {
+            batchInsertSupported = given()
+                    .spec(ApiConfig.session(sessionId))
+                    .body("[]")
+                    .post("api/v1/transactions/batch")
+                    .statusCode() == 201;
+        }
+
+        return batchInsertSupported;
+    }
 
-        String TRANSACTION_INPUT_FORMAT =
-            "{" +
-                "\"date\": \"%s\", " +
-                "\"amount\": %s, " +
+    /**
+     * Serializes a transaction specification to the transaction input format of the API.
+     */
+    static String transactionJson(TransactionSpec transaction) {
+        String date = transaction.date;
+        if (date == null) date = formatDate(Calendar.getInstance().getTime());
+
+        return "{" +
+                "\"date\": \"" + date + "\", " +
+                "\"amount\": " + transaction.amount + ", " +
                 "\"externalIBAN\": \"NL05INGB0374182583\", " +
-                "\"type\": \"%s\", " +
+                "\"type\": \"" + transaction.type + "\", " +
                 "\"description\": \"test\"" +
-                (categoryId == null || categoryName == null ? "" :
+                (transaction.categoryId == null || transaction.categoryName == null ? "" :
                         "," +
                         "\"category\": {" +
-                        "    \"id\": " + categoryId + "," +
-                        "    \"name\": \"" + categoryName + "\""+
+                        "    \"id\": " + transaction.categoryId + "," +
+                        "    \"name\": \"" + transaction.categoryName + "\""+
                         "}"
                 ) +
             "}";
-        System.out.println(String.format(TRANSACTION_INPUT_FORMAT, date, amount, type));
+    }
+
+    private static int postTransaction(String sessionId, String transaction) {
         return given()
-                .header("X-session-ID", sessionId)
-                .body(String.format(TRANSACTION_INPUT_FORMAT, date, amount, type))
+                .spec(ApiConfig.session(sessionId))
+                .body(transaction)
                 .post("/api/v1/transactions")
                 .then()
                 .statusCode(201)
@@ -113,21 +249,70 @@ class Util {
                 .getInt("id");
     }
 
+    private static List<Integer> postTransactionBatch(String sessionId, List<TransactionSpec> transactions) {
+        StringBuilder body = new StringBuilder("[");
+        for (TransactionSpec transaction : transactions) {
+            if (body.length() > 1) body.append(',');
+            body.append(transactionJson(transaction));
+        }
+        body.append(']');
+
+        return given()
+                .spec(ApiConfig.session(sessionId))
+                .body(body.toString())
+                .post("/api/v1/transactions/batch")
+                .then()
+                .statusCode(201)
+                .extract()
+                .response()
+                .getBody()
+                .jsonPath()
+                .getList("id", Integer.class);
+    }
+
+    private static synchronized ExecutorService seedExecutor() {
+        if (seedExecutor == null) {
+            seedExecutor = Executors.newFixedThreadPool(SEED_THREADS, runnable -> {
+                Thread thread = new Thread(runnable, "transaction-seeder");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        return seedExecutor;
+    }
+
+    /**
+     * Sends a GET request without RestAssured, which reads a whole response into memory before it can be inspected,
+     * so that the response body can be read while it arrives.
+     *
+     * @param sessionId The session ID which needs to be used for the request.
+     * @param path The path and query of the request, relative to the server.
+     * @return the connection, from which the response can be read.
+     */
+    static HttpURLConnection openGet(String sessionId, String path) throws IOException {
+        ApiConfig.configure();
+        URL url = new URL(new URL(RestAssured.baseURI + ":" + RestAssured.port + "/"), path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestProperty(ApiConfig.SESSION_HEADER, sessionId);
+        return connection;
+    }
+
     static void deleteTestTransaction(int id, String sessionId) {
         given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .delete(String.format("api/v1/transactions/%d", id));
     }
 
     static void deleteTestCategory(int id, String sessionId) {
         given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .delete(String.format("api/v1/categories/%d", id));
     }
 
     static void deleteTestCategoryRule(int id, String sessionId) {
         given()
-                .header("X-session-ID", sessionId)
+                .spec(ApiConfig.session(sessionId))
                 .delete(String.format("api/v1/categoryrules/%d", id));
     }
 }
@@ -0,0 +1,31 @@
+package nl.utwente.ing.server;
+
+/**
+ * Thrown while handling a request to answer it with an error status code.
+ */
+final class ApiException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    final int status;
+
+    private ApiException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    static ApiException unauthorized() {
+        return new ApiException(401, "Session ID is missing or invalid");
+    }
+
+    static ApiException notFound(String message) {
+        return new ApiException(404, message);
+    }
+
+    /**
+     * The API answers invalid input with 405 Method Not Allowed rather than 400 Bad Request.
+     */
+    static ApiException invalidInput(String message) {
+        return new ApiException(405, message);
+    }
+}
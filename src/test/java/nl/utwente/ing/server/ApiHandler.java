@@ -0,0 +1,583 @@
+package nl.utwente.ing.server;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Routes the requests of the {@code api/v1} endpoints to the session they belong to.
+ *
+ * If the server keeps a {@link WriteAheadLog}, the creation of sessions and their successful changes are appended to
+ * it, and acknowledged once they are durable. The changes are replayed by routing the logged requests again, after
+ * which any category rule they apply on the history has been applied completely, as if it had finished before the next
+ * change. Reads are not isolated from changes which are not durable yet: a request of the same session may observe a
+ * change before it is acknowledged, which is lost if the server crashes before the change is durable.
+ */
+final class ApiHandler implements HttpHandler, WriteAheadLog.Replay {
+
+    private static final String PATH_PREFIX = "/api/v1/";
+    private static final String SESSION_HEADER = "X-session-ID";
+    private static final String SESSION_PARAMETER = "session_id";
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String ETAG_HEADER = "ETag";
+    private static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+    private static final int DEFAULT_INTERVALS = 24;
+
+    private final SessionRegistry sessions;
+    private final Clock clock;
+    /**
+     * The log of the changes of the sessions, or null if they are kept in memory only.
+     */
+    private final WriteAheadLog log;
+
+    ApiHandler(SessionRegistry sessions, Clock clock, WriteAheadLog log) {
+        this.sessions = sessions;
+        this.clock = clock;
+        this.log = log;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            Response response;
+            try {
+                response = route(exchange);
+            } catch (ApiException e) {
+                response = error(e.status, e.getMessage());
+            } catch (RuntimeException e) {
+                response = error(500, e.toString());
+            }
+            send(exchange, response);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Response route(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String lowerCasePath = path.toLowerCase(Locale.ROOT);
+        if (!lowerCasePath.startsWith(PATH_PREFIX)) {
+            throw ApiException.notFound("Unknown path " + lowerCasePath);
+        }
+
+        String method = exchange.getRequestMethod();
+        Map<String, String> parameters = parameters(exchange.getRequestURI().getRawQuery());
+        Request request = new Request(method, path, parameters, exchange.getRequestHeaders().get(IF_NONE_MATCH_HEADER),
+                method.equals("GET") ? null : body(exchange), clock.instant());
+
+        if (request.segments[0].equals("sessions") && request.segments.length == 1) {
+            requireMethod(method, "POST");
+            String id = sessions.create();
+            if (log != null) {
+                log.sync(log.created(id));
+            }
+            JsonObject json = new JsonObject();
+            json.addProperty("id", id);
+            return new Response(201, json);
+        }
+
+        String sessionId = sessionId(exchange, parameters);
+        Session session = sessionId == null ? null : sessions.acquire(sessionId);
+        if (session == null) {
+            throw ApiException.unauthorized();
+        }
+        try {
+            if (!method.equals("GET")) {
+                // A change is logged while the session is locked, so that the changes of a session are logged in the
+                // order in which they were made. Other requests can proceed while it is made durable, and may read
+                // the change before it is acknowledged.
+                Response response;
+                long position = 0;
+                synchronized (session) {
+                    response = route(session, request);
+                    if (log != null) {
+                        position = log.changed(sessionId, method, path, exchange.getRequestURI().getRawQuery(),
+                                request.body, request.now);
+                    }
+                }
+                if (log != null) {
+                    log.sync(position);
+                }
+                return response;
+            }
+            // A list is copied from the session and written to the client after the session is unlocked, so that a
+            // slow client does not keep the session locked.
+            synchronized (session) {
+                return route(session, request);
+            }
+        } finally {
+            sessions.release(sessionId);
+        }
+    }
+
+    /**
+     * Replays the creation of a session from the log.
+     */
+    @Override
+    public void created(String sessionId) {
+        sessions.restore(sessionId);
+    }
+
+    /**
+     * Replays a change of a session from the log by routing its request again. Category rules applied on the history
+     * by the change are applied completely before the next change is replayed. A rule applied in the background has
+     * the same outcome, as it matches the transactions as they were when it was applied.
+     */
+    @Override
+    public void changed(String sessionId, String method, String path, String query, String body, Instant now)
+            throws IOException {
+        Session session = sessions.acquire(sessionId);
+        // A session is only deleted after its last change, but may have expired while the log is replayed.
+        if (session == null) {
+            return;
+        }
+        try {
+            synchronized (session) {
+                route(session, new Request(method, path, parameters(query), null, body, now));
+                session.finishHistoryJobs();
+            }
+        } finally {
+            sessions.release(sessionId);
+        }
+    }
+
+    /**
+     * Replays the deletion of an expired session from the log.
+     */
+    @Override
+    public void expired(String sessionId) {
+        sessions.delete(sessionId);
+    }
+
+    private Response route(Session session, Request request) {
+        String[] segments = request.segments;
+        String method = request.method;
+        Map<String, String> parameters = request.parameters;
+        switch (segments[0]) {
+            case "transactions":
+                return transactions(session, request);
+            case "categories":
+                return categories(session, request);
+            case "categoryrules":
+                return categoryRules(session, request);
+            case "balance":
+                if (segments.length == 2 && segments[1].equals("history")) {
+                    requireMethod(method, "GET");
+                    Interval interval = Interval.parse(parameters.getOrDefault("interval", "month"));
+                    Integer intervals = integerParameter(parameters, "intervals");
+                    if (intervals != null && intervals < 1) {
+                        throw ApiException.invalidInput("intervals must be positive");
+                    }
+                    int count = intervals == null ? DEFAULT_INTERVALS : intervals;
+                    return conditional(request, session.balanceHistoryTag(interval, count, request.now),
+                            () -> ok(session.balanceHistory(interval, count, request.now)));
+                }
+                break;
+            case "savinggoals":
+                if (segments.length == 1) {
+                    if (method.equals("GET")) {
+                        return conditional(request, session.savingGoalsTag(), () -> ok(list(session.savingGoals())));
+                    }
+                    requireMethod(method, "POST");
+                    return created(session.createSavingGoal(Json.object(request.body), request.now));
+                } else if (segments.length == 2) {
+                    requireMethod(method, "DELETE");
+                    session.deleteSavingGoal(id(segments[1]));
+                    return noContent();
+                }
+                break;
+            case "paymentrequests":
+                if (segments.length == 1) {
+                    if (method.equals("GET")) {
+                        return ok(list(session.paymentRequests()));
+                    }
+                    requireMethod(method, "POST");
+                    return created(session.createPaymentRequest(Json.object(request.body)));
+                }
+                break;
+            default:
+                break;
+        }
+        throw ApiException.notFound("Unknown path " + request.path);
+    }
+
+    private Response transactions(Session session, Request request) {
+        String method = request.method;
+        String[] segments = request.segments;
+        Map<String, String> parameters = request.parameters;
+        if (segments.length == 1) {
+            if (method.equals("GET")) {
+                String cursor = parameters.get("cursor");
+                Page page = session.transactions(integerParameter(parameters, "offset"),
+                        integerParameter(parameters, "limit"), parameters.get("category"),
+                        cursor == null ? null : Cursor.decode(cursor), dateParameter(parameters, "from"),
+                        dateParameter(parameters, "to"));
+                Response response = ok(list(session.transactions(page), Transaction::toJson));
+                if (page.next != null) {
+                    response.headers.put(NEXT_CURSOR_HEADER, page.next.encode());
+                }
+                return response;
+            }
+            requireMethod(method, "POST");
+            return created(session.createTransaction(Json.object(request.body)));
+        }
+
+        if (segments.length == 2 && segments[1].equals("batch")) {
+            requireMethod(method, "POST");
+            return created(session.createTransactions(Json.parse(request.body)));
+        }
+
+        int id = id(segments[1]);
+        if (segments.length == 2) {
+            switch (method) {
+                case "GET":
+                    return ok(session.transaction(id));
+                case "PUT":
+                    return ok(session.updateTransaction(id, Json.object(request.body)));
+                case "DELETE":
+                    session.deleteTransaction(id);
+                    return noContent();
+                default:
+                    throw ApiException.invalidInput("Unsupported method " + method);
+            }
+        }
+
+        if (segments.length == 3 && segments[2].equals("category")) {
+            requireMethod(method, "PATCH");
+            return ok(session.assignCategory(id, Json.object(request.body)));
+        }
+        throw ApiException.notFound("Unknown path");
+    }
+
+    private Response categories(Session session, Request request) {
+        String method = request.method;
+        String[] segments = request.segments;
+        if (segments.length == 1) {
+            if (method.equals("GET")) {
+                return conditional(request, session.categoriesTag(), () -> ok(session.categories()));
+            }
+            requireMethod(method, "POST");
+            return created(session.createCategory(Json.object(request.body)));
+        }
+
+        if (segments.length == 2) {
+            int id = id(segments[1]);
+            switch (method) {
+                case "GET":
+                    return ok(session.category(id));
+                case "PUT":
+                    return ok(session.updateCategory(id, Json.object(request.body)));
+                case "DELETE":
+                    session.deleteCategory(id);
+                    return noContent();
+                default:
+                    throw ApiException.invalidInput("Unsupported method " + method);
+            }
+        }
+        throw ApiException.notFound("Unknown path");
+    }
+
+    private Response categoryRules(Session session, Request request) {
+        String method = request.method;
+        String[] segments = request.segments;
+        if (segments.length == 1) {
+            if (method.equals("GET")) {
+                return conditional(request, session.categoryRulesTag(), () -> ok(list(session.categoryRules())));
+            }
+            requireMethod(method, "POST");
+            return created(session.createCategoryRule(Json.object(request.body)));
+        }
+
+        if (segments.length == 2) {
+            int id = id(segments[1]);
+            switch (method) {
+                case "GET":
+                    return ok(session.categoryRule(id));
+                case "PUT":
+                    return ok(session.updateCategoryRule(id, Json.object(request.body)));
+                case "DELETE":
+                    session.deleteCategoryRule(id);
+                    return noContent();
+                default:
+                    throw ApiException.invalidInput("Unsupported method " + method);
+            }
+        }
+
+        if (segments.length == 3 && segments[2].equals("status")) {
+            requireMethod(method, "GET");
+            return ok(session.historyJob(id(segments[1])));
+        }
+        throw ApiException.notFound("Unknown path");
+    }
+
+    /**
+     * @return the session ID of a request from its session header, or its {@code session_id} parameter, or null if
+     * it has neither
+     */
+    private static String sessionId(HttpExchange exchange, Map<String, String> parameters) {
+        String id = exchange.getRequestHeaders().getFirst(SESSION_HEADER);
+        return id != null ? id : parameters.get(SESSION_PARAMETER);
+    }
+
+    private static void requireMethod(String method, String expected) {
+        if (!method.equals(expected)) {
+            throw ApiException.invalidInput("Unsupported method " + method);
+        }
+    }
+
+    /**
+     * Parses the ID in a path. IDs which are not an integer cannot exist, so they result in 404 Not Found.
+     */
+    private static int id(String segment) {
+        try {
+            return Integer.parseInt(segment);
+        } catch (NumberFormatException e) {
+            throw ApiException.notFound("Invalid ID " + segment);
+        }
+    }
+
+    private static Integer integerParameter(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw ApiException.invalidInput(name + " must be an integer");
+        }
+    }
+
+    private static Instant dateParameter(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        return value == null ? null : Json.parseDate(value);
+    }
+
+    private static Map<String, String> parameters(String query) throws UnsupportedEncodingException {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return parameters;
+        }
+        for (String parameter : query.split("&")) {
+            int separator = parameter.indexOf('=');
+            String name = separator < 0 ? parameter : parameter.substring(0, separator);
+            String value = separator < 0 ? "" : parameter.substring(separator + 1);
+            parameters.putIfAbsent(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+        }
+        return parameters;
+    }
+
+    private static String body(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = exchange.getRequestBody()) {
+            for (int read; (read = in.read(buffer)) != -1; ) {
+                body.write(buffer, 0, read);
+            }
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void send(HttpExchange exchange, Response response) throws IOException {
+        // A response without a body completes the exchange as soon as its headers are sent. If the request body has
+        // not been read to its end by then, the server closes the connection without a Connection: close header, so
+        // a client may reuse the connection and have its next request reset.
+        exchange.getRequestBody().close();
+        for (Map.Entry<String, String> header : response.headers.entrySet()) {
+            exchange.getResponseHeaders().set(header.getKey(), header.getValue());
+        }
+        if (response.body == null && response.list == null) {
+            exchange.sendResponseHeaders(response.status, -1);
+            return;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json;charset=UTF-8");
+        if (response.list != null) {
+            // A response length of 0 sends the list in chunks as it is written, so that clients read it as it
+            // arrives instead of relying on its length.
+            exchange.sendResponseHeaders(response.status, 0);
+            try (JsonWriter out = Json.writer(new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(),
+                    StandardCharsets.UTF_8)))) {
+                response.list.write(out);
+            }
+            return;
+        }
+        byte[] body = Json.toJson(response.body).getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(response.status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Answers a GET request with 304 Not Modified if the client sent the entity tag of the current version of the
+     * resource in If-None-Match, and with the given response otherwise. The session must stay locked until the
+     * response is sent, so that the tag matches the body.
+     */
+    private static Response conditional(Request request, String tag, Supplier<Response> response) {
+        Response result = matches(request.ifNoneMatch, tag)
+                ? new Response(304, (JsonElement) null) : response.get();
+        result.headers.put(ETAG_HEADER, tag);
+        // Sessions have their own versions, so a tag is only valid for the session it was sent to.
+        result.headers.put("Vary", SESSION_HEADER);
+        return result;
+    }
+
+    /**
+     * @param ifNoneMatch the values of the If-None-Match headers, or null if there are none
+     * @return whether any of the listed entity tags is the given tag, using the weak comparison of RFC 7232
+     */
+    private static boolean matches(List<String> ifNoneMatch, String tag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String header : ifNoneMatch) {
+            for (String value : header.split(",")) {
+                value = value.trim();
+                if (value.startsWith("W/")) {
+                    value = value.substring(2);
+                }
+                if (value.equals("*") || value.equals(tag)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Errors are answered with a JSON body describing the error.
+     */
+    private static Response error(int status, String message) {
+        JsonObject body = new JsonObject();
+        body.addProperty("status", status);
+        body.addProperty("message", message);
+        return new Response(status, body);
+    }
+
+    private static Response ok(JsonElement body) {
+        return new Response(200, body);
+    }
+
+    private static Response ok(ListWriter list) {
+        return new Response(200, list);
+    }
+
+    /**
+     * @return a writer of the given elements of a list, which were copied from the session
+     */
+    private static ListWriter list(List<JsonObject> elements) {
+        return list(elements, element -> element);
+    }
+
+    /**
+     * @return a writer of the given elements of a list, which were copied from the session and are converted to JSON
+     * one at a time as they are written
+     */
+    private static <T> ListWriter list(List<T> elements, Function<T, JsonElement> toJson) {
+        return out -> {
+            out.beginArray();
+            for (T element : elements) {
+                Json.write(out, toJson.apply(element));
+            }
+            out.endArray();
+        };
+    }
+
+    private static Response created(JsonElement body) {
+        return new Response(201, body);
+    }
+
+    private static Response noContent() {
+        return new Response(204, (JsonElement) null);
+    }
+
+    /**
+     * Writes a JSON array element by element, without accessing the session, which is unlocked by then.
+     */
+    private interface ListWriter {
+
+        void write(JsonWriter out) throws IOException;
+    }
+
+    /**
+     * The parts of a request which determine its response, so that a logged change can be routed again.
+     */
+    private static final class Request {
+
+        final String method;
+        final String path;
+        /**
+         * The lower case segments of the path after {@code api/v1}.
+         */
+        final String[] segments;
+        final Map<String, String> parameters;
+        /**
+         * The values of the If-None-Match headers, or null if there are none.
+         */
+        final List<String> ifNoneMatch;
+        /**
+         * The body, or null for a GET request.
+         */
+        final String body;
+        /**
+         * The time the request was received, which is the current time of the request.
+         */
+        final Instant now;
+
+        Request(String method, String path, Map<String, String> parameters, List<String> ifNoneMatch, String body,
+                Instant now) {
+            this.method = method;
+            this.path = path;
+            this.segments = path.toLowerCase(Locale.ROOT).substring(PATH_PREFIX.length()).split("/");
+            this.parameters = parameters;
+            this.ifNoneMatch = ifNoneMatch;
+            this.body = body;
+            this.now = now;
+        }
+    }
+
+    private static final class Response {
+
+        final int status;
+        final JsonElement body;
+        /**
+         * Writes the body to the client, or null if the body is not a list.
+         */
+        final ListWriter list;
+        final Map<String, String> headers = new LinkedHashMap<>();
+
+        Response(int status, JsonElement body) {
+            this.status = status;
+            this.body = body;
+            this.list = null;
+        }
+
+        Response(int status, ListWriter list) {
+            this.status = status;
+            this.body = null;
+            this.list = list;
+        }
+    }
+}
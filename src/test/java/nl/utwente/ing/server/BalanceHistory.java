@@ -0,0 +1,281 @@
+package nl.utwente.ing.server;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Balance history of a session, kept as pre-aggregated buckets of every {@link Interval}.
+ *
+ * The buckets are updated when a transaction is added or removed: the hour bucket of the transaction is aggregated
+ * from its transactions, the day bucket from its hours, the week and month buckets from their days and the year
+ * bucket from its months. Reading a candle therefore reads a single bucket, instead of aggregating the transactions
+ * within the period.
+ *
+ * The balance at the start of a period is the sum of the changes of all earlier years, kept in a {@link FenwickTree},
+ * and of the earlier months, days and hours within its year. A transaction dated before existing ones therefore only
+ * updates the buckets containing it and a single year of the tree, instead of every later period.
+ *
+ * Candles are aligned to calendar periods, the last of which contains the current time. The open of a candle is the
+ * balance at its start, which includes money set aside for saving goals at that moment. Its close is the balance
+ * after the last change within the period, and its volume the total amount of the transactions within the period.
+ */
+final class BalanceHistory {
+
+    private static final long HOUR_MILLIS = 3_600_000;
+
+    private final TransactionStore store;
+    /**
+     * The IDs of the transactions of every hour in chronological order, keyed by the start of the hour.
+     */
+    private final Map<Long, int[]> hours = new HashMap<>();
+    private final Map<Interval, NavigableMap<Long, Bucket>> buckets = new EnumMap<>(Interval.class);
+    /**
+     * The change in balance of every year, keyed by the year.
+     */
+    private final FenwickTree years = new FenwickTree();
+
+    BalanceHistory(TransactionStore store) {
+        this.store = store;
+        for (Interval interval : Interval.values()) {
+            buckets.put(interval, new TreeMap<>());
+        }
+    }
+
+    /**
+     * Adds a transaction after it was stored.
+     */
+    void add(int id) {
+        long start = hourOf(id);
+        int[] hour = hours.get(start);
+        if (hour == null) {
+            hours.put(start, new int[]{id});
+        } else {
+            int index = 0;
+            int end = hour.length;
+            while (index < end) {
+                int middle = (index + end) >>> 1;
+                if (store.compare(hour[middle], id) < 0) {
+                    index = middle + 1;
+                } else {
+                    end = middle;
+                }
+            }
+            int[] updated = new int[hour.length + 1];
+            System.arraycopy(hour, 0, updated, 0, index);
+            updated[index] = id;
+            System.arraycopy(hour, index, updated, index + 1, hour.length - index);
+            hours.put(start, updated);
+        }
+        years.add(yearOf(id), store.signedAmount(id));
+        update(Instant.ofEpochMilli(store.date(id)));
+    }
+
+    /**
+     * Adds stored transactions to this empty history. Unlike adding them one by one, this aggregates every bucket
+     * only once.
+     *
+     * @param ids the IDs of the transactions in chronological order
+     */
+    void addAll(int[] ids) {
+        for (int from = 0; from < ids.length; ) {
+            long start = hourOf(ids[from]);
+            int to = from + 1;
+            while (to < ids.length && hourOf(ids[to]) == start) {
+                to++;
+            }
+            int[] hour = Arrays.copyOfRange(ids, from, to);
+            hours.put(start, hour);
+            buckets.get(Interval.HOUR).put(start, Bucket.of(store, hour));
+            from = to;
+        }
+        for (int id : ids) {
+            years.add(yearOf(id), store.signedAmount(id));
+        }
+
+        for (Interval interval : Interval.values()) {
+            if (interval == Interval.HOUR) {
+                continue;
+            }
+            // The finer buckets are ordered by date, so the buckets within a period are consecutive.
+            List<Bucket> parts = new ArrayList<>();
+            long period = 0;
+            for (Map.Entry<Long, Bucket> part : buckets.get(interval.finer()).entrySet()) {
+                long start = interval.floor(Instant.ofEpochMilli(part.getKey())).toEpochMilli();
+                if (!parts.isEmpty() && start != period) {
+                    buckets.get(interval).put(period, Bucket.combine(parts));
+                    parts.clear();
+                }
+                period = start;
+                parts.add(part.getValue());
+            }
+            if (!parts.isEmpty()) {
+                buckets.get(interval).put(period, Bucket.combine(parts));
+            }
+        }
+    }
+
+    /**
+     * Removes a transaction before it is removed from or replaced in the store.
+     */
+    void remove(int id) {
+        long start = hourOf(id);
+        int[] hour = hours.get(start);
+        if (hour.length == 1) {
+            hours.remove(start);
+        } else {
+            int[] updated = new int[hour.length - 1];
+            int count = 0;
+            for (int other : hour) {
+                if (other != id) {
+                    updated[count++] = other;
+                }
+            }
+            hours.put(start, updated);
+        }
+        years.add(yearOf(id), -store.signedAmount(id));
+        update(Instant.ofEpochMilli(store.date(id)));
+    }
+
+    /**
+     * @param start the start of an hour
+     * @return the balance in cents before the given hour, disregarding saving goals
+     */
+    long balanceBefore(Instant start) {
+        Instant year = Interval.YEAR.floor(start);
+        Instant month = Interval.MONTH.floor(start);
+        Instant day = Interval.DAY.floor(start);
+        return years.sumBefore(start.atZone(ZoneOffset.UTC).getYear())
+                + sum(Interval.MONTH, year, month)
+                + sum(Interval.DAY, month, day)
+                + sum(Interval.HOUR, day, start);
+    }
+
+    /**
+     * @return the bucket of the given period
+     */
+    Bucket bucket(Interval interval, Instant start) {
+        return buckets.get(interval).getOrDefault(start.toEpochMilli(), Bucket.EMPTY);
+    }
+
+    /**
+     * @param interval the period of a candle
+     * @param intervals the number of candles
+     * @param now the current time
+     * @param savings the money set aside for saving goals
+     * @return the candles, oldest first
+     */
+    JsonArray candles(Interval interval, int intervals, Instant now, Savings savings) {
+        Instant start = interval.plus(interval.floor(now), 1 - intervals);
+        long balance = balanceBefore(start) - savings.setAsideBefore(start);
+
+        JsonArray candles = new JsonArray();
+        for (int i = 0; i < intervals; i++) {
+            Instant end = interval.plus(start, 1);
+            // Money set aside at the start of the period is included in its open.
+            long open = balance - savings.setAsideAt(start);
+
+            Bucket bucket;
+            long close;
+            long high;
+            long low;
+            NavigableMap<Long, Long> setAside = savings.setAsideWithin(start, end);
+            if (setAside.isEmpty()) {
+                bucket = bucket(interval, start);
+                close = open + bucket.net;
+                high = open + bucket.high;
+                low = open + bucket.low;
+            } else {
+                // Money is set aside at month starts, which are boundaries of the finer buckets.
+                List<Bucket> parts = new ArrayList<>();
+                close = open;
+                high = open;
+                low = open;
+                for (Map.Entry<Long, Bucket> part : buckets.get(interval.finer())
+                        .subMap(start.toEpochMilli(), end.toEpochMilli()).entrySet()) {
+                    for (long amount : setAside.headMap(part.getKey(), true).values()) {
+                        close -= amount;
+                        low = Math.min(low, close);
+                    }
+                    setAside = setAside.tailMap(part.getKey(), false);
+                    high = Math.max(high, close + part.getValue().high);
+                    low = Math.min(low, close + part.getValue().low);
+                    close += part.getValue().net;
+                    parts.add(part.getValue());
+                }
+                for (long amount : setAside.values()) {
+                    close -= amount;
+                    low = Math.min(low, close);
+                }
+                bucket = Bucket.combine(parts);
+            }
+
+            JsonObject candle = new JsonObject();
+            candle.add("open", Json.amount(open));
+            candle.add("close", Json.amount(close));
+            candle.add("high", Json.amount(high));
+            candle.add("low", Json.amount(low));
+            candle.add("volume", Json.amount(bucket.volume));
+            candle.addProperty("timestamp", start.getEpochSecond());
+            candles.add(candle);
+
+            balance = close;
+            start = end;
+        }
+
+        return candles;
+    }
+
+    /**
+     * Updates the buckets of every interval containing the given date.
+     */
+    private void update(Instant date) {
+        for (Interval interval : Interval.values()) {
+            Instant start = interval.floor(date);
+            Bucket bucket;
+            if (interval == Interval.HOUR) {
+                int[] transactions = hours.get(start.toEpochMilli());
+                bucket = transactions == null ? Bucket.EMPTY : Bucket.of(store, transactions);
+            } else {
+                bucket = Bucket.combine(buckets.get(interval.finer())
+                        .subMap(start.toEpochMilli(), interval.plus(start, 1).toEpochMilli()).values());
+            }
+
+            if (bucket.count == 0) {
+                buckets.get(interval).remove(start.toEpochMilli());
+            } else {
+                buckets.get(interval).put(start.toEpochMilli(), bucket);
+            }
+        }
+    }
+
+    /**
+     * @return the total change in balance of the buckets of the given interval starting within the given range, which
+     * spans at most one period of the next coarser interval
+     */
+    private long sum(Interval interval, Instant from, Instant to) {
+        long sum = 0;
+        for (Bucket bucket : buckets.get(interval).subMap(from.toEpochMilli(), to.toEpochMilli()).values()) {
+            sum += bucket.net;
+        }
+        return sum;
+    }
+
+    private int yearOf(int id) {
+        return Instant.ofEpochMilli(store.date(id)).atZone(ZoneOffset.UTC).getYear();
+    }
+
+    private long hourOf(int id) {
+        return Math.floorDiv(store.date(id), HOUR_MILLIS) * HOUR_MILLIS;
+    }
+}
@@ -0,0 +1,88 @@
+package nl.utwente.ing.server;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures the cost of inserting transactions in random date order, as happens when bank statements are imported out
+ * of order. Most inserts are dated before existing transactions, which should not make them more expensive as the
+ * history grows.
+ *
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+public class BalanceHistoryBenchmark {
+
+    private static final int WARMUP_TRANSACTIONS = 20_000;
+    private static final int TRANSACTIONS = 100_000;
+    private static final int CHUNK = 10_000;
+    private static final Instant END = Instant.parse("2018-01-01T00:00:00Z");
+    private static final long SPAN_SECONDS = ChronoUnit.DAYS.getDuration().getSeconds() * 3650;
+
+    @Test
+    public void randomDatedInsertBenchmark() {
+        insert(new Session(), WARMUP_TRANSACTIONS, new Random(1));
+
+        Session session = new Session();
+        double[] chunks = insert(session, TRANSACTIONS, new Random(2));
+
+        for (int i = 0; i < chunks.length; i++) {
+            System.out.println(String.format("transactions %d-%d: %.1f us per insert",
+                    i * CHUNK, (i + 1) * CHUNK, chunks[i] / 1_000));
+        }
+        assertTrue(chunks[chunks.length - 1] < 3 * chunks[0]);
+
+        long start = System.nanoTime();
+        JsonArray candles = session.balanceHistory(Interval.DAY, 3650, END.minusMillis(1));
+        System.out.println(String.format("3650 daily candles: %.1f ms", (System.nanoTime() - start) / 1e6));
+        assertEquals(expectedBalance(new Random(2), TRANSACTIONS),
+                candles.get(candles.size() - 1).getAsJsonObject().get("close").getAsBigDecimal());
+    }
+
+    /**
+     * Inserts transactions with random dates in the ten years before {@link #END}.
+     *
+     * @return the average number of nanoseconds per insert of every chunk of {@link #CHUNK} transactions
+     */
+    private static double[] insert(Session session, int transactions, Random random) {
+        double[] chunks = new double[transactions / CHUNK];
+        for (int chunk = 0; chunk < chunks.length; chunk++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < CHUNK; i++) {
+                session.createTransaction(transaction(random));
+            }
+            chunks[chunk] = (System.nanoTime() - start) / (double) CHUNK;
+        }
+        return chunks;
+    }
+
+    private static JsonObject transaction(Random random) {
+        JsonObject json = new JsonObject();
+        json.addProperty("date", Json.formatDate(END.minusSeconds(1 + (long) (random.nextDouble() * SPAN_SECONDS))));
+        json.addProperty("amount", BigDecimal.valueOf(100 + random.nextInt(10_000), 2));
+        json.addProperty("externalIBAN", "NL39RABO0300065264");
+        json.addProperty("type", random.nextBoolean() ? "deposit" : "withdrawal");
+        return json;
+    }
+
+    /**
+     * @return the balance after the transactions generated by the given random number generator
+     */
+    private static BigDecimal expectedBalance(Random random, int transactions) {
+        BigDecimal balance = BigDecimal.ZERO;
+        for (int i = 0; i < transactions; i++) {
+            JsonObject json = transaction(random);
+            BigDecimal amount = json.get("amount").getAsBigDecimal();
+            balance = "deposit".equals(json.get("type").getAsString()) ? balance.add(amount) : balance.subtract(amount);
+        }
+        return balance.stripTrailingZeros();
+    }
+}
@@ -0,0 +1,62 @@
+package nl.utwente.ing.server;
+
+/**
+ * Aggregate of the transactions within a period, in cents. The high and low are relative to the balance at the start
+ * of the period, so a bucket does not change when transactions before its period change.
+ */
+final class Bucket {
+
+    static final Bucket EMPTY = new Bucket(0, 0, 0, 0, 0);
+
+    final int count;
+    final long net;
+    final long volume;
+    final long high;
+    final long low;
+
+    private Bucket(int count, long net, long volume, long high, long low) {
+        this.count = count;
+        this.net = net;
+        this.volume = volume;
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * @param ids the IDs of transactions in chronological order
+     */
+    static Bucket of(TransactionStore store, int[] ids) {
+        int count = 0;
+        long net = 0;
+        long volume = 0;
+        long high = 0;
+        long low = 0;
+        for (int id : ids) {
+            count++;
+            net += store.signedAmount(id);
+            volume += store.amount(id);
+            high = Math.max(high, net);
+            low = Math.min(low, net);
+        }
+        return new Bucket(count, net, volume, high, low);
+    }
+
+    /**
+     * @param buckets consecutive buckets in chronological order
+     */
+    static Bucket combine(Iterable<Bucket> buckets) {
+        int count = 0;
+        long net = 0;
+        long volume = 0;
+        long high = 0;
+        long low = 0;
+        for (Bucket bucket : buckets) {
+            count += bucket.count;
+            high = Math.max(high, net + bucket.high);
+            low = Math.min(low, net + bucket.low);
+            net += bucket.net;
+            volume += bucket.volume;
+        }
+        return new Bucket(count, net, volume, high, low);
+    }
+}
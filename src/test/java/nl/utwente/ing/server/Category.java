@@ -0,0 +1,34 @@
+package nl.utwente.ing.server;
+
+import com.google.gson.JsonObject;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+final class Category {
+
+    final int id;
+    String name;
+
+    Category(int id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("id", id);
+        json.addProperty("name", name);
+        return json;
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeInt(id);
+        Codec.writeString(out, name);
+    }
+
+    static Category read(DataInput in) throws IOException {
+        return new Category(in.readInt(), Codec.readString(in));
+    }
+}
@@ -0,0 +1,115 @@
+package nl.utwente.ing.server;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares listing a page of the transactions of one category by scanning all transactions in order, as before the
+ * {@link CategoryIndex} was added, with reading the index, for a million transactions in 500 categories.
+ *
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+public class CategoryFilterBenchmark {
+
+    private static final int TRANSACTIONS = 1_000_000;
+    private static final int CATEGORIES = 500;
+    private static final int LIMIT = 20;
+    private static final int SCAN_ITERATIONS = 20;
+    private static final int INDEX_ITERATIONS = 10_000;
+    private static final long START = Instant.parse("2008-01-01T00:00:00Z").toEpochMilli();
+    private static final long MINUTE_MILLIS = 60_000;
+
+    @Test
+    public void filteredPageBenchmark() {
+        Random random = new Random(1);
+        TransactionStore store = new TransactionStore();
+        DateIndex dateIndex = new DateIndex(store);
+        CategoryIndex categoryIndex = new CategoryIndex(store);
+        for (int id = 1; id <= TRANSACTIONS; id++) {
+            store.put(transaction(id, random));
+            dateIndex.add(id);
+            categoryIndex.add(id);
+        }
+
+        int category = 1 + random.nextInt(CATEGORIES);
+        List<Integer> categoryIds = Collections.singletonList(category);
+        // The last full page of the category.
+        int offset = TRANSACTIONS / CATEGORIES - 2 * LIMIT;
+
+        int[] scanned = null;
+        long start = System.nanoTime();
+        for (int i = 0; i < SCAN_ITERATIONS; i++) {
+            scanned = scanPage(store, dateIndex, category, offset);
+        }
+        double scanNanos = (System.nanoTime() - start) / (double) SCAN_ITERATIONS;
+
+        int[] indexed = null;
+        start = System.nanoTime();
+        for (int i = 0; i < INDEX_ITERATIONS; i++) {
+            indexed = page(categoryIndex.from(categoryIds, offset));
+        }
+        double indexNanos = (System.nanoTime() - start) / (double) INDEX_ITERATIONS;
+
+        assertArrayEquals(scanned, indexed);
+        System.out.println(String.format("Page of %d at offset %d of a category of %d transactions in %d categories: "
+                        + "%.1f us scanning all transactions, %.1f us with the category index",
+                LIMIT, offset, TRANSACTIONS, CATEGORIES, scanNanos / 1_000, indexNanos / 1_000));
+        assertTrue(indexNanos < scanNanos);
+    }
+
+    /**
+     * A page of the category, found by testing the category of every transaction in order.
+     */
+    private static int[] scanPage(TransactionStore store, DateIndex dateIndex, int category, int offset) {
+        int[] page = new int[LIMIT];
+        int count = 0;
+        int skip = offset;
+        PrimitiveIterator.OfInt ids = dateIndex.from(0);
+        while (ids.hasNext() && count < LIMIT) {
+            int id = ids.nextInt();
+            if (store.category(id) != category) {
+                continue;
+            }
+            if (skip > 0) {
+                skip--;
+                continue;
+            }
+            page[count++] = id;
+        }
+        return page;
+    }
+
+    private static int[] page(PrimitiveIterator.OfInt ids) {
+        int[] page = new int[LIMIT];
+        for (int i = 0; i < LIMIT && ids.hasNext(); i++) {
+            page[i] = ids.nextInt();
+        }
+        return page;
+    }
+
+    /**
+     * A transaction a minute in one of the categories, of which one in ten is backdated by up to a year.
+     */
+    private static Transaction transaction(int id, Random random) {
+        long date = START + id * MINUTE_MILLIS;
+        if (random.nextInt(10) == 0) {
+            date -= (long) random.nextInt(365 * 24 * 60) * MINUTE_MILLIS;
+        }
+        Transaction transaction = new Transaction(id);
+        transaction.date = Instant.ofEpochMilli(date);
+        transaction.amount = 1 + random.nextInt(100_000);
+        transaction.type = random.nextBoolean() ? Transaction.DEPOSIT : Transaction.WITHDRAWAL;
+        transaction.category = new Category(1 + random.nextInt(CATEGORIES), "");
+        transaction.externalIBAN = "NL39RABO0300065264";
+        transaction.description = "";
+        return transaction;
+    }
+}
@@ -0,0 +1,194 @@
+package nl.utwente.ing.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * The transactions of every category in the order in which they are listed, so that listing the transactions of a
+ * category reads only those transactions instead of scanning all transactions of the session.
+ *
+ * Every category has a {@link DateIndex} of its transactions. Transactions without a category are not indexed.
+ */
+final class CategoryIndex {
+
+    private final TransactionStore store;
+    private final Map<Integer, DateIndex> categories = new HashMap<>();
+
+    CategoryIndex(TransactionStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Adds a transaction after it was stored with its category.
+     */
+    void add(int id) {
+        int category = store.category(id);
+        if (category != 0) {
+            categories.computeIfAbsent(category, key -> new DateIndex(store)).add(id);
+        }
+    }
+
+    /**
+     * Adds stored transactions to this empty index.
+     *
+     * @param ids the IDs of the transactions in chronological order
+     */
+    void addAll(int[] ids) {
+        Map<Integer, List<Integer>> postings = new HashMap<>();
+        for (int id : ids) {
+            int category = store.category(id);
+            if (category != 0) {
+                postings.computeIfAbsent(category, key -> new ArrayList<>()).add(id);
+            }
+        }
+        for (Map.Entry<Integer, List<Integer>> posting : postings.entrySet()) {
+            DateIndex index = new DateIndex(store);
+            index.addAll(posting.getValue().stream().mapToInt(Integer::intValue).toArray());
+            categories.put(posting.getKey(), index);
+        }
+    }
+
+    /**
+     * Removes a transaction before it is removed from the store, or before its date or category changes.
+     */
+    void remove(int id) {
+        remove(id, store.category(id));
+    }
+
+    /**
+     * Moves a transaction after its category was changed in the store.
+     *
+     * @param previousCategory the ID of the category of the transaction before the change, or 0 for none
+     */
+    void changeCategory(int id, int previousCategory) {
+        if (store.category(id) != previousCategory) {
+            remove(id, previousCategory);
+            add(id);
+        }
+    }
+
+    /**
+     * Removes a category after it was removed from all transactions.
+     */
+    void removeCategory(int category) {
+        categories.remove(category);
+    }
+
+    /**
+     * @param categoryIds the IDs of the categories to list
+     * @return the IDs from the given position in the list of transactions of any of the categories onwards
+     */
+    PrimitiveIterator.OfInt from(List<Integer> categoryIds, int offset) {
+        List<DateIndex> indexes = indexes(categoryIds);
+        if (indexes.size() == 1) {
+            return indexes.get(0).from(offset);
+        }
+
+        List<PrimitiveIterator.OfInt> iterators = new ArrayList<>();
+        for (DateIndex index : indexes) {
+            iterators.add(index.from(0));
+        }
+        return skip(new Merged(iterators), offset);
+    }
+
+    /**
+     * @param categoryIds the IDs of the categories to list
+     * @param offset the number of transactions to skip after the given one
+     * @return the IDs of the transactions of any of the categories listed after a transaction with the given date and
+     * ID, see {@link DateIndex#after}
+     */
+    PrimitiveIterator.OfInt after(List<Integer> categoryIds, long date, int id, int offset) {
+        List<DateIndex> indexes = indexes(categoryIds);
+        if (indexes.size() == 1) {
+            return indexes.get(0).after(date, id, offset);
+        }
+
+        List<PrimitiveIterator.OfInt> iterators = new ArrayList<>();
+        for (DateIndex index : indexes) {
+            iterators.add(index.after(date, id, 0));
+        }
+        return skip(new Merged(iterators), offset);
+    }
+
+    private static PrimitiveIterator.OfInt skip(PrimitiveIterator.OfInt ids, int count) {
+        for (int i = 0; i < count && ids.hasNext(); i++) {
+            ids.nextInt();
+        }
+        return ids;
+    }
+
+    private List<DateIndex> indexes(List<Integer> categoryIds) {
+        List<DateIndex> indexes = new ArrayList<>();
+        for (int category : categoryIds) {
+            DateIndex index = categories.get(category);
+            if (index != null) {
+                indexes.add(index);
+            }
+        }
+        return indexes;
+    }
+
+    private void remove(int id, int category) {
+        DateIndex index = categories.get(category);
+        if (index != null) {
+            index.remove(id);
+            if (index.size() == 0) {
+                categories.remove(category);
+            }
+        }
+    }
+
+    /**
+     * Merges the transactions of several categories, which happens when categories share a name.
+     */
+    private final class Merged implements PrimitiveIterator.OfInt {
+
+        private final List<PrimitiveIterator.OfInt> iterators;
+        /**
+         * The next ID of every iterator, or 0 if it has none left.
+         */
+        private final int[] heads;
+
+        Merged(List<PrimitiveIterator.OfInt> iterators) {
+            this.iterators = iterators;
+            this.heads = new int[iterators.size()];
+            for (int i = 0; i < heads.length; i++) {
+                advance(i);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            for (int head : heads) {
+                if (head != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public int nextInt() {
+            int first = -1;
+            for (int i = 0; i < heads.length; i++) {
+                if (heads[i] != 0 && (first < 0 || store.compare(heads[i], heads[first]) < 0)) {
+                    first = i;
+                }
+            }
+            if (first < 0) {
+                throw new NoSuchElementException();
+            }
+            int id = heads[first];
+            advance(first);
+            return id;
+        }
+
+        private void advance(int i) {
+            heads[i] = iterators.get(i).hasNext() ? iterators.get(i).nextInt() : 0;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package nl.utwente.ing.server;
+
+import com.google.gson.JsonObject;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Assigns a category to new transactions. Empty criteria match every transaction.
+ *
+ * The description of a rule is a regular expression, which matches a transaction if it matches any part of the
+ * description of the transaction. A description without any characters special to regular expressions therefore
+ * matches the descriptions containing it, which is tested without a regular expression.
+ */
+final class CategoryRule {
+
+    private static final String SPECIAL_CHARACTERS = "\\^$.|?*+()[]{}";
+
+    final int id;
+    String description;
+    String iBAN;
+    String type;
+    Category category;
+    boolean applyOnHistory;
+    /**
+     * The compiled description, or null if it has not been compiled yet or is a literal.
+     */
+    private volatile Pattern pattern;
+
+    CategoryRule(int id) {
+        this.id = id;
+    }
+
+    /**
+     * @return whether the stored transaction with the given ID matches this rule
+     */
+    boolean matches(TransactionStore transactions, int id) {
+        return (type.isEmpty() || type.equals(transactions.type(id)))
+                && (iBAN.isEmpty() || iBAN.equals(transactions.externalIBAN(id)))
+                && (description.isEmpty() || matchesDescription(transactions.description(id)));
+    }
+
+    /**
+     * @return whether the given transaction matches this rule
+     */
+    boolean matches(Transaction transaction) {
+        return (type.isEmpty() || type.equals(transaction.type))
+                && (iBAN.isEmpty() || iBAN.equals(transaction.externalIBAN))
+                && (description.isEmpty() || matchesDescription(transaction.description));
+    }
+
+    /**
+     * @return whether the description of this rule matches any part of the given description
+     */
+    boolean matchesDescription(String description) {
+        if (isLiteral(this.description)) {
+            return description.contains(this.description);
+        }
+        Pattern compiled = pattern;
+        if (compiled == null) {
+            compiled = compile(this.description);
+            pattern = compiled;
+        }
+        return compiled.matcher(description).find();
+    }
+
+    /**
+     * @return whether the given rule description has no characters special to regular expressions
+     */
+    static boolean isLiteral(String description) {
+        for (int i = 0; i < description.length(); i++) {
+            if (SPECIAL_CHARACTERS.indexOf(description.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @throws ApiException if the given rule description is not a valid regular expression
+     */
+    static Pattern compile(String description) {
+        try {
+            return Pattern.compile(description);
+        } catch (PatternSyntaxException e) {
+            throw ApiException.invalidInput("Invalid description pattern: " + e.getDescription());
+        }
+    }
+
+    JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("id", id);
+        json.addProperty("description", description);
+        json.addProperty("iBAN", iBAN);
+        json.addProperty("type", type);
+        json.addProperty("category_id", category.id);
+        json.addProperty("applyOnHistory", applyOnHistory);
+        return json;
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeInt(id);
+        Codec.writeString(out, description);
+        Codec.writeString(out, iBAN);
+        Codec.writeString(out, type);
+        out.writeInt(category.id);
+        out.writeBoolean(applyOnHistory);
+    }
+
+    /**
+     * @param categories the categories of the session, keyed by ID
+     */
+    static CategoryRule read(DataInput in, Map<Integer, Category> categories) throws IOException {
+        CategoryRule rule = new CategoryRule(in.readInt());
+        rule.description = Codec.readString(in);
+        rule.iBAN = Codec.readString(in);
+        rule.type = Codec.readString(in);
+        rule.category = categories.get(in.readInt());
+        rule.applyOnHistory = in.readBoolean();
+        return rule;
+    }
+}
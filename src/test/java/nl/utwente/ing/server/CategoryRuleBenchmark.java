@@ -0,0 +1,134 @@
+package nl.utwente.ing.server;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares matching transactions against category rules with the {@link RuleIndex} with testing every rule in order,
+ * for 10000 rules and a million transactions. Most rules match on a literal description, some on a regular expression
+ * and a few on a regular expression without a required literal, which is tested for every transaction.
+ *
+ * Testing every rule takes too long for all transactions, so it is measured on a sample, which is also used to check
+ * that both pick the same rule.
+ *
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+public class CategoryRuleBenchmark {
+
+    private static final int RULES = 10_000;
+    private static final int TRANSACTIONS = 1_000_000;
+    private static final int SAMPLE = 5_000;
+    private static final int MERCHANTS = 20_000;
+    private static final int IBANS = 2_000;
+
+    @Test
+    public void matchBenchmark() {
+        Random random = new Random(1);
+        List<CategoryRule> rules = new ArrayList<>(RULES);
+        RuleIndex index = new RuleIndex();
+        for (int id = 1; id <= RULES; id++) {
+            CategoryRule rule = rule(id, random);
+            rules.add(rule);
+            index.add(rule);
+        }
+        TransactionStore store = new TransactionStore();
+        for (int id = 1; id <= TRANSACTIONS; id++) {
+            store.put(transaction(id, random));
+        }
+
+        // Warm up both, and check that they agree.
+        for (int id = 1; id <= SAMPLE; id++) {
+            assertEquals(linearMatch(rules, store, id), index.match(store, id));
+        }
+
+        long start = System.nanoTime();
+        long checksum = 0;
+        for (int id = 1; id <= SAMPLE; id++) {
+            CategoryRule rule = linearMatch(rules, store, id);
+            checksum += rule == null ? 0 : rule.id;
+        }
+        double linearNanos = (System.nanoTime() - start) / (double) SAMPLE;
+
+        start = System.nanoTime();
+        long matched = 0;
+        for (int id = 1; id <= TRANSACTIONS; id++) {
+            CategoryRule rule = index.match(store, id);
+            if (rule != null) {
+                matched++;
+                checksum += rule.id;
+            }
+        }
+        double indexNanos = (System.nanoTime() - start) / (double) TRANSACTIONS;
+
+        System.out.println(String.format("%d rules, %d transactions of which %d matched: %.2f us per transaction "
+                        + "with the index, %.2f us testing every rule (checksum %d)",
+                RULES, TRANSACTIONS, matched, indexNanos / 1_000, linearNanos / 1_000, checksum));
+        assertTrue(indexNanos < linearNanos);
+    }
+
+    /**
+     * The first rule matching the transaction, as found before the index was added.
+     */
+    private static CategoryRule linearMatch(List<CategoryRule> rules, TransactionStore store, int id) {
+        for (CategoryRule rule : rules) {
+            if (rule.matches(store, id)) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates a rule that usually matches the name of a merchant, either literally or by a regular expression, and
+     * sometimes also or instead an IBAN or a type.
+     */
+    private static CategoryRule rule(int id, Random random) {
+        CategoryRule rule = new CategoryRule(id);
+        int kind = random.nextInt(1_000);
+        if (kind < 700) {
+            rule.description = merchant(random);
+        } else if (kind < 795) {
+            // Matches ten merchants, and contains the literal shared by their names.
+            rule.description = "Merchant " + random.nextInt(MERCHANTS / 10) + "\\d BV";
+        } else if (kind < 800) {
+            // Has no literal, so it is tested for every transaction.
+            rule.description = "(?i)merchant " + random.nextInt(MERCHANTS) + " bv";
+        } else {
+            rule.description = "";
+        }
+        rule.iBAN = random.nextInt(10) < 3 ? iban(random) : "";
+        int type = random.nextInt(4);
+        rule.type = type == 0 ? Transaction.DEPOSIT : type == 1 ? Transaction.WITHDRAWAL : "";
+        rule.category = new Category(1 + random.nextInt(50), "category");
+        if (rule.description.isEmpty() && rule.iBAN.isEmpty()) {
+            // A rule matching on type alone would categorize nearly every transaction.
+            rule.iBAN = iban(random);
+        }
+        return rule;
+    }
+
+    private static Transaction transaction(int id, Random random) {
+        Transaction transaction = new Transaction(id);
+        transaction.date = Instant.ofEpochSecond(1_500_000_000L + id);
+        transaction.amount = 1 + random.nextInt(100_000);
+        transaction.type = random.nextBoolean() ? Transaction.DEPOSIT : Transaction.WITHDRAWAL;
+        transaction.externalIBAN = iban(random);
+        transaction.description = "Card payment " + merchant(random) + " ref " + random.nextInt(1_000_000);
+        return transaction;
+    }
+
+    private static String merchant(Random random) {
+        return "Merchant " + random.nextInt(MERCHANTS) + " BV";
+    }
+
+    private static String iban(Random random) {
+        return String.format("NL39INGB%010d", random.nextInt(IBANS));
+    }
+}
@@ -0,0 +1,40 @@
+package nl.utwente.ing.server;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Binary encoding of the values of a session, used to move idle sessions off the heap. Unlike
+ * {@link DataOutput#writeUTF}, strings are not limited in length.
+ */
+final class Codec {
+
+    private Codec() {
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes an instant with millisecond precision, which is the precision of the dates in the API.
+     */
+    static void writeInstant(DataOutput out, Instant value) throws IOException {
+        out.writeLong(value.toEpochMilli());
+    }
+
+    static Instant readInstant(DataInput in) throws IOException {
+        return Instant.ofEpochMilli(in.readLong());
+    }
+}
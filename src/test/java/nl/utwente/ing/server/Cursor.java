@@ -0,0 +1,47 @@
+package nl.utwente.ing.server;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * The position after the last transaction of a page, given to clients as an opaque string to list the next page.
+ * Unlike an offset, a cursor is found by a binary search, and it keeps its place when earlier transactions are added
+ * or deleted.
+ */
+final class Cursor {
+
+    private static final int LENGTH = Long.BYTES + Integer.BYTES;
+
+    /**
+     * The date of the last transaction in milliseconds since the epoch.
+     */
+    final long date;
+    final int id;
+
+    Cursor(long date, int id) {
+        this.date = date;
+        this.id = id;
+    }
+
+    String encode() {
+        ByteBuffer bytes = ByteBuffer.allocate(LENGTH).putLong(date).putInt(id);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.array());
+    }
+
+    /**
+     * @return the cursor encoded by {@link #encode}
+     */
+    static Cursor decode(String value) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(value);
+        } catch (IllegalArgumentException e) {
+            throw ApiException.invalidInput("Invalid cursor");
+        }
+        if (bytes.length != LENGTH) {
+            throw ApiException.invalidInput("Invalid cursor");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new Cursor(buffer.getLong(), buffer.getInt());
+    }
+}
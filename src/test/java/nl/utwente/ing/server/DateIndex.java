@@ -0,0 +1,236 @@
+package nl.utwente.ing.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * The IDs of the transactions of a session in chronological order, and in ascending order of ID for transactions with
+ * the same date, which is the order in which transactions are listed.
+ *
+ * The IDs are kept in blocks of at most {@link #BLOCK_SIZE} IDs. Adding or removing a transaction moves IDs within a
+ * single block, and a position is found by a binary search over the blocks and within a block, and an offset from it by
+ * counting blocks, instead of sorting all transactions for every list request.
+ */
+final class DateIndex {
+
+    static final int BLOCK_SIZE = 1024;
+
+    private final TransactionStore store;
+    private final List<Block> blocks = new ArrayList<>();
+    private int size;
+
+    DateIndex(TransactionStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Adds a transaction after it was stored.
+     */
+    void add(int id) {
+        long date = store.date(id);
+        int blockIndex = Math.min(findBlock(date, id, false), blocks.size() - 1);
+        if (blockIndex < 0) {
+            blocks.add(new Block());
+            blockIndex = 0;
+        }
+        Block block = blocks.get(blockIndex);
+        int index = block.find(date, id, false);
+
+        if (block.size == BLOCK_SIZE) {
+            Block next = new Block();
+            if (index == BLOCK_SIZE) {
+                // Appending to a full block starts a new block, so transactions added in chronological order fill
+                // their blocks completely.
+                blocks.add(blockIndex + 1, next);
+                block = next;
+                index = 0;
+            } else {
+                int half = BLOCK_SIZE / 2;
+                System.arraycopy(block.ids, half, next.ids, 0, BLOCK_SIZE - half);
+                next.size = BLOCK_SIZE - half;
+                block.size = half;
+                blocks.add(blockIndex + 1, next);
+                if (index > half) {
+                    block = next;
+                    index -= half;
+                }
+            }
+        }
+        block.insert(index, id);
+        size++;
+    }
+
+    /**
+     * Adds stored transactions to this empty index.
+     *
+     * @param ids the IDs of the transactions in chronological order
+     */
+    void addAll(int[] ids) {
+        for (int from = 0; from < ids.length; from += BLOCK_SIZE) {
+            Block block = new Block();
+            block.size = Math.min(BLOCK_SIZE, ids.length - from);
+            System.arraycopy(ids, from, block.ids, 0, block.size);
+            blocks.add(block);
+        }
+        size += ids.length;
+    }
+
+    /**
+     * Removes a transaction before it is removed from or replaced in the store.
+     */
+    void remove(int id) {
+        long date = store.date(id);
+        int blockIndex = findBlock(date, id, false);
+        Block block = blocks.get(blockIndex);
+        block.delete(block.find(date, id, false));
+        if (block.size == 0) {
+            blocks.remove(blockIndex);
+        }
+        size--;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the IDs from the given position in the list onwards
+     */
+    PrimitiveIterator.OfInt from(int offset) {
+        Ids ids = new Ids(0, 0);
+        ids.skip(offset);
+        return ids;
+    }
+
+    /**
+     * As IDs are positive, the transactions after date {@code d} and ID 0 are those from date {@code d} onwards.
+     *
+     * @param offset the number of transactions to skip after the given one
+     * @return the IDs of the transactions listed after a transaction with the given date and ID, which does not need
+     * to exist anymore
+     */
+    PrimitiveIterator.OfInt after(long date, int id, int offset) {
+        int blockIndex = findBlock(date, id, true);
+        Ids ids = new Ids(blockIndex, blockIndex == blocks.size() ? 0 : blocks.get(blockIndex).find(date, id, true));
+        ids.skip(offset);
+        return ids;
+    }
+
+    /**
+     * @param after whether to skip the transaction with the given date and ID itself
+     * @return the index of the first block containing an ID listed at or after the given date and ID, or the number
+     * of blocks if there is none
+     */
+    private int findBlock(long date, int id, boolean after) {
+        int low = 0;
+        int high = blocks.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            Block block = blocks.get(middle);
+            if (precedes(block.ids[block.size - 1], date, id, after)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Orders a stored transaction and a transaction with the given date and ID like {@link TransactionStore#compare}.
+     *
+     * @param after whether a stored transaction equal to the given one precedes it
+     * @return whether the stored transaction is listed before the given one
+     */
+    private boolean precedes(int stored, long date, int id, boolean after) {
+        int result = Long.compare(store.date(stored), date);
+        if (result == 0) {
+            result = Integer.compare(stored, id);
+        }
+        return result < 0 || (after && result == 0);
+    }
+
+    private final class Block {
+
+        final int[] ids = new int[BLOCK_SIZE];
+        int size;
+
+        /**
+         * @param after whether to skip the transaction with the given date and ID itself
+         * @return the index of the first ID in this block listed at or after the given date and ID
+         */
+        int find(long date, int id, boolean after) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (precedes(ids[middle], date, id, after)) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        void insert(int index, int id) {
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            ids[index] = id;
+            size++;
+        }
+
+        void delete(int index) {
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            size--;
+        }
+    }
+
+    /**
+     * Iterates over the IDs from a position in a block. Changing the index invalidates the iterator.
+     */
+    private final class Ids implements PrimitiveIterator.OfInt {
+
+        private int blockIndex;
+        private int index;
+
+        Ids(int blockIndex, int index) {
+            this.blockIndex = blockIndex;
+            this.index = index;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (blockIndex < blocks.size() && index >= blocks.get(blockIndex).size) {
+                blockIndex++;
+                index = 0;
+            }
+            return blockIndex < blocks.size();
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return blocks.get(blockIndex).ids[index++];
+        }
+
+        /**
+         * Skips the given number of IDs, counting whole blocks at a time.
+         */
+        void skip(int count) {
+            while (count > 0 && blockIndex < blocks.size()) {
+                int available = blocks.get(blockIndex).size - index;
+                if (count < available) {
+                    index += count;
+                    return;
+                }
+                count -= available;
+                blockIndex++;
+                index = 0;
+            }
+        }
+    }
+}
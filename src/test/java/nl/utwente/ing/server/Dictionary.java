@@ -0,0 +1,68 @@
+package nl.utwente.ing.server;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns consecutive codes to distinct strings, so a column of strings with many repeated values, such as IBANs, can
+ * be stored as codes. Strings are never removed.
+ */
+final class Dictionary {
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    /**
+     * @return the code of the given string, which is added if it is new
+     */
+    int encode(String value) {
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = values.size();
+            codes.put(value, code);
+            values.add(value);
+        }
+        return code;
+    }
+
+    /**
+     * @return the code of the given string, or -1 if it was never added
+     */
+    int find(String value) {
+        Integer code = codes.get(value);
+        return code == null ? -1 : code;
+    }
+
+    String decode(int code) {
+        return values.get(code);
+    }
+
+    /**
+     * @return the number of distinct strings, which is one more than the largest code
+     */
+    int size() {
+        return values.size();
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            Codec.writeString(out, value);
+        }
+    }
+
+    /**
+     * Adds the strings written by {@link #write} to this empty dictionary, with the same codes.
+     */
+    void readFrom(DataInput in) throws IOException {
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            encode(Codec.readString(in));
+        }
+    }
+}
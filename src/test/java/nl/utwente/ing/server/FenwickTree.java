@@ -0,0 +1,66 @@
+package nl.utwente.ing.server;
+
+/**
+ * Binary indexed tree of sums over a growing range of integer keys. Adding to a key and summing all keys before a key
+ * both take O(log n) time, where n is the size of the range. The range doubles when a key outside of it is added.
+ */
+final class FenwickTree {
+
+    /**
+     * The key stored at index 0.
+     */
+    private int origin;
+    private long[] values = new long[0];
+    private long[] tree = new long[1];
+
+    void add(int key, long delta) {
+        if (values.length == 0) {
+            origin = key;
+            grow(key, 1);
+        } else if (key < origin) {
+            grow(key, origin - key + values.length);
+        } else if (key - origin >= values.length) {
+            grow(origin, key - origin + 1);
+        }
+
+        values[key - origin] += delta;
+        for (int i = key - origin + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * @return the sum of the values of all keys less than the given key
+     */
+    long sumBefore(int key) {
+        int end = Math.min(key - origin, values.length);
+        long sum = 0;
+        for (int i = end; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Rebuilds the tree with at least the given number of keys starting at the given key, which is at most the
+     * current origin. The size is at least doubled, so a sequence of additions is rebuilt O(log n) times.
+     */
+    private void grow(int first, int size) {
+        int capacity = Math.max(size, values.length * 2);
+        // Grow towards the side of the new key, so adding decreasing keys does not rebuild every time.
+        int start = first < origin ? origin + values.length - capacity : first;
+        long[] grown = new long[capacity];
+        System.arraycopy(values, 0, grown, origin - start, values.length);
+
+        values = grown;
+        origin = start;
+        tree = new long[capacity + 1];
+        for (int i = 1; i <= capacity; i++) {
+            tree[i] += values[i - 1];
+            int parent = i + (i & -i);
+            if (parent <= capacity) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+}
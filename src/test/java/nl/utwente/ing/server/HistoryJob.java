@@ -0,0 +1,223 @@
+package nl.utwente.ing.server;
+
+import com.google.gson.JsonObject;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Locale;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Applies a category rule to the transactions that existed when the rule was created or updated, which is requested
+ * with {@code applyOnHistory}.
+ *
+ * The transactions are processed in chunks of consecutive IDs. A chunk is processed while holding the lock of the
+ * session, split over the threads of the common fork-join pool, and the lock is released between chunks, so other
+ * requests of the session are not blocked for the whole history. Transactions created in the meantime are
+ * categorized by the rules when they are stored, like any new transaction.
+ *
+ * The outcome is the same as if the whole history were processed when the job started, so that it does not depend on
+ * how far the job got when the session changed: the rule is matched against the transactions as they were when the
+ * job started, and transactions of which the category is changed explicitly before the job reaches them keep that
+ * category.
+ */
+final class HistoryJob {
+
+    /**
+     * The number of transactions processed while holding the lock of the session.
+     */
+    static final int CHUNK_SIZE = 16_384;
+    /**
+     * The number of transactions below which a part of a chunk is not split any further.
+     */
+    private static final int LEAF_SIZE = 2_048;
+
+    enum State {
+        RUNNING, COMPLETED;
+
+        String toJson() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    final int ruleId;
+    private final TransactionStore transactions;
+    private final CategoryIndex categoryIndex;
+    private final CategoryRule rule;
+    /**
+     * The largest ID of the transactions to process.
+     */
+    private final int total;
+    private volatile int processed;
+    private volatile State state = State.RUNNING;
+    /**
+     * The IDs of the transactions not yet processed of which the category was changed explicitly since the job
+     * started. Only accessed while holding the lock of the session.
+     */
+    private final BitSet changed = new BitSet();
+    /**
+     * The transactions not yet processed as they were when the job started, keyed by ID, of which the description,
+     * IBAN or type may have been replaced since. Only accessed while holding the lock of the session.
+     */
+    private final NavigableMap<Integer, Transaction> replaced = new TreeMap<>();
+
+    HistoryJob(TransactionStore transactions, CategoryIndex categoryIndex, CategoryRule rule) {
+        this.ruleId = rule.id;
+        this.transactions = transactions;
+        this.categoryIndex = categoryIndex;
+        this.rule = rule;
+        this.total = transactions.lastId();
+    }
+
+    private HistoryJob(int ruleId, State state, int processed, int total) {
+        this.ruleId = ruleId;
+        this.transactions = null;
+        this.categoryIndex = null;
+        this.rule = null;
+        this.total = total;
+        this.processed = processed;
+        this.state = state;
+    }
+
+    /**
+     * @return whether the history is small enough to be processed within the request creating the job
+     */
+    boolean isSmall() {
+        return total <= CHUNK_SIZE;
+    }
+
+    boolean isRunning() {
+        return state == State.RUNNING;
+    }
+
+    /**
+     * Processes the next chunk. The lock of the session must be held.
+     *
+     * @return whether there are chunks left to process
+     */
+    boolean processChunk() {
+        if (state != State.RUNNING) {
+            return false;
+        }
+        int from = processed + 1;
+        int to = Math.min(total, processed + CHUNK_SIZE) + 1;
+        int[] previous = new int[to - from];
+        ForkJoinPool.commonPool().invoke(new Chunk(from, to, previous, from));
+        // The category index is not thread-safe, so it is updated after the chunk.
+        for (int id = from; id < to; id++) {
+            if (transactions.contains(id)) {
+                categoryIndex.changeCategory(id, previous[id - from]);
+            }
+        }
+        replaced.headMap(to).clear();
+        processed = to - 1;
+        if (processed == total) {
+            state = State.COMPLETED;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Records that the category of a transaction was changed explicitly, so that the job leaves it unchanged. The
+     * lock of the session must be held.
+     */
+    void categoryChanged(int id) {
+        if (state == State.RUNNING && id > processed && id <= total) {
+            changed.set(id);
+        }
+    }
+
+    /**
+     * Records a transaction as it was before it is replaced, so that the job matches it as it was when the job
+     * started. The lock of the session must be held.
+     */
+    void replacing(int id) {
+        if (state == State.RUNNING && id > processed && id <= total && !replaced.containsKey(id)) {
+            replaced.put(id, transactions.get(id, category -> null));
+        }
+    }
+
+    /**
+     * Processes the remaining chunks. The lock of the session must be held.
+     */
+    void finish() {
+        boolean remaining = true;
+        while (remaining) {
+            remaining = processChunk();
+        }
+    }
+
+    JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("state", state.toJson());
+        json.addProperty("processed", processed);
+        json.addProperty("total", total);
+        return json;
+    }
+
+    /**
+     * Writes the progress of this job, which must not be running.
+     */
+    void write(DataOutput out) throws IOException {
+        out.writeInt(ruleId);
+        out.writeByte(state.ordinal());
+        out.writeInt(processed);
+        out.writeInt(total);
+    }
+
+    /**
+     * @return a job with the progress written by {@link #write}
+     */
+    static HistoryJob read(DataInput in) throws IOException {
+        return new HistoryJob(in.readInt(), State.values()[in.readByte()], in.readInt(), in.readInt());
+    }
+
+    /**
+     * Applies the rule to the transactions with IDs in a range, forking for large ranges. Every task writes the
+     * categories of its own transactions only, and records their previous categories.
+     */
+    private final class Chunk extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        /**
+         * The previous categories of the transactions of the whole chunk, indexed from its first ID.
+         */
+        private final int[] previous;
+        private final int first;
+
+        Chunk(int from, int to, int[] previous, int first) {
+            this.from = from;
+            this.to = to;
+            this.previous = previous;
+            this.first = first;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Chunk(from, middle, previous, first), new Chunk(middle, to, previous, first));
+                return;
+            }
+            for (int id = from; id < to; id++) {
+                if (transactions.contains(id)) {
+                    previous[id - first] = transactions.category(id);
+                    Transaction original = replaced.get(id);
+                    if (!changed.get(id) && (original == null ? rule.matches(transactions, id)
+                            : rule.matches(original))) {
+                        transactions.setCategory(id, rule.category.id);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package nl.utwente.ing.server;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Locale;
+
+/**
+ * The interval of a balance history candle. Candles are aligned to calendar periods in UTC, where weeks start on
+ * Monday.
+ */
+enum Interval {
+
+    HOUR(ChronoUnit.HOURS),
+    DAY(ChronoUnit.DAYS),
+    WEEK(ChronoUnit.WEEKS),
+    MONTH(ChronoUnit.MONTHS),
+    YEAR(ChronoUnit.YEARS);
+
+    private final ChronoUnit unit;
+
+    Interval(ChronoUnit unit) {
+        this.unit = unit;
+    }
+
+    static Interval parse(String interval) {
+        try {
+            return valueOf(interval.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw ApiException.invalidInput("Invalid interval: " + interval);
+        }
+    }
+
+    /**
+     * @return the start of the period containing the given instant
+     */
+    Instant floor(Instant instant) {
+        ZonedDateTime time = instant.atZone(ZoneOffset.UTC);
+        switch (this) {
+            case HOUR:
+                return time.truncatedTo(ChronoUnit.HOURS).toInstant();
+            case DAY:
+                return time.truncatedTo(ChronoUnit.DAYS).toInstant();
+            case WEEK:
+                return time.truncatedTo(ChronoUnit.DAYS)
+                        .with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).toInstant();
+            case MONTH:
+                return time.truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1).toInstant();
+            default:
+                return time.truncatedTo(ChronoUnit.DAYS).withDayOfYear(1).toInstant();
+        }
+    }
+
+    /**
+     * @return the largest interval of which the periods exactly divide the periods of this interval, or null for
+     * {@link #HOUR}
+     */
+    Interval finer() {
+        switch (this) {
+            case DAY:
+                return HOUR;
+            case WEEK:
+            case MONTH:
+                return DAY;
+            case YEAR:
+                return MONTH;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @param start the start of a period
+     * @param periods the number of periods to move, which may be negative
+     * @return the start of the period the given number of periods later
+     */
+    Instant plus(Instant start, long periods) {
+        return start.atZone(ZoneOffset.UTC).plus(periods, unit).toInstant();
+    }
+}
@@ -0,0 +1,307 @@
+package nl.utwente.ing.server;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Parsing and formatting of request and response bodies.
+ */
+final class Json {
+
+    private static final Gson GSON = new Gson();
+    private static final TypeAdapter<JsonElement> ELEMENTS = GSON.getAdapter(JsonElement.class);
+    private static final DateTimeFormatter DATE_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+    /**
+     * The maximum number of digits before the decimal point of an amount. A long holds the sum of millions of amounts
+     * of this size.
+     */
+    static final int MAX_AMOUNT_DIGITS = 10;
+
+    private Json() {
+    }
+
+    /**
+     * Parses a request body. Unlike {@link com.google.gson.JsonParser}, this rejects malformed JSON such as unquoted
+     * strings.
+     */
+    static JsonElement parse(String body) {
+        try {
+            JsonReader reader = new JsonReader(new StringReader(body));
+            reader.setLenient(false);
+            JsonElement element = ELEMENTS.read(reader);
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                throw ApiException.invalidInput("Unexpected content after the JSON document");
+            }
+            return element;
+        } catch (IOException | IllegalStateException | JsonParseException | NumberFormatException e) {
+            throw ApiException.invalidInput("Malformed JSON: " + e.getMessage());
+        }
+    }
+
+    static JsonObject object(String body) {
+        JsonElement element = parse(body);
+        if (!element.isJsonObject()) {
+            throw ApiException.invalidInput("Expected a JSON object");
+        }
+        return element.getAsJsonObject();
+    }
+
+    static String toJson(JsonElement element) {
+        return GSON.toJson(element);
+    }
+
+    /**
+     * @return a writer for a response body which is written element by element, formatting like {@link #toJson}
+     */
+    static JsonWriter writer(Writer out) {
+        JsonWriter writer = new JsonWriter(out);
+        writer.setHtmlSafe(true);
+        writer.setSerializeNulls(false);
+        return writer;
+    }
+
+    /**
+     * Writes an element of a response body which is written element by element.
+     */
+    static void write(JsonWriter out, JsonElement element) throws IOException {
+        ELEMENTS.write(out, element);
+    }
+
+    static String string(JsonObject object, String key) {
+        JsonPrimitive value = primitive(object, key);
+        if (!value.isString()) {
+            throw ApiException.invalidInput(key + " must be a string");
+        }
+        return value.getAsString();
+    }
+
+    static String optionalString(JsonObject object, String key, String defaultValue) {
+        return has(object, key) ? string(object, key) : defaultValue;
+    }
+
+    /**
+     * Reads an amount in cents, which may be sent either as a number or as a numeric string. Amounts with more than
+     * two decimals are rounded half up.
+     */
+    static long amount(JsonObject object, String key) {
+        JsonPrimitive value = primitive(object, key);
+        if (!value.isString() && !value.isNumber()) {
+            throw ApiException.invalidInput(key + " must be a number");
+        }
+        try {
+            return parseCents(value.getAsString());
+        } catch (ArithmeticException | NumberFormatException e) {
+            throw ApiException.invalidInput(key + " must be a number of at most " + MAX_AMOUNT_DIGITS + " digits");
+        }
+    }
+
+    static long optionalAmount(JsonObject object, String key, long defaultValue) {
+        return has(object, key) ? amount(object, key) : defaultValue;
+    }
+
+    static int integer(JsonObject object, String key) {
+        JsonPrimitive value = primitive(object, key);
+        try {
+            if (value.isNumber()) {
+                return new BigDecimal(value.getAsString()).intValueExact();
+            }
+        } catch (ArithmeticException | NumberFormatException e) {
+            // Fall through to the error below.
+        }
+        throw ApiException.invalidInput(key + " must be an integer");
+    }
+
+    static boolean bool(JsonObject object, String key, boolean defaultValue) {
+        if (!has(object, key)) {
+            return defaultValue;
+        }
+        JsonPrimitive value = primitive(object, key);
+        if (!value.isBoolean()) {
+            throw ApiException.invalidInput(key + " must be a boolean");
+        }
+        return value.getAsBoolean();
+    }
+
+    static Instant date(JsonObject object, String key) {
+        return parseDate(string(object, key));
+    }
+
+    /**
+     * Parses an ISO-8601 date. Dates without an offset are interpreted as UTC.
+     */
+    static Instant parseDate(String date) {
+        try {
+            return OffsetDateTime.parse(date).toInstant();
+        } catch (DateTimeParseException e) {
+            try {
+                return LocalDateTime.parse(date).toInstant(ZoneOffset.UTC);
+            } catch (DateTimeParseException ignored) {
+                throw ApiException.invalidInput("Invalid date: " + date);
+            }
+        }
+    }
+
+    static String formatDate(Instant date) {
+        return DATE_FORMAT.format(date);
+    }
+
+    /**
+     * Formats an amount in cents with at most two decimals and without a fraction for whole amounts, so that clients
+     * reading it as an integer get the exact value.
+     */
+    static JsonPrimitive amount(long cents) {
+        return new JsonPrimitive(new Amount(cents));
+    }
+
+    /**
+     * Parses a decimal number to cents. Plain decimals, the format of nearly all amounts, are parsed without
+     * allocating; numbers with an exponent are parsed by {@link BigDecimal}.
+     *
+     * @throws NumberFormatException if the text is not a number
+     * @throws ArithmeticException if the number has more than {@link #MAX_AMOUNT_DIGITS} digits before the point
+     */
+    static long parseCents(String text) {
+        int length = text.length();
+        int i = 0;
+        boolean negative = false;
+        if (i < length && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            negative = text.charAt(i) == '-';
+            i++;
+        }
+
+        long whole = 0;
+        int wholeDigits = 0;
+        for (; i < length && isDigit(text.charAt(i)); i++, wholeDigits++) {
+            whole = whole * 10 + (text.charAt(i) - '0');
+            if (wholeDigits == MAX_AMOUNT_DIGITS) {
+                throw new ArithmeticException("Amount too large: " + text);
+            }
+        }
+
+        long fraction = 0;
+        int fractionDigits = 0;
+        boolean roundUp = false;
+        if (i < length && text.charAt(i) == '.') {
+            for (i++; i < length && isDigit(text.charAt(i)); i++, fractionDigits++) {
+                if (fractionDigits < 2) {
+                    fraction = fraction * 10 + (text.charAt(i) - '0');
+                } else if (fractionDigits == 2) {
+                    roundUp = text.charAt(i) >= '5';
+                }
+            }
+        }
+
+        if (i < length || wholeDigits + fractionDigits == 0) {
+            if (i < length && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+                BigDecimal value = new BigDecimal(text).setScale(2, RoundingMode.HALF_UP);
+                if (value.precision() - value.scale() > MAX_AMOUNT_DIGITS) {
+                    throw new ArithmeticException("Amount too large: " + text);
+                }
+                return value.unscaledValue().longValueExact();
+            }
+            throw new NumberFormatException("Not a number: " + text);
+        }
+
+        for (; fractionDigits < 2; fractionDigits++) {
+            fraction *= 10;
+        }
+        long cents = whole * 100 + fraction + (roundUp ? 1 : 0);
+        return negative ? -cents : cents;
+    }
+
+    static String formatCents(long cents) {
+        StringBuilder builder = new StringBuilder(24);
+        if (cents < 0) {
+            builder.append('-');
+        }
+        long magnitude = Math.abs(cents);
+        builder.append(magnitude / 100);
+        long fraction = magnitude % 100;
+        if (fraction != 0) {
+            builder.append('.').append(fraction / 10);
+            if (fraction % 10 != 0) {
+                builder.append(fraction % 10);
+            }
+        }
+        return builder.toString();
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean has(JsonObject object, String key) {
+        return object.has(key) && !object.get(key).isJsonNull();
+    }
+
+    private static JsonPrimitive primitive(JsonObject object, String key) {
+        if (!has(object, key)) {
+            throw ApiException.invalidInput("Missing " + key);
+        }
+        JsonElement value = object.get(key);
+        if (!value.isJsonPrimitive()) {
+            throw ApiException.invalidInput(key + " must be a primitive value");
+        }
+        return value.getAsJsonPrimitive();
+    }
+
+    /**
+     * An amount in cents, written by Gson as the decimal returned by {@link #toString()}.
+     */
+    private static final class Amount extends Number {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long cents;
+
+        Amount(long cents) {
+            this.cents = cents;
+        }
+
+        @Override
+        public int intValue() {
+            return (int) longValue();
+        }
+
+        @Override
+        public long longValue() {
+            return cents / 100;
+        }
+
+        @Override
+        public float floatValue() {
+            return (float) doubleValue();
+        }
+
+        @Override
+        public double doubleValue() {
+            return cents / 100.0;
+        }
+
+        @Override
+        public String toString() {
+            return formatCents(cents);
+        }
+    }
+}
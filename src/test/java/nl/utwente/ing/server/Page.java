@@ -0,0 +1,18 @@
+package nl.utwente.ing.server;
+
+/**
+ * A page of a list, with the cursor of the next page.
+ */
+final class Page {
+
+    final int[] ids;
+    /**
+     * The position after the last item, or null if no items follow.
+     */
+    final Cursor next;
+
+    Page(int[] ids, Cursor next) {
+        this.ids = ids;
+        this.next = next;
+    }
+}
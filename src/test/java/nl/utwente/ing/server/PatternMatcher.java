@@ -0,0 +1,151 @@
+package nl.utwente.ing.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntConsumer;
+
+/**
+ * Finds which of a set of patterns occur in a text in a single pass over the text, using the Aho-Corasick automaton
+ * of the patterns. The time of a search depends on the length of the text and the number of occurrences found, but
+ * not on the number of patterns.
+ *
+ * The automaton is immutable, and must be rebuilt to add patterns.
+ */
+final class PatternMatcher {
+
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+
+    /**
+     * The characters of the outgoing edges of each state, in ascending order.
+     */
+    private final char[][] labels;
+    /**
+     * The targets of the outgoing edges of each state, in the order of their labels.
+     */
+    private final int[][] targets;
+    /**
+     * The state of the longest proper suffix of the text of each state that is a prefix of a pattern.
+     */
+    private final int[] failures;
+    /**
+     * The code of the pattern equal to the text of each state, or {@link #NONE}.
+     */
+    private final int[] patterns;
+    /**
+     * The state of the longest proper suffix of the text of each state that is a pattern, or {@link #NONE}.
+     */
+    private final int[] outputs;
+
+    /**
+     * @param patterns the patterns, where the code of a pattern is its index; empty patterns are never reported
+     */
+    PatternMatcher(List<String> patterns) {
+        List<Map<Character, Integer>> trie = new ArrayList<>();
+        List<Integer> ends = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        ends.add(NONE);
+        for (int code = 0; code < patterns.size(); code++) {
+            String pattern = patterns.get(code);
+            if (pattern.isEmpty()) {
+                continue;
+            }
+            int state = ROOT;
+            for (int i = 0; i < pattern.length(); i++) {
+                Integer next = trie.get(state).get(pattern.charAt(i));
+                if (next == null) {
+                    next = trie.size();
+                    trie.get(state).put(pattern.charAt(i), next);
+                    trie.add(new TreeMap<>());
+                    ends.add(NONE);
+                }
+                state = next;
+            }
+            ends.set(state, code);
+        }
+
+        int states = trie.size();
+        labels = new char[states][];
+        targets = new int[states][];
+        this.patterns = new int[states];
+        for (int state = 0; state < states; state++) {
+            Map<Character, Integer> edges = trie.get(state);
+            labels[state] = new char[edges.size()];
+            targets[state] = new int[edges.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> edge : edges.entrySet()) {
+                labels[state][i] = edge.getKey();
+                targets[state][i] = edge.getValue();
+                i++;
+            }
+            this.patterns[state] = ends.get(state);
+        }
+
+        // States are visited in breadth-first order, so the failure of a state is known before its children.
+        failures = new int[states];
+        outputs = new int[states];
+        outputs[ROOT] = NONE;
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = ROOT;
+        while (head < tail) {
+            int state = queue[head++];
+            for (int i = 0; i < labels[state].length; i++) {
+                int child = targets[state][i];
+                int failure = state == ROOT ? ROOT : next(failures[state], labels[state][i]);
+                failures[child] = failure;
+                outputs[child] = this.patterns[failure] != NONE ? failure : outputs[failure];
+                queue[tail++] = child;
+            }
+        }
+    }
+
+    /**
+     * Reports the code of every pattern occurring in the given text, once for every occurrence.
+     */
+    void match(String text, IntConsumer consumer) {
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            state = next(state, text.charAt(i));
+            for (int output = patterns[state] != NONE ? state : outputs[state]; output != NONE;
+                 output = outputs[output]) {
+                consumer.accept(patterns[output]);
+            }
+        }
+    }
+
+    /**
+     * @return the state reached from the given state by the given character
+     */
+    private int next(int state, char c) {
+        while (true) {
+            int edge = find(labels[state], c);
+            if (edge >= 0) {
+                return targets[state][edge];
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = failures[state];
+        }
+    }
+
+    private static int find(char[] labels, char c) {
+        int low = 0;
+        int high = labels.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (labels[middle] < c) {
+                low = middle + 1;
+            } else if (labels[middle] > c) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,81 @@
+package nl.utwente.ing.server;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Requests a number of deposits of a fixed amount before a due date.
+ */
+final class PaymentRequest {
+
+    final int id;
+    final String description;
+    final Instant dueDate;
+    /**
+     * The amount in cents.
+     */
+    final long amount;
+    final int numberOfRequests;
+
+    PaymentRequest(int id, JsonObject json) {
+        this(id, Json.string(json, "description"), Json.date(json, "due_date"), Json.amount(json, "amount"),
+                Json.integer(json, "number_of_requests"));
+        if (amount <= 0 || numberOfRequests <= 0) {
+            throw ApiException.invalidInput("The amount and number of requests must be positive");
+        }
+    }
+
+    private PaymentRequest(int id, String description, Instant dueDate, long amount, int numberOfRequests) {
+        this.id = id;
+        this.description = description;
+        this.dueDate = dueDate;
+        this.amount = amount;
+        this.numberOfRequests = numberOfRequests;
+    }
+
+    /**
+     * @return whether the stored transaction with the given ID is a deposit paying this request, disregarding whether
+     * the request is already filled
+     */
+    boolean accepts(TransactionStore transactions, int id) {
+        return transactions.isDeposit(id)
+                && transactions.amount(id) == amount
+                && transactions.date(id) <= dueDate.toEpochMilli();
+    }
+
+    JsonObject toJson(List<Transaction> payments) {
+        JsonArray transactions = new JsonArray();
+        for (Transaction payment : payments) {
+            transactions.add(payment.toJson());
+        }
+
+        JsonObject json = new JsonObject();
+        json.addProperty("id", id);
+        json.addProperty("description", description);
+        json.addProperty("due_date", Json.formatDate(dueDate));
+        json.add("amount", Json.amount(amount));
+        json.addProperty("number_of_requests", numberOfRequests);
+        json.addProperty("filled", payments.size() >= numberOfRequests);
+        json.add("transactions", transactions);
+        return json;
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeInt(id);
+        Codec.writeString(out, description);
+        Codec.writeInstant(out, dueDate);
+        out.writeLong(amount);
+        out.writeInt(numberOfRequests);
+    }
+
+    static PaymentRequest read(DataInput in) throws IOException {
+        return new PaymentRequest(in.readInt(), Codec.readString(in), Codec.readInstant(in), in.readLong(),
+                in.readInt());
+    }
+}
@@ -0,0 +1,121 @@
+package nl.utwente.ing.server;
+
+import com.google.gson.JsonObject;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares matching deposits to payment requests with {@link Payments} with testing every payment request for every
+ * deposit, for 100000 open payment requests and a million transactions.
+ *
+ * Testing every payment request takes too long for all transactions, so it is measured on the transactions of the
+ * first days, which are also used to check that both pick the same deposits.
+ *
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+public class PaymentRequestBenchmark {
+
+    private static final int REQUESTS = 100_000;
+    private static final int TRANSACTIONS = 1_000_000;
+    private static final int SAMPLE = 5_000;
+    private static final int AMOUNTS = 50_000;
+    private static final long START = Instant.parse("2018-01-01T00:00:00Z").toEpochMilli();
+    private static final long MINUTE = 60_000;
+
+    @Test
+    public void matchBenchmark() {
+        Random random = new Random(1);
+        Map<Integer, PaymentRequest> requests = new TreeMap<>();
+        for (int id = 1; id <= REQUESTS; id++) {
+            requests.put(id, request(id, random));
+        }
+        TransactionStore store = new TransactionStore();
+        for (int id = 1; id <= TRANSACTIONS; id++) {
+            store.put(transaction(id, random));
+        }
+
+        TransactionStore sample = new TransactionStore();
+        for (int id = 1; id <= SAMPLE; id++) {
+            sample.put(store.get(id, categoryId -> null));
+        }
+        long start = System.nanoTime();
+        Map<Integer, List<Integer>> linear = linearMatch(requests, sample);
+        double linearNanos = (System.nanoTime() - start) / (double) SAMPLE;
+        Payments sampled = new Payments(requests.values(), sample);
+        for (PaymentRequest request : requests.values()) {
+            assertEquals(linear.get(request.id), sampled.paid(request.id));
+        }
+
+        start = System.nanoTime();
+        Payments payments = new Payments(requests.values(), store);
+        long paid = 0;
+        long filled = 0;
+        for (PaymentRequest request : requests.values()) {
+            int count = payments.paid(request.id).size();
+            paid += count;
+            filled += count == request.numberOfRequests ? 1 : 0;
+        }
+        double indexNanos = (System.nanoTime() - start) / (double) TRANSACTIONS;
+
+        System.out.println(String.format("%d payment requests of which %d filled, %d transactions of which %d paid a "
+                        + "request: %.2f us per transaction with the index, %.2f us testing every request",
+                REQUESTS, filled, TRANSACTIONS, paid, indexNanos / 1_000, linearNanos / 1_000));
+        assertTrue(indexNanos < linearNanos);
+    }
+
+    /**
+     * The deposits paying every payment request, as found before {@link Payments} was added.
+     */
+    private static Map<Integer, List<Integer>> linearMatch(Map<Integer, PaymentRequest> requests,
+                                                           TransactionStore store) {
+        Map<Integer, List<Integer>> payments = new TreeMap<>();
+        for (PaymentRequest request : requests.values()) {
+            payments.put(request.id, new ArrayList<>());
+        }
+        for (int id : store.sortedIds()) {
+            for (PaymentRequest request : requests.values()) {
+                List<Integer> paid = payments.get(request.id);
+                if (paid.size() < request.numberOfRequests && request.accepts(store, id)) {
+                    paid.add(id);
+                    break;
+                }
+            }
+        }
+        return payments;
+    }
+
+    /**
+     * A payment request due within the period of the transactions, for one of a limited number of amounts.
+     */
+    private static PaymentRequest request(int id, Random random) {
+        JsonObject json = new JsonObject();
+        json.addProperty("description", "Request " + id);
+        json.addProperty("due_date", Json.formatDate(Instant.ofEpochMilli(
+                START + (long) random.nextInt(TRANSACTIONS) * MINUTE)));
+        json.add("amount", Json.amount(100 + random.nextInt(AMOUNTS)));
+        json.addProperty("number_of_requests", 1 + random.nextInt(5));
+        return new PaymentRequest(id, json);
+    }
+
+    /**
+     * A transaction a minute, of which half are deposits for one of the amounts of the payment requests.
+     */
+    private static Transaction transaction(int id, Random random) {
+        Transaction transaction = new Transaction(id);
+        transaction.date = Instant.ofEpochMilli(START + (id - 1) * MINUTE);
+        transaction.amount = 100 + random.nextInt(AMOUNTS);
+        transaction.type = random.nextBoolean() ? Transaction.DEPOSIT : Transaction.WITHDRAWAL;
+        transaction.externalIBAN = "NL39RABO0300065264";
+        transaction.description = "";
+        return transaction;
+    }
+}
@@ -0,0 +1,190 @@
+package nl.utwente.ing.server;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * The deposits paying the payment requests of a session.
+ *
+ * Transactions are matched in chronological order, and every deposit pays the oldest unfilled payment request with
+ * the same amount whose due date it does not exceed. The open payment requests are indexed by amount, and leave the
+ * index in order of their due dates as the matched transactions pass them, so matching a deposit looks up a single
+ * amount instead of testing every payment request.
+ *
+ * A transaction after all matched transactions, or a new payment request, is matched incrementally. Any other change
+ * of the transactions discards the matching, which is redone from the first transaction when it is next needed.
+ */
+final class Payments {
+
+    private static final Comparator<PaymentRequest> BY_DUE_DATE =
+            Comparator.comparing((PaymentRequest request) -> request.dueDate).thenComparingInt(request -> request.id);
+
+    private final Collection<PaymentRequest> requests;
+    private final TransactionStore transactions;
+
+    /**
+     * The IDs of the deposits paying every payment request in chronological order, keyed by payment request ID.
+     */
+    private final Map<Integer, List<Integer>> paid = new HashMap<>();
+    /**
+     * The unfilled payment requests whose due date has not been passed, keyed by amount and then by ID.
+     */
+    private final Map<Long, NavigableMap<Integer, PaymentRequest>> open = new HashMap<>();
+    /**
+     * The payment requests in {@link #open} in order of their due dates.
+     */
+    private final PriorityQueue<PaymentRequest> expiry = new PriorityQueue<>(BY_DUE_DATE);
+    /**
+     * The IDs of the deposits paying no payment request in chronological order, keyed by amount.
+     */
+    private final Map<Long, Deque<Integer>> unpaid = new HashMap<>();
+
+    /**
+     * Whether all transactions have been matched.
+     */
+    private boolean matched;
+    /**
+     * The date in milliseconds since the epoch of the last matched transaction.
+     */
+    private long lastDate;
+
+    /**
+     * @param requests the payment requests of the session, ordered by ID, which is read whenever the matching is
+     *                 redone
+     * @param transactions the transactions of the session
+     */
+    Payments(Collection<PaymentRequest> requests, TransactionStore transactions) {
+        this.requests = requests;
+        this.transactions = transactions;
+    }
+
+    /**
+     * Matches a stored transaction with a larger ID than all other transactions.
+     */
+    void added(int transactionId) {
+        if (matched && transactions.date(transactionId) >= lastDate) {
+            match(transactionId);
+        } else {
+            matched = false;
+        }
+    }
+
+    /**
+     * Matches a payment request with a larger ID than all other payment requests. Having the lowest priority, it
+     * does not change the deposits paying the other requests, and is paid by the first unpaid deposits it accepts.
+     */
+    void added(PaymentRequest request) {
+        if (!matched) {
+            return;
+        }
+
+        List<Integer> payments = new ArrayList<>();
+        paid.put(request.id, payments);
+        Deque<Integer> deposits = unpaid.get(request.amount);
+        long dueDate = request.dueDate.toEpochMilli();
+        while (deposits != null && !deposits.isEmpty() && payments.size() < request.numberOfRequests
+                && transactions.date(deposits.peekFirst()) <= dueDate) {
+            payments.add(deposits.pollFirst());
+        }
+        if (payments.size() < request.numberOfRequests) {
+            open(request);
+        }
+    }
+
+    /**
+     * Discards the matching after a change of the transactions other than adding one.
+     */
+    void changed() {
+        matched = false;
+    }
+
+    /**
+     * @return the IDs of the deposits paying the given payment request in chronological order
+     */
+    List<Integer> paid(int requestId) {
+        if (!matched) {
+            rematch();
+        }
+        return paid.getOrDefault(requestId, Collections.emptyList());
+    }
+
+    private void rematch() {
+        // Sessions without payment requests are not matched, so they do not keep their unpaid deposits.
+        if (requests.isEmpty()) {
+            return;
+        }
+        paid.clear();
+        open.clear();
+        expiry.clear();
+        unpaid.clear();
+        lastDate = Long.MIN_VALUE;
+        for (PaymentRequest request : requests) {
+            paid.put(request.id, new ArrayList<>());
+            open(request);
+        }
+        for (int id : transactions.sortedIds()) {
+            match(id);
+        }
+        matched = true;
+    }
+
+    private void open(PaymentRequest request) {
+        open.computeIfAbsent(request.amount, amount -> new TreeMap<>()).put(request.id, request);
+        expiry.add(request);
+    }
+
+    /**
+     * Matches a transaction which is not before any matched transaction.
+     */
+    private void match(int id) {
+        lastDate = transactions.date(id);
+        if (!transactions.isDeposit(id)) {
+            return;
+        }
+        expireBefore(lastDate);
+
+        long amount = transactions.amount(id);
+        NavigableMap<Integer, PaymentRequest> candidates = open.get(amount);
+        if (candidates == null) {
+            unpaid.computeIfAbsent(amount, key -> new ArrayDeque<>()).addLast(id);
+            return;
+        }
+
+        PaymentRequest request = candidates.firstEntry().getValue();
+        List<Integer> payments = paid.get(request.id);
+        payments.add(id);
+        if (payments.size() >= request.numberOfRequests) {
+            close(request);
+        }
+    }
+
+    /**
+     * Removes the payment requests due before the given date from the open payment requests.
+     */
+    private void expireBefore(long date) {
+        while (!expiry.isEmpty() && expiry.peek().dueDate.toEpochMilli() < date) {
+            close(expiry.poll());
+        }
+    }
+
+    /**
+     * Removes a payment request from the open payment requests. It may be left in {@link #expiry}, where removing it
+     * would take linear time, until its due date is passed.
+     */
+    private void close(PaymentRequest request) {
+        NavigableMap<Integer, PaymentRequest> candidates = open.get(request.amount);
+        if (candidates != null && candidates.remove(request.id) != null && candidates.isEmpty()) {
+            open.remove(request.amount);
+        }
+    }
+}
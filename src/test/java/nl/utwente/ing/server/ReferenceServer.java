@@ -0,0 +1,171 @@
+package nl.utwente.ing.server;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory implementation of the {@code api/v1} endpoints exercised by the tests, served from the test JVM.
+ *
+ * The server keeps its sessions in memory until they expire, moving idle sessions off the heap as configured by a
+ * {@link SessionEviction}. It is meant as a local stand-in for a deployed backend, both to run the tests without one
+ * and as a baseline for benchmarks of the test harness. Optionally, the changes of the sessions are written to a log
+ * before they are acknowledged, from which the sessions are recovered when a server is started on the same log.
+ */
+public final class ReferenceServer {
+
+    /**
+     * System property with the path of the log of a server started with {@link #start()}, by default none.
+     */
+    public static final String LOG_PROPERTY = "reference.log";
+
+    private static final int BACKLOG = 256;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final SessionRegistry sessions;
+    private final WriteAheadLog log;
+
+    private ReferenceServer(HttpServer server, ExecutorService executor, SessionRegistry sessions,
+                            WriteAheadLog log) {
+        this.server = server;
+        this.executor = executor;
+        this.sessions = sessions;
+        this.log = log;
+    }
+
+    /**
+     * Starts a server on a random free port of the loopback interface, evicting idle sessions as configured by the
+     * system properties of {@link SessionEviction} and logging changes if {@link #LOG_PROPERTY} is set.
+     *
+     * @return the started server
+     * @throws IOException if the server could not be bound, or its log could not be recovered
+     */
+    public static ReferenceServer start() throws IOException {
+        String log = System.getProperty(LOG_PROPERTY);
+        return start(SessionEviction.fromSystemProperties(), Clock.systemUTC(), log == null ? null : Paths.get(log));
+    }
+
+    /**
+     * Starts a server on a random free port of the loopback interface.
+     *
+     * @param eviction when to move idle sessions off the heap
+     * @return the started server
+     * @throws IOException if the server could not be bound
+     */
+    public static ReferenceServer start(SessionEviction eviction) throws IOException {
+        return start(eviction, Clock.systemUTC());
+    }
+
+    /**
+     * Starts a server on a random free port of the loopback interface, which takes the current time from the given
+     * clock. The current time is used when a saving goal is created in a session without transactions, and as the
+     * end of the balance history. A {@link VirtualClock} lets tests control it.
+     *
+     * @param eviction when to move idle sessions off the heap
+     * @param clock the source of the current time
+     * @return the started server
+     * @throws IOException if the server could not be bound
+     */
+    public static ReferenceServer start(SessionEviction eviction, Clock clock) throws IOException {
+        return start(eviction, clock, null);
+    }
+
+    /**
+     * Starts a server on a random free port of the loopback interface, which acknowledges the creation and changes of
+     * sessions once they are durable in the given log. The sessions in the log are recovered before the server
+     * starts, so a server started on the log of a crashed server has the sessions of every acknowledged request.
+     *
+     * @param eviction when to move idle sessions off the heap
+     * @param clock the source of the current time
+     * @param log the path of the log, which is created if it does not exist, or null to keep sessions in memory only
+     * @return the started server
+     * @throws IOException if the server could not be bound, or its log could not be recovered
+     */
+    public static ReferenceServer start(SessionEviction eviction, Clock clock, Path log) throws IOException {
+        // Without TCP_NODELAY, responses written in multiple packets are delayed by delayed acknowledgements on
+        // keep-alive connections. The property is read when the first server is created.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), BACKLOG);
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "reference-server-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        WriteAheadLog changes = log == null ? null : new WriteAheadLog(log);
+        SessionRegistry sessions = new SessionRegistry(eviction, changes);
+        ApiHandler handler = new ApiHandler(sessions, clock, changes);
+        if (changes != null) {
+            changes.recover(handler);
+        }
+        server.createContext("/", handler);
+        server.setExecutor(executor);
+        server.start();
+        return new ReferenceServer(server, executor, sessions, changes);
+    }
+
+    /**
+     * Starts a server in a process of its own, which logs changes to the path given as the only argument, and prints
+     * its port on the first line of the standard output. The server runs until the process is killed.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length != 1) {
+            System.err.println("Usage: ReferenceServer <log>");
+            System.exit(2);
+        }
+        ReferenceServer server = start(SessionEviction.fromSystemProperties(), Clock.systemUTC(), Paths.get(args[0]));
+        System.out.println(server.getPort());
+        System.out.flush();
+        // The threads of the server are daemon threads, so the process ends when this thread does.
+        Thread.currentThread().join();
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return the number of times a session was moved off the heap
+     */
+    public long getEvictions() {
+        return sessions.evictions();
+    }
+
+    /**
+     * @return the number of sessions which were deleted because they were not used for the expiry time
+     */
+    public long getExpirations() {
+        return sessions.expirations();
+    }
+
+    /**
+     * @return the number of sessions on or off the heap
+     */
+    public int getSessions() {
+        return sessions.size();
+    }
+
+    /**
+     * Stops the server, closing all connections immediately, and closes its log.
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+        sessions.close();
+        if (log != null) {
+            log.close();
+        }
+    }
+}
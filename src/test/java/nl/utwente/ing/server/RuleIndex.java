@@ -0,0 +1,357 @@
+package nl.utwente.ing.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the first category rule, in order of ID, matching a transaction, without testing every rule.
+ *
+ * Rules are grouped by their exact description, IBAN and type, where an empty criterion is a group of its own. The
+ * descriptions of all rules are compiled into a single {@link PatternMatcher}, so a single pass over the description
+ * of a transaction finds the descriptions which may match it. A literal description is compiled as itself, and is
+ * found exactly when it matches. A regular expression is compiled as the longest literal that every match of it
+ * contains, and is only tested when that literal is found; the few regular expressions without such a literal are
+ * tested for every transaction. Only the groups of the matching descriptions and the empty description, combined with
+ * the IBAN of the transaction or the empty IBAN and its type or the empty type, can contain matching rules, so a
+ * transaction is matched with a few lookups however many rules there are.
+ */
+final class RuleIndex {
+
+    private static final int ANY = 0;
+    private static final int DEPOSIT = 1;
+    private static final int WITHDRAWAL = 2;
+    private static final int[] NO_CODES = new int[0];
+    /**
+     * The escaped letters which stand for a single character, a class of characters or an anchor, without arguments.
+     */
+    private static final String SIMPLE_ESCAPES = "dDsSwWbBAzZGhHvVRXtnrfea";
+
+    /**
+     * The descriptions of the rules, with the empty description as code {@link #ANY}. Descriptions of removed rules
+     * are kept, as they only cost a lookup of an empty group when they occur.
+     */
+    private final Dictionary descriptions = new Dictionary();
+    /**
+     * The IBANs of the rules, with the empty IBAN as code {@link #ANY}.
+     */
+    private final Dictionary ibans = new Dictionary();
+    /**
+     * The IDs of the rules of every group, keyed by {@link #key}.
+     */
+    private final Map<Long, NavigableSet<Integer>> groups = new HashMap<>();
+    private final Map<Integer, CategoryRule> rules = new HashMap<>();
+    /**
+     * The automaton of the literals of the descriptions, or null if descriptions were added since it was built.
+     */
+    private PatternMatcher matcher;
+    /**
+     * The codes of the descriptions compiled as every literal of the automaton, indexed by the code of the literal.
+     */
+    private int[][] candidates;
+    /**
+     * The codes of the regular expressions without a literal, which are tested for every transaction.
+     */
+    private int[] unfiltered;
+    /**
+     * The compiled description of every description code, or null for literal descriptions.
+     */
+    private Pattern[] patterns;
+    /**
+     * The match in which every description was last tested, so that a regular expression of which the literal occurs
+     * more than once is only tested once.
+     */
+    private int[] tested;
+    private int matches;
+
+    RuleIndex() {
+        descriptions.encode("");
+        ibans.encode("");
+    }
+
+    /**
+     * Adds a rule, which replaces the rule with the same ID.
+     */
+    void add(CategoryRule rule) {
+        remove(rule.id);
+        int description = descriptions.find(rule.description);
+        if (description < 0) {
+            description = descriptions.encode(rule.description);
+            matcher = null;
+        }
+        long key = key(description, ibans.encode(rule.iBAN), type(rule.type));
+        groups.computeIfAbsent(key, k -> new TreeSet<>()).add(rule.id);
+        rules.put(rule.id, rule);
+    }
+
+    void remove(int id) {
+        CategoryRule rule = rules.remove(id);
+        if (rule == null) {
+            return;
+        }
+        long key = key(descriptions.find(rule.description), ibans.find(rule.iBAN), type(rule.type));
+        NavigableSet<Integer> group = groups.get(key);
+        group.remove(id);
+        if (group.isEmpty()) {
+            groups.remove(key);
+        }
+    }
+
+    /**
+     * @return the rule with the lowest ID matching the stored transaction with the given ID, or null if no rule
+     * matches
+     */
+    CategoryRule match(TransactionStore transactions, int id) {
+        return match(transactions.description(id), transactions.externalIBAN(id), transactions.type(id));
+    }
+
+    /**
+     * @return the rule with the lowest ID matching a transaction with the given description, IBAN and type, or null
+     * if no rule matches
+     */
+    CategoryRule match(String description, String iBAN, String type) {
+        if (rules.isEmpty()) {
+            return null;
+        }
+        if (matcher == null) {
+            build();
+        }
+
+        matches++;
+        int ibanCode = ibans.find(iBAN);
+        int typeCode = type(type);
+        int[] first = {lowest(ANY, ibanCode, typeCode)};
+        matcher.match(description, literal -> {
+            for (int code : candidates[literal]) {
+                first[0] = Math.min(first[0], lowest(code, description, ibanCode, typeCode, first[0]));
+            }
+        });
+        for (int code : unfiltered) {
+            first[0] = Math.min(first[0], lowest(code, description, ibanCode, typeCode, first[0]));
+        }
+        return first[0] == Integer.MAX_VALUE ? null : rules.get(first[0]);
+    }
+
+    /**
+     * Compiles the descriptions into the automaton.
+     */
+    private void build() {
+        Dictionary literals = new Dictionary();
+        List<List<Integer>> codes = new ArrayList<>();
+        List<Integer> withoutLiteral = new ArrayList<>();
+        patterns = new Pattern[descriptions.size()];
+        for (int code = ANY + 1; code < descriptions.size(); code++) {
+            String description = descriptions.decode(code);
+            String literal = description;
+            if (!CategoryRule.isLiteral(description)) {
+                patterns[code] = CategoryRule.compile(description);
+                literal = requiredLiteral(description);
+            }
+            if (literal.isEmpty()) {
+                withoutLiteral.add(code);
+                continue;
+            }
+            int literalCode = literals.encode(literal);
+            if (literalCode == codes.size()) {
+                codes.add(new ArrayList<>());
+            }
+            codes.get(literalCode).add(code);
+        }
+
+        List<String> patternLiterals = new ArrayList<>(literals.size());
+        candidates = new int[literals.size()][];
+        for (int literal = 0; literal < literals.size(); literal++) {
+            patternLiterals.add(literals.decode(literal));
+            candidates[literal] = toArray(codes.get(literal));
+        }
+        unfiltered = withoutLiteral.isEmpty() ? NO_CODES : toArray(withoutLiteral);
+        tested = new int[descriptions.size()];
+        matcher = new PatternMatcher(patternLiterals);
+    }
+
+    /**
+     * @param best the lowest ID of the matching rules found so far
+     * @return the lowest ID of the rules with the given description and matching the given IBAN and type if their
+     * description matches the description of the transaction, or {@link Integer#MAX_VALUE} if there are none
+     */
+    private int lowest(int code, String description, int iban, int type, int best) {
+        int lowest = lowest(code, iban, type);
+        if (lowest >= best) {
+            return Integer.MAX_VALUE;
+        }
+        if (patterns[code] != null) {
+            if (tested[code] == matches) {
+                return Integer.MAX_VALUE;
+            }
+            tested[code] = matches;
+            if (!patterns[code].matcher(description).find()) {
+                return Integer.MAX_VALUE;
+            }
+        }
+        return lowest;
+    }
+
+    /**
+     * @return the lowest ID of the rules with the given description and matching the given IBAN and type, or
+     * {@link Integer#MAX_VALUE} if there are none
+     */
+    private int lowest(int description, int iban, int type) {
+        int lowest = Math.min(lowest(key(description, ANY, ANY)), lowest(key(description, ANY, type)));
+        if (iban > ANY) {
+            lowest = Math.min(lowest, lowest(key(description, iban, ANY)));
+            lowest = Math.min(lowest, lowest(key(description, iban, type)));
+        }
+        return lowest;
+    }
+
+    private int lowest(long key) {
+        NavigableSet<Integer> group = groups.get(key);
+        return group == null ? Integer.MAX_VALUE : group.first();
+    }
+
+    /**
+     * Finds the longest run of characters which every match of a regular expression contains. Only the top level of
+     * the expression is inspected: groups, classes, escapes of classes, anchors and the wildcard end a run, and so do
+     * optional characters. Expressions with alternatives, inline flags, which may change how characters match, or
+     * escapes with arguments, such as quotes and back references, have no known run.
+     *
+     * @return the longest required literal, or the empty string if none is known
+     */
+    static String requiredLiteral(String regex) {
+        if (regex.indexOf('|') >= 0 || regex.contains("(?")) {
+            return "";
+        }
+        String longest = "";
+        StringBuilder run = new StringBuilder();
+        int i = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            int literal = -1;
+            if (c == '\\') {
+                if (i + 1 >= regex.length()) {
+                    break;
+                }
+                char escaped = regex.charAt(i + 1);
+                if (Character.isLetterOrDigit(escaped) && SIMPLE_ESCAPES.indexOf(escaped) < 0) {
+                    return "";
+                }
+                literal = Character.isLetterOrDigit(escaped) ? -1 : escaped;
+                i += 2;
+            } else if (c == '[') {
+                i = endOfClass(regex, i);
+            } else if (c == '(') {
+                i = endOfGroup(regex, i);
+            } else {
+                literal = "^$.".indexOf(c) >= 0 ? -1 : c;
+                i++;
+            }
+
+            int minimum = 1;
+            boolean quantified = false;
+            if (i < regex.length() && "?*+{".indexOf(regex.charAt(i)) >= 0) {
+                quantified = true;
+                char quantifier = regex.charAt(i);
+                if (quantifier == '{') {
+                    int end = regex.indexOf('}', i);
+                    if (end < 0) {
+                        return "";
+                    }
+                    String bounds = regex.substring(i + 1, end);
+                    int comma = bounds.indexOf(',');
+                    minimum = Integer.parseInt((comma < 0 ? bounds : bounds.substring(0, comma)).trim());
+                    i = end + 1;
+                } else {
+                    minimum = quantifier == '+' ? 1 : 0;
+                    i++;
+                }
+                // Reluctant and possessive quantifiers match the same texts.
+                if (i < regex.length() && (regex.charAt(i) == '?' || regex.charAt(i) == '+')) {
+                    i++;
+                }
+            }
+
+            if (literal >= 0 && minimum > 0) {
+                run.append((char) literal);
+            }
+            if (literal < 0 || quantified) {
+                if (run.length() > longest.length()) {
+                    longest = run.toString();
+                }
+                run.setLength(0);
+            }
+        }
+        return run.length() > longest.length() ? run.toString() : longest;
+    }
+
+    /**
+     * @return the index after the character class starting at the given index
+     */
+    private static int endOfClass(String regex, int start) {
+        int i = start + 1;
+        if (i < regex.length() && regex.charAt(i) == '^') {
+            i++;
+        }
+        // A closing bracket directly after the opening one is part of the class.
+        if (i < regex.length() && regex.charAt(i) == ']') {
+            i++;
+        }
+        int depth = 1;
+        while (i < regex.length() && depth > 0) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                depth++;
+            } else if (c == ']') {
+                depth--;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return the index after the group starting at the given index
+     */
+    private static int endOfGroup(String regex, int start) {
+        int i = start;
+        int depth = 0;
+        do {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                i = endOfClass(regex, i) - 1;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            }
+            i++;
+        } while (i < regex.length() && depth > 0);
+        return i;
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    private static long key(int description, int iban, int type) {
+        return (long) description << 34 | (long) iban << 2 | type;
+    }
+
+    private static int type(String type) {
+        if (Transaction.DEPOSIT.equals(type)) {
+            return DEPOSIT;
+        }
+        return Transaction.WITHDRAWAL.equals(type) ? WITHDRAWAL : ANY;
+    }
+}
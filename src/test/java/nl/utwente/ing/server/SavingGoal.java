@@ -0,0 +1,70 @@
+package nl.utwente.ing.server;
+
+import com.google.gson.JsonObject;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * Sets money aside at the start of every month after its creation, until the goal is reached.
+ */
+final class SavingGoal {
+
+    final int id;
+    final String name;
+    /*
+     * Amounts in cents.
+     */
+    final long goal;
+    final long savePerMonth;
+    final long minBalanceRequired;
+
+    /**
+     * The internal time of the session when the goal was created. Money is set aside at every month start after it.
+     */
+    final Instant created;
+
+    SavingGoal(int id, JsonObject json, Instant created) {
+        this(id, Json.string(json, "name"), Json.amount(json, "goal"), Json.amount(json, "savePerMonth"),
+                Json.optionalAmount(json, "minBalanceRequired", 0), created);
+        if (goal < 0 || savePerMonth < 0) {
+            throw ApiException.invalidInput("The goal and monthly savings cannot be negative");
+        }
+    }
+
+    private SavingGoal(int id, String name, long goal, long savePerMonth, long minBalanceRequired, Instant created) {
+        this.id = id;
+        this.name = name;
+        this.goal = goal;
+        this.savePerMonth = savePerMonth;
+        this.minBalanceRequired = minBalanceRequired;
+        this.created = created;
+    }
+
+    JsonObject toJson(long balance) {
+        JsonObject json = new JsonObject();
+        json.addProperty("id", id);
+        json.addProperty("name", name);
+        json.add("goal", Json.amount(goal));
+        json.add("savePerMonth", Json.amount(savePerMonth));
+        json.add("minBalanceRequired", Json.amount(minBalanceRequired));
+        json.add("balance", Json.amount(balance));
+        return json;
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeInt(id);
+        Codec.writeString(out, name);
+        out.writeLong(goal);
+        out.writeLong(savePerMonth);
+        out.writeLong(minBalanceRequired);
+        Codec.writeInstant(out, created);
+    }
+
+    static SavingGoal read(DataInput in) throws IOException {
+        return new SavingGoal(in.readInt(), Codec.readString(in), in.readLong(), in.readLong(), in.readLong(),
+                Codec.readInstant(in));
+    }
+}
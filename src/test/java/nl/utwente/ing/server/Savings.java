@@ -0,0 +1,181 @@
+package nl.utwente.ing.server;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * The money set aside for the saving goals of a session.
+ *
+ * Saving goals set money aside at every month start after their creation, up to the internal time of the session
+ * (the date of its latest transaction). At a month start, money is set aside before transactions with the same date
+ * are applied, and only if the balance at that moment is at least the minimum balance required by the goal. All
+ * amounts are in cents.
+ *
+ * Month starts are processed as the internal time passes them, so advancing the internal time costs time in the
+ * number of month starts crossed rather than in the age of the goals. A change at an earlier date, such as a
+ * backdated transaction, only undoes and redoes the month starts after that date.
+ */
+final class Savings {
+
+    private final Collection<SavingGoal> goals;
+    private final BalanceHistory history;
+
+    /**
+     * The total amount set aside at every processed month start at which money was set aside, keyed by the date in
+     * milliseconds since the epoch.
+     */
+    private final NavigableMap<Long, Long> setAside = new TreeMap<>();
+    /**
+     * The total amount set aside up to and including every month start in {@link #setAside}.
+     */
+    private final NavigableMap<Long, Long> cumulative = new TreeMap<>();
+    /**
+     * The amount set aside for every goal at every month start in {@link #setAside}, keyed by goal ID.
+     */
+    private final NavigableMap<Long, Map<Integer, Long>> setAsideByGoal = new TreeMap<>();
+    private final Map<Integer, Long> saved = new HashMap<>();
+
+    /**
+     * The date up to which all month starts have been processed, in milliseconds since the epoch.
+     */
+    private long processedUntil = Long.MIN_VALUE;
+
+    /**
+     * @param goals the saving goals of the session, ordered by ID, which is read whenever month starts are processed
+     * @param history the balance history of the transactions of the session
+     */
+    Savings(Collection<SavingGoal> goals, BalanceHistory history) {
+        this.goals = goals;
+        this.history = history;
+    }
+
+    /**
+     * Processes the month starts up to the given internal time.
+     *
+     * @param internalTime the date of the latest transaction of the session, or null if there is none
+     */
+    void advanceTo(Instant internalTime) {
+        if (goals.isEmpty() || internalTime == null) {
+            return;
+        }
+
+        Instant firstCreated = null;
+        for (SavingGoal goal : goals) {
+            if (firstCreated == null || goal.created.isBefore(firstCreated)) {
+                firstCreated = goal.created;
+            }
+        }
+        Instant monthStart = monthAfter(firstCreated);
+        if (processedUntil != Long.MIN_VALUE) {
+            Instant next = monthAfter(Instant.ofEpochMilli(processedUntil));
+            if (next.isAfter(monthStart)) {
+                monthStart = next;
+            }
+        }
+
+        for (; !monthStart.isAfter(internalTime); monthStart = Interval.MONTH.plus(monthStart, 1)) {
+            process(monthStart);
+        }
+        processedUntil = Math.max(processedUntil, internalTime.toEpochMilli());
+    }
+
+    /**
+     * Undoes the month starts after the given date, after a change of the transactions or saving goals at that date.
+     * They are processed again by the next {@link #advanceTo}.
+     */
+    void changedAt(Instant date) {
+        long millis = date.toEpochMilli();
+        if (millis >= processedUntil) {
+            return;
+        }
+
+        Iterator<Map<Integer, Long>> months = setAsideByGoal.tailMap(millis, false).values().iterator();
+        while (months.hasNext()) {
+            for (Map.Entry<Integer, Long> amount : months.next().entrySet()) {
+                long goalBalance = saved.get(amount.getKey()) - amount.getValue();
+                if (goalBalance == 0) {
+                    saved.remove(amount.getKey());
+                } else {
+                    saved.put(amount.getKey(), goalBalance);
+                }
+            }
+            months.remove();
+        }
+        setAside.tailMap(millis, false).clear();
+        cumulative.tailMap(millis, false).clear();
+        processedUntil = millis;
+    }
+
+    /**
+     * @return the amount saved for the given goal
+     */
+    long saved(int goalId) {
+        return saved.getOrDefault(goalId, 0L);
+    }
+
+    /**
+     * @return the total amount set aside before the given date
+     */
+    long setAsideBefore(Instant date) {
+        Map.Entry<Long, Long> before = cumulative.lowerEntry(date.toEpochMilli());
+        return before == null ? 0 : before.getValue();
+    }
+
+    /**
+     * @return the amount set aside at exactly the given date
+     */
+    long setAsideAt(Instant date) {
+        return setAside.getOrDefault(date.toEpochMilli(), 0L);
+    }
+
+    /**
+     * @return the amounts set aside after the start and before the end of a period
+     */
+    NavigableMap<Long, Long> setAsideWithin(Instant start, Instant end) {
+        return setAside.subMap(start.toEpochMilli(), false, end.toEpochMilli(), false);
+    }
+
+    /**
+     * Sets money aside for the goals at the given month start, which is after all processed month starts.
+     */
+    private void process(Instant monthStart) {
+        long balance = history.balanceBefore(monthStart) - setAsideBefore(monthStart);
+        Map<Integer, Long> amounts = new LinkedHashMap<>();
+        long total = 0;
+        for (SavingGoal goal : goals) {
+            long goalBalance = saved.getOrDefault(goal.id, 0L);
+            if (!goal.created.isBefore(monthStart) || goalBalance >= goal.goal
+                    || balance < goal.minBalanceRequired) {
+                continue;
+            }
+
+            long amount = Math.min(goal.savePerMonth, goal.goal - goalBalance);
+            if (amount > 0) {
+                saved.put(goal.id, goalBalance + amount);
+                amounts.put(goal.id, amount);
+                balance -= amount;
+                total += amount;
+            }
+        }
+
+        if (total > 0) {
+            long key = monthStart.toEpochMilli();
+            setAside.put(key, total);
+            cumulative.put(key, setAsideBefore(monthStart) + total);
+            setAsideByGoal.put(key, amounts);
+        }
+    }
+
+    /**
+     * @return the first month start after the given date
+     */
+    private static Instant monthAfter(Instant date) {
+        return Interval.MONTH.plus(Interval.MONTH.floor(date), 1);
+    }
+}
@@ -0,0 +1,734 @@
+package nl.utwente.ing.server;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * The data of a single session. All methods are synchronized, so requests of the same session are handled one at a
+ * time.
+ */
+final class Session {
+
+    private static final int DEFAULT_LIMIT = 20;
+
+    private final Map<Integer, Category> categories = new TreeMap<>();
+    private final TransactionStore transactions = new TransactionStore();
+    private final Map<Integer, CategoryRule> categoryRules = new TreeMap<>();
+    private final RuleIndex ruleIndex = new RuleIndex();
+    /**
+     * The latest application on the history of every rule with {@code applyOnHistory}, keyed by rule ID, in the order
+     * in which they started.
+     */
+    private final Map<Integer, HistoryJob> historyJobs = new LinkedHashMap<>();
+    /**
+     * Whether a task of the common fork-join pool is processing the running history jobs.
+     */
+    private boolean processingHistoryJobs;
+    private final Map<Integer, SavingGoal> savingGoals = new TreeMap<>();
+    private final Map<Integer, PaymentRequest> paymentRequests = new TreeMap<>();
+
+    private int nextCategoryId = 1;
+    private int nextTransactionId = 1;
+    private int nextCategoryRuleId = 1;
+    private int nextSavingGoalId = 1;
+    private int nextPaymentRequestId = 1;
+
+    /**
+     * The date of the latest transaction, which is used as the current time for saving goals.
+     */
+    private Instant internalTime;
+
+    /**
+     * The number of changes of this session. Every list with an entity tag remembers the change after which it last
+     * changed, so that its tag changes whenever the list does, also after the session was evicted and read again.
+     */
+    private long version;
+    private long categoriesVersion;
+    private long categoryRulesVersion;
+    private long transactionsVersion;
+    private long savingGoalsVersion;
+
+    private final DateIndex dateIndex = new DateIndex(transactions);
+    private final CategoryIndex categoryIndex = new CategoryIndex(transactions);
+    private final BalanceHistory balanceHistory = new BalanceHistory(transactions);
+    private final Savings savings = new Savings(savingGoals.values(), balanceHistory);
+    private final Payments payments = new Payments(paymentRequests.values(), transactions);
+
+    // Categories
+
+    synchronized JsonArray categories() {
+        JsonArray json = new JsonArray();
+        for (Category category : categories.values()) {
+            json.add(category.toJson());
+        }
+        return json;
+    }
+
+    synchronized JsonObject createCategory(JsonObject json) {
+        Category category = new Category(nextCategoryId, Json.string(json, "name"));
+        nextCategoryId++;
+        categories.put(category.id, category);
+        categoriesVersion = ++version;
+        return category.toJson();
+    }
+
+    synchronized JsonObject category(int id) {
+        return findCategory(id).toJson();
+    }
+
+    synchronized JsonObject updateCategory(int id, JsonObject json) {
+        Category category = findCategory(id);
+        category.name = Json.string(json, "name");
+        categoriesVersion = ++version;
+        return category.toJson();
+    }
+
+    /**
+     * Deletes a category, removes it from its transactions and deletes the category rules assigning it.
+     */
+    synchronized void deleteCategory(int id) {
+        Category category = findCategory(id);
+        categoryRules.values().removeIf(rule -> {
+            if (rule.category != category) {
+                return false;
+            }
+            ruleIndex.remove(rule.id);
+            removeHistoryJob(rule.id);
+            return true;
+        });
+        categories.remove(id);
+        transactions.clearCategory(id);
+        categoryIndex.removeCategory(id);
+        categoriesVersion = ++version;
+        categoryRulesVersion = version;
+    }
+
+    /**
+     * @return the entity tag of the list of categories
+     */
+    synchronized String categoriesTag() {
+        return tag("categories", categoriesVersion);
+    }
+
+    // Transactions
+
+    /**
+     * @param offset the number of transactions to skip, or null for none
+     * @param limit the maximum number of transactions to return, or null for the default of 20
+     * @param categoryName the name of the category of the transactions to return, or null for all transactions
+     * @param after the cursor of the page to return, or null to start at the first transaction
+     * @param from the date of the first transactions to return, or null for no lower bound
+     * @param to the date before which to return transactions, or null for no upper bound
+     * @return the IDs of the transactions, with a cursor if more transactions follow
+     */
+    synchronized Page transactions(Integer offset, Integer limit, String categoryName, Cursor after, Instant from,
+                                   Instant to) {
+        int skip = offset == null ? 0 : offset;
+        int remaining = limit == null ? DEFAULT_LIMIT : limit;
+        if (skip < 0 || remaining < 0) {
+            throw ApiException.invalidInput("The offset and limit cannot be negative");
+        }
+
+        // The list starts after the cursor, or at the from date, whichever comes last. The offset counts from there.
+        Cursor start = after;
+        if (from != null && (start == null || start.date < from.toEpochMilli())) {
+            start = new Cursor(from.toEpochMilli(), 0);
+        }
+        PrimitiveIterator.OfInt ids;
+        if (categoryName == null) {
+            ids = start == null ? dateIndex.from(skip) : dateIndex.after(start.date, start.id, skip);
+        } else {
+            List<Integer> categoryIds = new ArrayList<>();
+            for (Category category : categories.values()) {
+                if (categoryName.equals(category.name)) {
+                    categoryIds.add(category.id);
+                }
+            }
+            ids = start == null ? categoryIndex.from(categoryIds, skip)
+                    : categoryIndex.after(categoryIds, start.date, start.id, skip);
+        }
+        long end = to == null ? Long.MAX_VALUE : to.toEpochMilli();
+
+        IntStream.Builder page = IntStream.builder();
+        int last = 0;
+        while (ids.hasNext()) {
+            int id = ids.nextInt();
+            if (transactions.date(id) >= end) {
+                break;
+            }
+            if (remaining == 0) {
+                return new Page(page.build().toArray(), last == 0 ? null : new Cursor(transactions.date(last), last));
+            }
+            page.add(id);
+            last = id;
+            remaining--;
+        }
+        return new Page(page.build().toArray(), null);
+    }
+
+    /**
+     * Copies the transactions of a page listed by {@link #transactions}, so that they can be written after the
+     * session is unlocked. The lock of the session must have been held since.
+     */
+    synchronized List<Transaction> transactions(Page page) {
+        List<Transaction> list = new ArrayList<>(page.ids.length);
+        for (int id : page.ids) {
+            list.add(transactions.get(id, this::copyOfCategory));
+        }
+        return list;
+    }
+
+    /**
+     * @return a copy of a category, which keeps its name when the category is renamed
+     */
+    private Category copyOfCategory(int id) {
+        Category category = categories.get(id);
+        return new Category(category.id, category.name);
+    }
+
+    synchronized JsonObject createTransaction(JsonObject json) {
+        Transaction transaction = readTransaction(nextTransactionId, json);
+        store(transaction);
+        updateSavings();
+        return transaction.toJson();
+    }
+
+    /**
+     * Creates all transactions in the given array, or none of them if any of them is invalid.
+     */
+    synchronized JsonArray createTransactions(JsonElement json) {
+        if (!json.isJsonArray()) {
+            throw ApiException.invalidInput("Expected an array of transactions");
+        }
+
+        List<Transaction> batch = new ArrayList<>();
+        int id = nextTransactionId;
+        for (JsonElement element : json.getAsJsonArray()) {
+            if (!element.isJsonObject()) {
+                throw ApiException.invalidInput("Expected an array of transactions");
+            }
+            batch.add(readTransaction(id++, element.getAsJsonObject()));
+        }
+
+        JsonArray created = new JsonArray();
+        for (Transaction transaction : batch) {
+            store(transaction);
+            created.add(transaction.toJson());
+        }
+        updateSavings();
+        return created;
+    }
+
+    synchronized JsonObject transaction(int id) {
+        return findTransaction(id).toJson();
+    }
+
+    /**
+     * Replaces a transaction. The category of the transaction is kept if the new transaction does not specify one.
+     */
+    synchronized JsonObject updateTransaction(int id, JsonObject json) {
+        Transaction existing = findTransaction(id);
+        Transaction transaction = readTransaction(id, json);
+        if (!json.has("category")) {
+            transaction.category = existing.category;
+            for (HistoryJob job : historyJobs.values()) {
+                job.replacing(id);
+            }
+        } else {
+            categoryChanged(id);
+        }
+        balanceHistory.remove(id);
+        dateIndex.remove(id);
+        categoryIndex.remove(id);
+        transactions.put(transaction);
+        balanceHistory.add(id);
+        dateIndex.add(id);
+        categoryIndex.add(id);
+        payments.changed();
+        savings.changedAt(existing.date);
+        savings.changedAt(transaction.date);
+        advanceInternalTime(transaction.date);
+        updateSavings();
+        transactionsVersion = ++version;
+        return transaction.toJson();
+    }
+
+    synchronized void deleteTransaction(int id) {
+        Transaction transaction = findTransaction(id);
+        balanceHistory.remove(id);
+        dateIndex.remove(id);
+        categoryIndex.remove(id);
+        transactions.remove(id);
+        payments.changed();
+        savings.changedAt(transaction.date);
+        updateSavings();
+        transactionsVersion = ++version;
+    }
+
+    synchronized JsonObject assignCategory(int id, JsonObject json) {
+        findTransaction(id);
+        int previous = transactions.category(id);
+        transactions.setCategory(id, findCategory(Json.integer(json, "category_id")).id);
+        categoryIndex.changeCategory(id, previous);
+        categoryChanged(id);
+        return findTransaction(id).toJson();
+    }
+
+    /**
+     * Keeps running history jobs from overwriting a category which was set explicitly after they started.
+     */
+    private void categoryChanged(int id) {
+        for (HistoryJob job : historyJobs.values()) {
+            job.categoryChanged(id);
+        }
+    }
+
+    private Transaction readTransaction(int id, JsonObject json) {
+        Transaction transaction = new Transaction(id);
+        transaction.date = Json.date(json, "date");
+        transaction.amount = Json.amount(json, "amount");
+        transaction.externalIBAN = Json.string(json, "externalIBAN");
+        transaction.type = Transaction.type(json);
+        transaction.description = Json.optionalString(json, "description", "");
+        if (transaction.amount <= 0) {
+            throw ApiException.invalidInput("The amount must be positive");
+        }
+
+        JsonElement category = json.get("category");
+        if (category != null && !category.isJsonNull()) {
+            if (!category.isJsonObject()) {
+                throw ApiException.invalidInput("category must be an object");
+            }
+            transaction.category = findCategory(Json.integer(category.getAsJsonObject(), "id"));
+        }
+        return transaction;
+    }
+
+    /**
+     * Stores a new transaction, categorizing it with the first matching category rule if it has no category. The
+     * savings must be updated afterwards.
+     */
+    private void store(Transaction transaction) {
+        transactions.put(transaction);
+        if (transaction.category == null) {
+            CategoryRule rule = ruleIndex.match(transactions, transaction.id);
+            if (rule != null) {
+                transactions.setCategory(transaction.id, rule.category.id);
+                transaction.category = rule.category;
+            }
+        }
+
+        balanceHistory.add(transaction.id);
+        dateIndex.add(transaction.id);
+        categoryIndex.add(transaction.id);
+        payments.added(transaction.id);
+        savings.changedAt(transaction.date);
+        nextTransactionId = Math.max(nextTransactionId, transaction.id + 1);
+        advanceInternalTime(transaction.date);
+        transactionsVersion = ++version;
+    }
+
+    private void advanceInternalTime(Instant date) {
+        if (internalTime == null || date.isAfter(internalTime)) {
+            internalTime = date;
+        }
+    }
+
+    // Category rules
+
+    synchronized List<JsonObject> categoryRules() {
+        List<JsonObject> list = new ArrayList<>(categoryRules.size());
+        for (CategoryRule rule : categoryRules.values()) {
+            list.add(rule.toJson());
+        }
+        return list;
+    }
+
+    synchronized String categoryRulesTag() {
+        return tag("categoryRules", categoryRulesVersion);
+    }
+
+    synchronized JsonObject createCategoryRule(JsonObject json) {
+        CategoryRule rule = readCategoryRule(nextCategoryRuleId, json);
+        nextCategoryRuleId++;
+        categoryRules.put(rule.id, rule);
+        ruleIndex.add(rule);
+        categoryRulesVersion = ++version;
+        applyOnHistory(rule);
+        return rule.toJson();
+    }
+
+    synchronized JsonObject categoryRule(int id) {
+        return findCategoryRule(id).toJson();
+    }
+
+    synchronized JsonObject updateCategoryRule(int id, JsonObject json) {
+        findCategoryRule(id);
+        CategoryRule rule = readCategoryRule(id, json);
+        categoryRules.put(id, rule);
+        ruleIndex.add(rule);
+        categoryRulesVersion = ++version;
+        applyOnHistory(rule);
+        return rule.toJson();
+    }
+
+    synchronized void deleteCategoryRule(int id) {
+        findCategoryRule(id);
+        categoryRules.remove(id);
+        ruleIndex.remove(id);
+        removeHistoryJob(id);
+        categoryRulesVersion = ++version;
+    }
+
+    /**
+     * @return the progress of applying the category rule with the given ID on the history
+     */
+    synchronized JsonObject historyJob(int ruleId) {
+        findCategoryRule(ruleId);
+        HistoryJob job = historyJobs.get(ruleId);
+        if (job == null) {
+            throw ApiException.notFound("Category rule " + ruleId + " is not applied on the history");
+        }
+        return job.toJson();
+    }
+
+    /**
+     * @return whether a category rule is being applied on the history, during which the session cannot be evicted
+     */
+    synchronized boolean hasRunningJobs() {
+        for (HistoryJob job : historyJobs.values()) {
+            if (job.isRunning()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private CategoryRule readCategoryRule(int id, JsonObject json) {
+        CategoryRule rule = new CategoryRule(id);
+        rule.description = Json.string(json, "description");
+        if (!CategoryRule.isLiteral(rule.description)) {
+            CategoryRule.compile(rule.description);
+        }
+        rule.iBAN = Json.string(json, "iBAN");
+        rule.type = Json.string(json, "type");
+        rule.applyOnHistory = Json.bool(json, "applyOnHistory", false);
+        if (!rule.type.isEmpty() && !Transaction.DEPOSIT.equals(rule.type)
+                && !Transaction.WITHDRAWAL.equals(rule.type)) {
+            throw ApiException.invalidInput("Invalid transaction type: " + rule.type);
+        }
+
+        Category category = categories.get(Json.integer(json, "category_id"));
+        if (category == null) {
+            throw ApiException.invalidInput("Unknown category");
+        }
+        rule.category = category;
+        return rule;
+    }
+
+    /**
+     * Applies a created or updated rule on the history if requested, within this request for a small history and in
+     * the background otherwise. An earlier application of the rule is finished first.
+     *
+     * Jobs are processed one at a time, in the order in which they started, so that a rule applied later wins from
+     * a rule applied earlier, however far the earlier one got. A small history is therefore only processed within
+     * the request if no other job is running.
+     */
+    private void applyOnHistory(CategoryRule rule) {
+        removeHistoryJob(rule.id);
+        if (!rule.applyOnHistory) {
+            return;
+        }
+        HistoryJob job = new HistoryJob(transactions, categoryIndex, rule);
+        if (job.isSmall() && !hasRunningJobs()) {
+            job.processChunk();
+        } else if (!processingHistoryJobs) {
+            processingHistoryJobs = true;
+            ForkJoinPool.commonPool().execute(this::processHistoryJobs);
+        }
+        historyJobs.put(rule.id, job);
+    }
+
+    /**
+     * Processes the running history jobs in the background, taking the lock of the session for every chunk.
+     */
+    private void processHistoryJobs() {
+        while (true) {
+            synchronized (this) {
+                HistoryJob running = null;
+                for (HistoryJob job : historyJobs.values()) {
+                    if (job.isRunning()) {
+                        running = job;
+                        break;
+                    }
+                }
+                if (running == null) {
+                    processingHistoryJobs = false;
+                    return;
+                }
+                running.processChunk();
+            }
+        }
+    }
+
+    /**
+     * Processes the remaining chunks of all running history jobs within the calling thread. The background task
+     * meanwhile finds nothing left to process.
+     */
+    synchronized void finishHistoryJobs() {
+        for (HistoryJob job : historyJobs.values()) {
+            job.finish();
+        }
+    }
+
+    /**
+     * Removes the application of a rule on the history when the rule is changed or deleted. If it is still running,
+     * the running jobs are finished first, so that the outcome does not depend on how far they got.
+     */
+    private void removeHistoryJob(int ruleId) {
+        HistoryJob job = historyJobs.get(ruleId);
+        if (job != null && job.isRunning()) {
+            finishHistoryJobs();
+        }
+        historyJobs.remove(ruleId);
+    }
+
+    // Balance history
+
+    synchronized JsonArray balanceHistory(Interval interval, int intervals, Instant now) {
+        return balanceHistory.candles(interval, intervals, now, savings);
+    }
+
+    /**
+     * The balance history depends on the transactions and the money set aside for saving goals, and only on the
+     * period containing the current time.
+     *
+     * @return the entity tag of the balance history with the given parameters
+     */
+    synchronized String balanceHistoryTag(Interval interval, int intervals, Instant now) {
+        return tag(String.format("balance-%s-%d-%d", interval.name().toLowerCase(Locale.ROOT), intervals,
+                interval.floor(now).toEpochMilli()), Math.max(transactionsVersion, savingGoalsVersion));
+    }
+
+    // Saving goals
+
+    synchronized List<JsonObject> savingGoals() {
+        List<JsonObject> list = new ArrayList<>(savingGoals.size());
+        for (SavingGoal goal : savingGoals.values()) {
+            list.add(goal.toJson(savings.saved(goal.id)));
+        }
+        return list;
+    }
+
+    /**
+     * The money saved for saving goals depends on the transactions.
+     *
+     * @return the entity tag of the list of saving goals
+     */
+    synchronized String savingGoalsTag() {
+        return tag("savingGoals", Math.max(savingGoalsVersion, transactionsVersion));
+    }
+
+    /**
+     * Creates a saving goal, which starts at the internal time of the session, or the current time if the session
+     * has no transactions yet.
+     */
+    synchronized JsonObject createSavingGoal(JsonObject json, Instant now) {
+        SavingGoal goal = new SavingGoal(nextSavingGoalId, json, internalTime == null ? now : internalTime);
+        nextSavingGoalId++;
+        savingGoals.put(goal.id, goal);
+        savings.changedAt(goal.created);
+        updateSavings();
+        savingGoalsVersion = ++version;
+        return goal.toJson(0);
+    }
+
+    synchronized void deleteSavingGoal(int id) {
+        SavingGoal goal = savingGoals.remove(id);
+        if (goal == null) {
+            throw ApiException.notFound("Saving goal " + id + " does not exist");
+        }
+        savings.changedAt(goal.created);
+        updateSavings();
+        savingGoalsVersion = ++version;
+    }
+
+    /**
+     * Sets money aside for saving goals at the month starts passed by the internal time, after a change of the
+     * transactions or saving goals.
+     */
+    private void updateSavings() {
+        savings.advanceTo(internalTime);
+    }
+
+    // Payment requests
+
+    /**
+     * Lists the payment requests with the deposits paying them. Every deposit pays the oldest unfilled payment
+     * request it matches, in chronological order of the deposits.
+     */
+    synchronized List<JsonObject> paymentRequests() {
+        List<JsonObject> list = new ArrayList<>(paymentRequests.size());
+        for (PaymentRequest request : paymentRequests.values()) {
+            List<Transaction> paid = new ArrayList<>();
+            for (int id : payments.paid(request.id)) {
+                paid.add(transactions.get(id, categories::get));
+            }
+            list.add(request.toJson(paid));
+        }
+        return list;
+    }
+
+    synchronized JsonObject createPaymentRequest(JsonObject json) {
+        PaymentRequest request = new PaymentRequest(nextPaymentRequestId, json);
+        nextPaymentRequestId++;
+        paymentRequests.put(request.id, request);
+        payments.added(request);
+        return request.toJson(new ArrayList<>());
+    }
+
+    // Eviction
+
+    /**
+     * Writes the data of this session. Data derived from it, such as the balance history, is not written.
+     */
+    synchronized void write(DataOutput out) throws IOException {
+        out.writeInt(nextCategoryId);
+        out.writeInt(nextTransactionId);
+        out.writeInt(nextCategoryRuleId);
+        out.writeInt(nextSavingGoalId);
+        out.writeInt(nextPaymentRequestId);
+        out.writeLong(version);
+        out.writeBoolean(internalTime != null);
+        if (internalTime != null) {
+            Codec.writeInstant(out, internalTime);
+        }
+
+        out.writeInt(categories.size());
+        for (Category category : categories.values()) {
+            category.write(out);
+        }
+        transactions.write(out);
+        out.writeInt(categoryRules.size());
+        for (CategoryRule rule : categoryRules.values()) {
+            rule.write(out);
+        }
+        out.writeInt(savingGoals.size());
+        for (SavingGoal goal : savingGoals.values()) {
+            goal.write(out);
+        }
+        out.writeInt(paymentRequests.size());
+        for (PaymentRequest request : paymentRequests.values()) {
+            request.write(out);
+        }
+        // Sessions are not evicted while a job is running, so only finished jobs need to be written.
+        List<HistoryJob> finishedJobs = new ArrayList<>();
+        for (HistoryJob job : historyJobs.values()) {
+            if (!job.isRunning()) {
+                finishedJobs.add(job);
+            }
+        }
+        out.writeInt(finishedJobs.size());
+        for (HistoryJob job : finishedJobs) {
+            job.write(out);
+        }
+    }
+
+    /**
+     * Reads a session written by {@link #write}, rebuilding its balance history and savings.
+     */
+    static Session read(DataInput in) throws IOException {
+        Session session = new Session();
+        session.nextCategoryId = in.readInt();
+        session.nextTransactionId = in.readInt();
+        session.nextCategoryRuleId = in.readInt();
+        session.nextSavingGoalId = in.readInt();
+        session.nextPaymentRequestId = in.readInt();
+        // The versions of the lists are not written, so their tags change once after the session was read.
+        session.version = in.readLong();
+        session.categoriesVersion = session.version;
+        session.categoryRulesVersion = session.version;
+        session.transactionsVersion = session.version;
+        session.savingGoalsVersion = session.version;
+        session.internalTime = in.readBoolean() ? Codec.readInstant(in) : null;
+
+        for (int i = in.readInt(); i > 0; i--) {
+            Category category = Category.read(in);
+            session.categories.put(category.id, category);
+        }
+        session.transactions.readFrom(in);
+        for (int i = in.readInt(); i > 0; i--) {
+            CategoryRule rule = CategoryRule.read(in, session.categories);
+            session.categoryRules.put(rule.id, rule);
+            session.ruleIndex.add(rule);
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            SavingGoal goal = SavingGoal.read(in);
+            session.savingGoals.put(goal.id, goal);
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            PaymentRequest request = PaymentRequest.read(in);
+            session.paymentRequests.put(request.id, request);
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            HistoryJob job = HistoryJob.read(in);
+            session.historyJobs.put(job.ruleId, job);
+        }
+
+        int[] ids = session.transactions.sortedIds();
+        session.dateIndex.addAll(ids);
+        session.categoryIndex.addAll(ids);
+        session.balanceHistory.addAll(ids);
+        session.updateSavings();
+        return session;
+    }
+
+    /**
+     * @return a strong entity tag, which is only compared with tags of the same session
+     */
+    private static String tag(String list, long version) {
+        return "\"" + list + "-" + version + "\"";
+    }
+
+    private Category findCategory(int id) {
+        Category category = categories.get(id);
+        if (category == null) {
+            throw ApiException.notFound("Category " + id + " does not exist");
+        }
+        return category;
+    }
+
+    /**
+     * @return a copy of the stored transaction with the given ID
+     */
+    private Transaction findTransaction(int id) {
+        if (!transactions.contains(id)) {
+            throw ApiException.notFound("Transaction " + id + " does not exist");
+        }
+        return transactions.get(id, categories::get);
+    }
+
+    private CategoryRule findCategoryRule(int id) {
+        CategoryRule rule = categoryRules.get(id);
+        if (rule == null) {
+            throw ApiException.notFound("Category rule " + id + " does not exist");
+        }
+        return rule;
+    }
+}
@@ -0,0 +1,71 @@
+package nl.utwente.ing.server;
+
+/**
+ * Determines when the {@link ReferenceServer} moves the data of a session off the heap. A session is evicted when it
+ * has not been used for {@code idleMillis}, or earlier when more than {@code hotSetSize} sessions are on the heap, in
+ * which case the least recently used sessions are evicted first. An evicted session is read back on its next request.
+ * A session which has not been used for {@code expiryMillis} is deleted, after which its requests are unauthorized.
+ */
+public final class SessionEviction {
+
+    /**
+     * System property with the idle time in milliseconds after which a session is evicted, default 5 minutes.
+     */
+    public static final String IDLE_MILLIS_PROPERTY = "reference.sessions.idleMillis";
+
+    /**
+     * System property with the maximum number of sessions kept on the heap, default 10000.
+     */
+    public static final String HOT_SET_SIZE_PROPERTY = "reference.sessions.hotSetSize";
+
+    /**
+     * System property with the idle time in milliseconds after which a session is deleted, default 24 hours.
+     */
+    public static final String EXPIRY_MILLIS_PROPERTY = "reference.sessions.expiryMillis";
+
+    private static final long DEFAULT_EXPIRY_MILLIS = 24 * 60 * 60 * 1_000;
+
+    final long idleMillis;
+    final int hotSetSize;
+    final long expiryMillis;
+
+    /**
+     * @param idleMillis the idle time after which a session is evicted, where 0 evicts a session as soon as its last
+     *                   request completes
+     * @param hotSetSize the maximum number of sessions kept on the heap
+     */
+    public SessionEviction(long idleMillis, int hotSetSize) {
+        this(idleMillis, hotSetSize, DEFAULT_EXPIRY_MILLIS);
+    }
+
+    /**
+     * @param idleMillis the idle time after which a session is evicted, where 0 evicts a session as soon as its last
+     *                   request completes
+     * @param hotSetSize the maximum number of sessions kept on the heap
+     * @param expiryMillis the idle time after which a session is deleted
+     */
+    public SessionEviction(long idleMillis, int hotSetSize, long expiryMillis) {
+        if (idleMillis < 0 || hotSetSize < 0) {
+            throw new IllegalArgumentException("The idle time and hot set size cannot be negative");
+        }
+        if (expiryMillis <= 0) {
+            throw new IllegalArgumentException("The expiry time must be positive");
+        }
+        this.idleMillis = idleMillis;
+        this.hotSetSize = hotSetSize;
+        this.expiryMillis = expiryMillis;
+    }
+
+    public static SessionEviction fromSystemProperties() {
+        return new SessionEviction(Long.getLong(IDLE_MILLIS_PROPERTY, 300_000),
+                Integer.getInteger(HOT_SET_SIZE_PROPERTY, 10_000),
+                Long.getLong(EXPIRY_MILLIS_PROPERTY, DEFAULT_EXPIRY_MILLIS));
+    }
+
+    /**
+     * @return a policy evicting every session as soon as its last request completes
+     */
+    public static SessionEviction afterEveryRequest() {
+        return new SessionEviction(0, 0);
+    }
+}
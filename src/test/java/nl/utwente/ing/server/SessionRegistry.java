@@ -0,0 +1,385 @@
+package nl.utwente.ing.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The sessions of the server, of which idle ones are moved off the heap and expired ones are deleted according to a
+ * {@link SessionEviction}.
+ *
+ * An evicted session is written to a direct buffer, outside of the heap scanned by the garbage collector, and read
+ * back when a request for it arrives. A session is never evicted while a request is using it: requests
+ * {@link #acquire} a session and {@link #release} it when done. Sessions are looked up in a concurrent map and locked
+ * one at a time, so requests of different sessions do not contend.
+ *
+ * Idle and expired sessions are found by a background sweep through a {@link TimingWheel}, which only visits the
+ * sessions whose idle time may have passed. A session used since its visit was scheduled is scheduled again for its
+ * new deadline when it is visited, so using a session does not touch the wheel, except when it is read back. The
+ * number of sessions on the heap may exceed the hot set size until the next sweep. Sessions applying a category rule
+ * on their history in the background are neither evicted nor deleted until it completes.
+ */
+final class SessionRegistry {
+
+    private static final long MIN_SWEEP_MILLIS = 10;
+    private static final long MAX_SWEEP_MILLIS = 1_000;
+    private static final int MIN_WHEEL_SIZE = 64;
+    private static final int MAX_WHEEL_SIZE = 4096;
+    private static final ThreadLocal<SecureRandom> RANDOM = ThreadLocal.withInitial(SecureRandom::new);
+
+    private final Map<String, Entry> sessions = new ConcurrentHashMap<>();
+    private final long idleNanos;
+    private final long expiryNanos;
+    private final int hotSetSize;
+    private final TimingWheel<Visit> wheel;
+    private final ScheduledExecutorService sweeper;
+    private final LongAdder resident = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    /**
+     * The log to which expired sessions are appended, or null if sessions are not logged.
+     */
+    private final WriteAheadLog log;
+
+    SessionRegistry(SessionEviction eviction) {
+        this(eviction, null);
+    }
+
+    /**
+     * @param log the log to append the deletion of expired sessions to, or null to not log them
+     */
+    SessionRegistry(SessionEviction eviction, WriteAheadLog log) {
+        this.log = log;
+        idleNanos = TimeUnit.MILLISECONDS.toNanos(eviction.idleMillis);
+        expiryNanos = TimeUnit.MILLISECONDS.toNanos(eviction.expiryMillis);
+        hotSetSize = eviction.hotSetSize;
+        long timeout = Math.min(eviction.idleMillis, eviction.expiryMillis);
+        long period = Math.max(MIN_SWEEP_MILLIS, Math.min(timeout / 2, MAX_SWEEP_MILLIS));
+        int wheelSize = (int) Math.max(MIN_WHEEL_SIZE, Math.min(eviction.expiryMillis / period + 1, MAX_WHEEL_SIZE));
+        wheel = new TimingWheel<>(wheelSize, TimeUnit.MILLISECONDS.toNanos(period), System.nanoTime());
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "reference-server-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a new session.
+     *
+     * @return the ID of the session
+     */
+    String create() {
+        Entry entry;
+        do {
+            entry = new Entry(randomId(), new Session());
+        } while (sessions.putIfAbsent(entry.id, entry) != null);
+        added(entry);
+        return entry.id;
+    }
+
+    /**
+     * Creates a session with the given ID while the {@link WriteAheadLog} is replayed.
+     */
+    void restore(String id) {
+        Entry entry = new Entry(id, new Session());
+        sessions.put(id, entry);
+        added(entry);
+    }
+
+    /**
+     * Deletes the session with the given ID, if it exists, while the {@link WriteAheadLog} is replayed.
+     */
+    void delete(String id) {
+        Entry entry = sessions.get(id);
+        if (entry != null) {
+            synchronized (entry) {
+                delete(entry);
+            }
+        }
+    }
+
+    /**
+     * Returns the session with the given ID, reading it back if it was evicted. Every acquired session must be
+     * released.
+     *
+     * @return the session, or null if it does not exist
+     */
+    Session acquire(String id) {
+        Entry entry = sessions.get(id);
+        if (entry == null) {
+            return null;
+        }
+        synchronized (entry) {
+            if (entry.expired) {
+                return null;
+            }
+            entry.lastAccess = System.nanoTime();
+            if (entry.session == null) {
+                entry.session = read(entry.evicted);
+                entry.evicted = null;
+                resident.increment();
+                // An evicted session is scheduled for its expiry, which is later than its next eviction.
+                schedule(entry, entry.lastAccess + Math.min(idleNanos, expiryNanos));
+            }
+            entry.active++;
+            return entry.session;
+        }
+    }
+
+    void release(String id) {
+        Entry entry = sessions.get(id);
+        synchronized (entry) {
+            entry.active--;
+            entry.lastAccess = System.nanoTime();
+            if (entry.active == 0 && idleNanos == 0 && !entry.session.hasRunningJobs()) {
+                evict(entry);
+            }
+        }
+    }
+
+    /**
+     * @return the number of times a session was moved off the heap
+     */
+    long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return the number of sessions which were deleted because they expired
+     */
+    long expirations() {
+        return expirations.sum();
+    }
+
+    /**
+     * @return the number of sessions, on or off the heap
+     */
+    int size() {
+        return sessions.size();
+    }
+
+    void close() {
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * Evicts or deletes the sessions which have been idle for too long, and then evicts the least recently used
+     * sessions exceeding the hot set.
+     */
+    void sweep() {
+        long now = System.nanoTime();
+        wheel.advance(now, visit -> expire(visit, now));
+
+        int excess = (int) (resident.sum() - hotSetSize);
+        if (excess > 0) {
+            List<Candidate> candidates = new ArrayList<>();
+            for (Entry entry : sessions.values()) {
+                synchronized (entry) {
+                    if (entry.session != null && entry.active == 0 && !entry.session.hasRunningJobs()) {
+                        candidates.add(new Candidate(entry, entry.lastAccess));
+                    }
+                }
+            }
+            candidates.sort(Comparator.comparingLong(candidate -> candidate.lastAccess));
+            for (Candidate candidate : candidates.subList(0, Math.min(excess, candidates.size()))) {
+                synchronized (candidate.entry) {
+                    if (candidate.entry.session != null && candidate.entry.active == 0
+                            && !candidate.entry.session.hasRunningJobs()) {
+                        evict(candidate.entry);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes or evicts the session of a visit handed out by the wheel if it has been idle for long enough, and
+     * schedules the next visit unless it was deleted.
+     */
+    private void expire(Visit visit, long now) {
+        Entry entry = visit.entry;
+        synchronized (entry) {
+            if (entry.visit != visit) {
+                return;
+            }
+            if (entry.active > 0 || (entry.session != null && entry.session.hasRunningJobs())) {
+                schedule(entry, now + Math.min(idleNanos, expiryNanos));
+                return;
+            }
+            if (now - entry.lastAccess >= expiryNanos) {
+                delete(entry);
+                expirations.increment();
+                if (log != null) {
+                    log.expired(entry.id);
+                }
+                return;
+            }
+            if (entry.session != null && now - entry.lastAccess >= idleNanos) {
+                evict(entry);
+            }
+            schedule(entry, entry.lastAccess + (entry.session == null ? expiryNanos
+                    : Math.min(idleNanos, expiryNanos)));
+        }
+    }
+
+    private void added(Entry entry) {
+        resident.increment();
+        synchronized (entry) {
+            schedule(entry, entry.lastAccess + Math.min(idleNanos, expiryNanos));
+        }
+    }
+
+    /**
+     * Deletes the session of the given entry, which must be held.
+     */
+    private void delete(Entry entry) {
+        sessions.remove(entry.id, entry);
+        entry.expired = true;
+        if (entry.session != null) {
+            resident.decrement();
+        }
+        entry.session = null;
+        entry.evicted = null;
+        // Its scheduled visit is ignored when it is handed out.
+        entry.visit = null;
+    }
+
+    /**
+     * Schedules a visit of the given entry, which must be held, replacing the visit scheduled before.
+     */
+    private void schedule(Entry entry, long deadline) {
+        entry.visit = new Visit(entry);
+        wheel.schedule(entry.visit, deadline);
+    }
+
+    /**
+     * Moves the session of the given entry, which must be held, off the heap.
+     */
+    private void evict(Entry entry) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            entry.session.write(new DataOutputStream(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        entry.evicted = ByteBuffer.allocateDirect(bytes.size());
+        entry.evicted.put(bytes.toByteArray());
+        ((Buffer) entry.evicted).flip();
+        entry.session = null;
+        resident.decrement();
+        evictions.increment();
+    }
+
+    /**
+     * Generates a random version 4 UUID with the secure random generator of the current thread. A session ID is the
+     * only credential of its session, so it must not be predictable from other IDs. Unlike {@link UUID#randomUUID},
+     * which draws from a single secure random generator, this does not make concurrent session creations contend.
+     */
+    private static String randomId() {
+        SecureRandom random = RANDOM.get();
+        long high = random.nextLong() & ~0xf000L | 0x4000L;
+        long low = random.nextLong() & 0x3fffffffffffffffL | 0x8000000000000000L;
+        return new UUID(high, low).toString();
+    }
+
+    private static Session read(ByteBuffer evicted) {
+        try {
+            return Session.read(new DataInputStream(new BufferInputStream(evicted.duplicate())));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class Entry {
+
+        final String id;
+        /**
+         * The session, or null if it is evicted.
+         */
+        Session session;
+        /**
+         * The data of the session if it is evicted, or null.
+         */
+        ByteBuffer evicted;
+        /**
+         * The number of requests using the session.
+         */
+        int active;
+        long lastAccess = System.nanoTime();
+        /**
+         * Whether the session was deleted, after which it cannot be acquired anymore.
+         */
+        boolean expired;
+        /**
+         * The scheduled visit of the sweep. Other visits of the entry in the wheel have been replaced.
+         */
+        Visit visit;
+
+        Entry(String id, Session session) {
+            this.id = id;
+            this.session = session;
+        }
+    }
+
+    private static final class Visit {
+
+        final Entry entry;
+
+        Visit(Entry entry) {
+            this.entry = entry;
+        }
+    }
+
+    private static final class Candidate {
+
+        final Entry entry;
+        final long lastAccess;
+
+        Candidate(Entry entry, long lastAccess) {
+            this.entry = entry;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    private static final class BufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package nl.utwente.ing.server;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the {@link SessionRegistry} with a registry keeping its sessions in a map behind a single lock and naming
+ * them with {@link UUID#randomUUID}, for concurrent threads creating sessions and looking them up as in a login storm.
+ * Also compares a sweep through the timing wheel of the registry with scanning all sessions for idle ones, as the
+ * registry did before.
+ *
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+public class SessionRegistryBenchmark {
+
+    private static final int THREADS = 8;
+    private static final int SESSIONS_PER_THREAD = 10_000;
+    private static final int LOOKUPS_PER_SESSION = 10;
+    private static final int SWEEP_SESSIONS = 100_000;
+    private static final int SWEEP_ITERATIONS = 100;
+    private static final long IDLE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    @Test
+    public void loginStormBenchmark() throws InterruptedException {
+        // Warm up both before measuring either.
+        LockedRegistry locked = new LockedRegistry();
+        storm(locked::create, locked::lookup);
+        SessionRegistry registry = new SessionRegistry(new SessionEviction(IDLE_MILLIS, Integer.MAX_VALUE));
+        storm(registry::create, id -> lookup(registry, id));
+        registry.close();
+
+        locked = new LockedRegistry();
+        double lockedNanos = storm(locked::create, locked::lookup);
+        SessionRegistry measured = new SessionRegistry(new SessionEviction(IDLE_MILLIS, Integer.MAX_VALUE));
+        double registryNanos = storm(measured::create, id -> lookup(measured, id));
+        assertEquals(THREADS * SESSIONS_PER_THREAD, measured.size());
+        measured.close();
+
+        System.out.println(String.format("%d threads each creating %d sessions and looking up %d per session: %.2f us "
+                        + "per session with a single lock, %.2f us with the registry", THREADS, SESSIONS_PER_THREAD,
+                LOOKUPS_PER_SESSION, lockedNanos / 1_000, registryNanos / 1_000));
+        assertTrue(registryNanos < lockedNanos);
+    }
+
+    @Test
+    public void sweepBenchmark() {
+        SessionRegistry registry = new SessionRegistry(new SessionEviction(IDLE_MILLIS, Integer.MAX_VALUE));
+        Map<String, Idle> scanned = new ConcurrentHashMap<>();
+        for (int i = 0; i < SWEEP_SESSIONS; i++) {
+            registry.create();
+            scanned.put(UUID.randomUUID().toString(), new Idle(null));
+        }
+
+        long idleNanos = TimeUnit.MILLISECONDS.toNanos(IDLE_MILLIS);
+        int idle = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < SWEEP_ITERATIONS; i++) {
+            idle += scan(scanned, idleNanos);
+        }
+        double scanNanos = (System.nanoTime() - start) / (double) SWEEP_ITERATIONS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < SWEEP_ITERATIONS; i++) {
+            registry.sweep();
+        }
+        double wheelNanos = (System.nanoTime() - start) / (double) SWEEP_ITERATIONS;
+        assertEquals(0, idle);
+        assertEquals(SWEEP_SESSIONS, registry.size());
+        registry.close();
+
+        System.out.println(String.format("Sweep of %d sessions of which none are idle: %.1f us scanning all sessions, "
+                + "%.1f us with the timing wheel", SWEEP_SESSIONS, scanNanos / 1_000, wheelNanos / 1_000));
+        assertTrue(wheelNanos < scanNanos);
+    }
+
+    /**
+     * Lets every thread create sessions, each followed by lookups of random sessions the thread created.
+     *
+     * @return the time per session in nanoseconds
+     */
+    private static double storm(Supplier<String> create, Consumer<String> lookup) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            Thread thread = new Thread(() -> {
+                String[] ids = new String[SESSIONS_PER_THREAD];
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int j = 0; j < SESSIONS_PER_THREAD; j++) {
+                    ids[j] = create.get();
+                    for (int k = 0; k < LOOKUPS_PER_SESSION; k++) {
+                        lookup.accept(ids[random.nextInt(j + 1)]);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return (System.nanoTime() - begin) / (double) (THREADS * SESSIONS_PER_THREAD);
+    }
+
+    private static void lookup(SessionRegistry registry, String id) {
+        registry.acquire(id);
+        registry.release(id);
+    }
+
+    /**
+     * The idle check of the sweep before the timing wheel, which locked every session to read its last access.
+     *
+     * @return the number of idle sessions
+     */
+    private static int scan(Map<String, Idle> sessions, long idleNanos) {
+        long now = System.nanoTime();
+        int idle = 0;
+        for (Idle session : sessions.values()) {
+            synchronized (session) {
+                if (now - session.lastAccess >= idleNanos) {
+                    idle++;
+                }
+            }
+        }
+        return idle;
+    }
+
+    /**
+     * Keeps the state the registry keeps for a session, behind the lock of the registry.
+     */
+    private static final class LockedRegistry {
+
+        private final Map<String, Idle> sessions = new HashMap<>();
+
+        synchronized String create() {
+            String id = UUID.randomUUID().toString();
+            sessions.put(id, new Idle(new Session()));
+            return id;
+        }
+
+        void lookup(String id) {
+            synchronized (this) {
+                Idle entry = sessions.get(id);
+                entry.active++;
+                entry.lastAccess = System.nanoTime();
+            }
+            synchronized (this) {
+                Idle entry = sessions.get(id);
+                entry.active--;
+                entry.lastAccess = System.nanoTime();
+            }
+        }
+    }
+
+    private static final class Idle {
+
+        final Session session;
+        int active;
+        long lastAccess = System.nanoTime();
+
+        Idle(Session session) {
+            this.session = session;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package nl.utwente.ing.server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Items with deadlines in a ring of slots of one tick each, so that finding the items which are due takes time
+ * proportional to the number of due items instead of the number of scheduled items.
+ *
+ * Items may be scheduled by any thread, while a single thread advances the wheel. A deadline further away than one
+ * revolution is kept in the last slot of the revolution and seen once per revolution, so items are handed out at or
+ * after their deadline and their owner has to check whether they are due, rescheduling them if not. Items are never
+ * handed out before the tick containing their deadline, but an item scheduled into the slot which is being advanced
+ * may be handed out one revolution late.
+ */
+final class TimingWheel<T> {
+
+    private final Queue<T>[] slots;
+    private final int mask;
+    private final long tickNanos;
+    private final long startNanos;
+    /**
+     * The last tick of which the slot was handed out.
+     */
+    private volatile long tick;
+
+    /**
+     * @param size the number of slots, which is rounded up to a power of two
+     * @param tickNanos the period of a slot
+     * @param now the current {@link System#nanoTime}
+     */
+    @SuppressWarnings("unchecked")
+    TimingWheel(int size, long tickNanos, long now) {
+        int slotCount = Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+        this.slots = (Queue<T>[]) new Queue<?>[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.mask = slotCount - 1;
+        this.tickNanos = tickNanos;
+        this.startNanos = now;
+    }
+
+    void schedule(T item, long deadline) {
+        long current = tick;
+        long due = Math.max(current + 1, Math.min(current + slots.length, ticks(deadline) + 1));
+        slots[(int) (due & mask)].add(item);
+    }
+
+    /**
+     * Hands out the items of the slots which have passed.
+     *
+     * @param now the current {@link System#nanoTime}
+     */
+    void advance(long now, Consumer<T> due) {
+        long last = ticks(now);
+        for (long next = tick + 1; next <= last; next++) {
+            Queue<T> slot = slots[(int) (next & mask)];
+            tick = next;
+            // Only the items in the slot when it is reached are handed out. Items added meanwhile, such as items
+            // rescheduled a revolution ahead, come around again.
+            for (int count = slot.size(); count > 0; count--) {
+                T item = slot.poll();
+                if (item == null) {
+                    break;
+                }
+                due.accept(item);
+            }
+        }
+    }
+
+    private long ticks(long nanos) {
+        return (nanos - startNanos) / tickNanos;
+    }
+}
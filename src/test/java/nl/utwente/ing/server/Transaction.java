@@ -0,0 +1,48 @@
+package nl.utwente.ing.server;
+
+import com.google.gson.JsonObject;
+
+import java.time.Instant;
+
+final class Transaction {
+
+    static final String DEPOSIT = "deposit";
+    static final String WITHDRAWAL = "withdrawal";
+
+    final int id;
+    Instant date;
+    /**
+     * The amount in cents.
+     */
+    long amount;
+    String externalIBAN;
+    String type;
+    String description;
+    Category category;
+
+    Transaction(int id) {
+        this.id = id;
+    }
+
+    static String type(JsonObject json) {
+        String type = Json.string(json, "type");
+        if (!DEPOSIT.equals(type) && !WITHDRAWAL.equals(type)) {
+            throw ApiException.invalidInput("Invalid transaction type: " + type);
+        }
+        return type;
+    }
+
+    JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("id", id);
+        json.addProperty("date", Json.formatDate(date));
+        json.add("amount", Json.amount(amount));
+        json.addProperty("externalIBAN", externalIBAN);
+        json.addProperty("type", type);
+        json.addProperty("description", description);
+        if (category != null) {
+            json.add("category", category.toJson());
+        }
+        return json;
+    }
+}
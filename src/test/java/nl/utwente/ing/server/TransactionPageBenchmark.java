@@ -0,0 +1,96 @@
+package nl.utwente.ing.server;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares listing a page deep into a million transactions by sorting all transactions, as before the
+ * {@link DateIndex} was added, with an offset into the index and with a cursor.
+ *
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+public class TransactionPageBenchmark {
+
+    private static final int TRANSACTIONS = 1_000_000;
+    private static final int OFFSET = TRANSACTIONS - 10_000;
+    private static final int LIMIT = 20;
+    private static final int SORT_ITERATIONS = 10;
+    private static final int INDEX_ITERATIONS = 10_000;
+    private static final long START = Instant.parse("2008-01-01T00:00:00Z").toEpochMilli();
+    private static final long MINUTE_MILLIS = 60_000;
+
+    @Test
+    public void deepPageBenchmark() {
+        Random random = new Random(1);
+        TransactionStore store = new TransactionStore();
+        DateIndex index = new DateIndex(store);
+        long start = System.nanoTime();
+        for (int id = 1; id <= TRANSACTIONS; id++) {
+            store.put(transaction(id, random));
+            index.add(id);
+        }
+        double addNanos = (System.nanoTime() - start) / (double) TRANSACTIONS;
+
+        int[] sorted = null;
+        start = System.nanoTime();
+        for (int i = 0; i < SORT_ITERATIONS; i++) {
+            sorted = Arrays.copyOfRange(store.sortedIds(), OFFSET, OFFSET + LIMIT);
+        }
+        double sortNanos = (System.nanoTime() - start) / (double) SORT_ITERATIONS;
+
+        int[] byOffset = null;
+        start = System.nanoTime();
+        for (int i = 0; i < INDEX_ITERATIONS; i++) {
+            byOffset = page(index.from(OFFSET));
+        }
+        double offsetNanos = (System.nanoTime() - start) / (double) INDEX_ITERATIONS;
+
+        int last = sorted[0];
+        int[] byCursor = null;
+        start = System.nanoTime();
+        for (int i = 0; i < INDEX_ITERATIONS; i++) {
+            byCursor = page(index.after(store.date(last), last, 0));
+        }
+        double cursorNanos = (System.nanoTime() - start) / (double) INDEX_ITERATIONS;
+
+        assertArrayEquals(sorted, byOffset);
+        assertArrayEquals(Arrays.copyOfRange(sorted, 1, LIMIT), Arrays.copyOf(byCursor, LIMIT - 1));
+        System.out.println(String.format("Page of %d at offset %d of %d transactions: %.1f us sorting, %.1f us with "
+                        + "an offset into the index, %.1f us with a cursor (%.2f us per added transaction)",
+                LIMIT, OFFSET, TRANSACTIONS, sortNanos / 1_000, offsetNanos / 1_000, cursorNanos / 1_000,
+                addNanos / 1_000));
+        assertTrue(cursorNanos < sortNanos && offsetNanos < sortNanos);
+    }
+
+    private static int[] page(PrimitiveIterator.OfInt ids) {
+        int[] page = new int[LIMIT];
+        for (int i = 0; i < LIMIT && ids.hasNext(); i++) {
+            page[i] = ids.nextInt();
+        }
+        return page;
+    }
+
+    /**
+     * A transaction a minute, of which one in ten is backdated by up to a year.
+     */
+    private static Transaction transaction(int id, Random random) {
+        long date = START + id * MINUTE_MILLIS;
+        if (random.nextInt(10) == 0) {
+            date -= (long) random.nextInt(365 * 24 * 60) * MINUTE_MILLIS;
+        }
+        Transaction transaction = new Transaction(id);
+        transaction.date = Instant.ofEpochMilli(date);
+        transaction.amount = 1 + random.nextInt(100_000);
+        transaction.type = random.nextBoolean() ? Transaction.DEPOSIT : Transaction.WITHDRAWAL;
+        transaction.externalIBAN = "NL39RABO0300065264";
+        transaction.description = "";
+        return transaction;
+    }
+}
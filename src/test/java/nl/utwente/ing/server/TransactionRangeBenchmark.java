@@ -0,0 +1,104 @@
+package nl.utwente.ing.server;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares listing the first page of the transactions in one month of ten years of transactions by testing the date
+ * of every transaction in order with seeking the start of the month in the {@link DateIndex}.
+ *
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+public class TransactionRangeBenchmark {
+
+    private static final int TRANSACTIONS = 1_000_000;
+    private static final int LIMIT = 20;
+    private static final int SCAN_ITERATIONS = 20;
+    private static final int INDEX_ITERATIONS = 10_000;
+    private static final ZonedDateTime START = ZonedDateTime.of(2008, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+    private static final long YEARS = 10;
+
+    @Test
+    public void dateRangeBenchmark() {
+        Random random = new Random(1);
+        TransactionStore store = new TransactionStore();
+        DateIndex index = new DateIndex(store);
+        long start = START.toInstant().toEpochMilli();
+        long span = START.plusYears(YEARS).toInstant().toEpochMilli() - start;
+        for (int id = 1; id <= TRANSACTIONS; id++) {
+            store.put(transaction(id, start + (long) (random.nextDouble() * span)));
+            index.add(id);
+        }
+
+        // A month near the end, so that scanning reads most transactions.
+        long from = START.plusYears(YEARS - 1).toInstant().toEpochMilli();
+        long to = START.plusYears(YEARS - 1).plusMonths(1).toInstant().toEpochMilli();
+
+        int[] scanned = null;
+        long begin = System.nanoTime();
+        for (int i = 0; i < SCAN_ITERATIONS; i++) {
+            scanned = scanPage(store, index, from, to);
+        }
+        double scanNanos = (System.nanoTime() - begin) / (double) SCAN_ITERATIONS;
+
+        int[] indexed = null;
+        begin = System.nanoTime();
+        for (int i = 0; i < INDEX_ITERATIONS; i++) {
+            indexed = page(store, index.after(from, 0, 0), to);
+        }
+        double indexNanos = (System.nanoTime() - begin) / (double) INDEX_ITERATIONS;
+
+        assertArrayEquals(scanned, indexed);
+        System.out.println(String.format("Page of %d of one month of %d transactions in %d years: %.1f us scanning all "
+                        + "transactions, %.1f us seeking in the index",
+                LIMIT, TRANSACTIONS, YEARS, scanNanos / 1_000, indexNanos / 1_000));
+        assertTrue(indexNanos < scanNanos);
+    }
+
+    /**
+     * A page of the month, found by testing the date of every transaction in order.
+     */
+    private static int[] scanPage(TransactionStore store, DateIndex index, long from, long to) {
+        int[] page = new int[LIMIT];
+        int count = 0;
+        PrimitiveIterator.OfInt ids = index.from(0);
+        while (ids.hasNext() && count < LIMIT) {
+            int id = ids.nextInt();
+            long date = store.date(id);
+            if (date >= from && date < to) {
+                page[count++] = id;
+            }
+        }
+        return page;
+    }
+
+    private static int[] page(TransactionStore store, PrimitiveIterator.OfInt ids, long to) {
+        int[] page = new int[LIMIT];
+        for (int i = 0; i < LIMIT && ids.hasNext(); i++) {
+            int id = ids.nextInt();
+            if (store.date(id) >= to) {
+                break;
+            }
+            page[i] = id;
+        }
+        return page;
+    }
+
+    private static Transaction transaction(int id, long date) {
+        Transaction transaction = new Transaction(id);
+        transaction.date = Instant.ofEpochMilli(date);
+        transaction.amount = 100;
+        transaction.type = Transaction.DEPOSIT;
+        transaction.externalIBAN = "NL39RABO0300065264";
+        transaction.description = "";
+        return transaction;
+    }
+}
@@ -0,0 +1,270 @@
+package nl.utwente.ing.server;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * The transactions of a session, stored as parallel columns of primitives instead of as objects. Transaction IDs are
+ * assigned consecutively from 1 and never reused, so the transaction with ID {@code id} is stored in row
+ * {@code id - 1}; the rows of deleted transactions are marked as empty.
+ *
+ * IBANs and descriptions are dictionary encoded, and the category is stored as its ID, with 0 for no category.
+ * {@link Transaction} objects are only created to read or write a single transaction.
+ */
+final class TransactionStore {
+
+    private static final byte EMPTY = 0;
+    private static final byte DEPOSIT = 1;
+    private static final byte WITHDRAWAL = 2;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] dates = new long[INITIAL_CAPACITY];
+    private long[] amounts = new long[INITIAL_CAPACITY];
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private int[] categories = new int[INITIAL_CAPACITY];
+    private int[] ibans = new int[INITIAL_CAPACITY];
+    private int[] descriptions = new int[INITIAL_CAPACITY];
+
+    private final Dictionary ibanDictionary = new Dictionary();
+    private final Dictionary descriptionDictionary = new Dictionary();
+
+    /**
+     * The number of rows in use, which is the largest ID stored so far.
+     */
+    private int rows;
+    private int size;
+
+    /**
+     * Stores a new transaction, or replaces the transaction with the same ID.
+     */
+    void put(Transaction transaction) {
+        int row = transaction.id - 1;
+        if (row >= dates.length) {
+            grow(row + 1);
+        }
+        if (types[row] == EMPTY) {
+            size++;
+        }
+
+        dates[row] = transaction.date.toEpochMilli();
+        amounts[row] = transaction.amount;
+        types[row] = Transaction.DEPOSIT.equals(transaction.type) ? DEPOSIT : WITHDRAWAL;
+        categories[row] = transaction.category == null ? 0 : transaction.category.id;
+        ibans[row] = ibanDictionary.encode(transaction.externalIBAN);
+        descriptions[row] = descriptionDictionary.encode(transaction.description);
+        rows = Math.max(rows, row + 1);
+    }
+
+    void remove(int id) {
+        if (contains(id)) {
+            types[id - 1] = EMPTY;
+            size--;
+        }
+    }
+
+    boolean contains(int id) {
+        return id >= 1 && id <= rows && types[id - 1] != EMPTY;
+    }
+
+    /**
+     * @param categories resolves a category ID to its category
+     * @return a copy of the transaction with the given ID, which must be stored
+     */
+    Transaction get(int id, IntFunction<Category> categories) {
+        int row = id - 1;
+        Transaction transaction = new Transaction(id);
+        transaction.date = Instant.ofEpochMilli(dates[row]);
+        transaction.amount = amounts[row];
+        transaction.type = types[row] == DEPOSIT ? Transaction.DEPOSIT : Transaction.WITHDRAWAL;
+        transaction.externalIBAN = ibanDictionary.decode(ibans[row]);
+        transaction.description = descriptionDictionary.decode(descriptions[row]);
+        transaction.category = this.categories[row] == 0 ? null : categories.apply(this.categories[row]);
+        return transaction;
+    }
+
+    /**
+     * @return the number of stored transactions
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the largest ID stored so far, including deleted transactions
+     */
+    int lastId() {
+        return rows;
+    }
+
+    /**
+     * @return the date of the transaction in milliseconds since the epoch
+     */
+    long date(int id) {
+        return dates[id - 1];
+    }
+
+    /**
+     * @return the amount of the transaction in cents
+     */
+    long amount(int id) {
+        return amounts[id - 1];
+    }
+
+    /**
+     * @return the change in balance in cents caused by the transaction
+     */
+    long signedAmount(int id) {
+        return types[id - 1] == DEPOSIT ? amounts[id - 1] : -amounts[id - 1];
+    }
+
+    boolean isDeposit(int id) {
+        return types[id - 1] == DEPOSIT;
+    }
+
+    String type(int id) {
+        return isDeposit(id) ? Transaction.DEPOSIT : Transaction.WITHDRAWAL;
+    }
+
+    String externalIBAN(int id) {
+        return ibanDictionary.decode(ibans[id - 1]);
+    }
+
+    String description(int id) {
+        return descriptionDictionary.decode(descriptions[id - 1]);
+    }
+
+    /**
+     * @return the ID of the category of the transaction, or 0 if it has none
+     */
+    int category(int id) {
+        return categories[id - 1];
+    }
+
+    void setCategory(int id, int categoryId) {
+        categories[id - 1] = categoryId;
+    }
+
+    /**
+     * Removes the given category from all transactions.
+     */
+    void clearCategory(int categoryId) {
+        for (int row = 0; row < rows; row++) {
+            if (categories[row] == categoryId) {
+                categories[row] = 0;
+            }
+        }
+    }
+
+    /**
+     * @return the IDs of all stored transactions in ascending order
+     */
+    int[] ids() {
+        int[] ids = new int[size];
+        int count = 0;
+        for (int row = 0; row < rows; row++) {
+            if (types[row] != EMPTY) {
+                ids[count++] = row + 1;
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * @return the IDs of all stored transactions in chronological order, and in ascending order of ID for
+     * transactions with the same date
+     */
+    int[] sortedIds() {
+        int[] ids = ids();
+        // The IDs are in ascending order, so a stable sort by date orders transactions with the same date by ID.
+        mergeSort(ids, new int[ids.length], 0, ids.length);
+        return ids;
+    }
+
+    /**
+     * Orders transactions by date, and transactions with the same date by ID.
+     */
+    int compare(int first, int second) {
+        int result = Long.compare(dates[first - 1], dates[second - 1]);
+        return result != 0 ? result : Integer.compare(first, second);
+    }
+
+    /**
+     * Sorts the IDs in the given range by date, keeping the order of IDs with the same date.
+     */
+    private void mergeSort(int[] ids, int[] buffer, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(ids, buffer, from, middle);
+        mergeSort(ids, buffer, middle, to);
+        if (dates[ids[middle - 1] - 1] <= dates[ids[middle] - 1]) {
+            return;
+        }
+
+        System.arraycopy(ids, from, buffer, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && dates[buffer[left] - 1] <= dates[buffer[right] - 1])) {
+                ids[i] = buffer[left++];
+            } else {
+                ids[i] = buffer[right++];
+            }
+        }
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeInt(rows);
+        out.writeInt(size);
+        for (int row = 0; row < rows; row++) {
+            out.writeByte(types[row]);
+            if (types[row] != EMPTY) {
+                out.writeLong(dates[row]);
+                out.writeLong(amounts[row]);
+                out.writeInt(categories[row]);
+                out.writeInt(ibans[row]);
+                out.writeInt(descriptions[row]);
+            }
+        }
+        ibanDictionary.write(out);
+        descriptionDictionary.write(out);
+    }
+
+    /**
+     * Adds the transactions written by {@link #write} to this empty store.
+     */
+    void readFrom(DataInput in) throws IOException {
+        rows = in.readInt();
+        size = in.readInt();
+        if (rows > dates.length) {
+            grow(rows);
+        }
+        for (int row = 0; row < rows; row++) {
+            types[row] = in.readByte();
+            if (types[row] != EMPTY) {
+                dates[row] = in.readLong();
+                amounts[row] = in.readLong();
+                categories[row] = in.readInt();
+                ibans[row] = in.readInt();
+                descriptions[row] = in.readInt();
+            }
+        }
+        ibanDictionary.readFrom(in);
+        descriptionDictionary.readFrom(in);
+    }
+
+    private void grow(int minimumCapacity) {
+        int capacity = Math.max(minimumCapacity, dates.length * 2);
+        dates = Arrays.copyOf(dates, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+        types = Arrays.copyOf(types, capacity);
+        categories = Arrays.copyOf(categories, capacity);
+        ibans = Arrays.copyOf(ibans, capacity);
+        descriptions = Arrays.copyOf(descriptions, capacity);
+    }
+}
@@ -0,0 +1,162 @@
+package nl.utwente.ing.server;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.ToLongFunction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the {@link TransactionStore} with the map of {@link Transaction} objects it replaced, in heap bytes per
+ * transaction and in the throughput of the scans done for the balance history and for filtering by category.
+ *
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+public class TransactionStoreBenchmark {
+
+    private static final int TRANSACTIONS = 200_000;
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int ITERATIONS = 20;
+    private static final long START = Instant.parse("2015-01-01T00:00:00Z").toEpochMilli();
+    private static final long DAY_MILLIS = 86_400_000;
+
+    private static final Category[] CATEGORIES = {
+            new Category(1, "groceries"), new Category(2, "rent"), new Category(3, "work"), new Category(4, "fun")
+    };
+
+    @Test
+    public void memoryFootprintBenchmark() {
+        long before = usedHeap();
+        TransactionStore store = store(TRANSACTIONS);
+        long storeBytes = usedHeap() - before;
+        assertEquals(TRANSACTIONS, store.size());
+        store = null;
+
+        before = usedHeap();
+        Map<Integer, Transaction> objects = objects(TRANSACTIONS);
+        long objectBytes = usedHeap() - before;
+        assertEquals(TRANSACTIONS, objects.size());
+
+        System.out.println(String.format("%d transactions: %.1f bytes per transaction in columns, %.1f in objects",
+                TRANSACTIONS, storeBytes / (double) TRANSACTIONS, objectBytes / (double) TRANSACTIONS));
+        assertTrue(storeBytes < objectBytes);
+    }
+
+    @Test
+    public void scanBenchmark() {
+        TransactionStore store = store(TRANSACTIONS);
+        Map<Integer, Transaction> objects = objects(TRANSACTIONS);
+
+        // The daily change in balance, as aggregated into the balance history buckets.
+        ToLongFunction<TransactionStore> storeBalance = transactions -> {
+            long checksum = 0;
+            for (int id : transactions.ids()) {
+                checksum += transactions.date(id) / DAY_MILLIS * transactions.signedAmount(id);
+            }
+            return checksum;
+        };
+        ToLongFunction<Map<Integer, Transaction>> objectBalance = transactions -> {
+            long checksum = 0;
+            for (Transaction transaction : transactions.values()) {
+                long signedAmount = Transaction.DEPOSIT.equals(transaction.type)
+                        ? transaction.amount : -transaction.amount;
+                checksum += transaction.date.toEpochMilli() / DAY_MILLIS * signedAmount;
+            }
+            return checksum;
+        };
+        assertEquals(objectBalance.applyAsLong(objects), storeBalance.applyAsLong(store));
+        print("balance history", measure(storeBalance, store), measure(objectBalance, objects));
+
+        // The transactions of a category, as listed by GET /transactions?category=...
+        ToLongFunction<TransactionStore> storeCategory = transactions -> {
+            long count = 0;
+            for (int id : transactions.ids()) {
+                if (transactions.category(id) == CATEGORIES[2].id) {
+                    count++;
+                }
+            }
+            return count;
+        };
+        ToLongFunction<Map<Integer, Transaction>> objectCategory = transactions -> {
+            long count = 0;
+            for (Transaction transaction : transactions.values()) {
+                if (transaction.category != null && CATEGORIES[2].name.equals(transaction.category.name)) {
+                    count++;
+                }
+            }
+            return count;
+        };
+        assertEquals(objectCategory.applyAsLong(objects), storeCategory.applyAsLong(store));
+        print("category filter", measure(storeCategory, store), measure(objectCategory, objects));
+    }
+
+    private static void print(String scan, double storeNanos, double objectNanos) {
+        System.out.println(String.format("%s: %.1f M transactions/s in columns, %.1f M transactions/s in objects",
+                scan, TRANSACTIONS / storeNanos * 1_000, TRANSACTIONS / objectNanos * 1_000));
+    }
+
+    /**
+     * @return the average number of nanoseconds of a scan
+     */
+    private static <T> double measure(ToLongFunction<T> scan, T transactions) {
+        long checksum = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            checksum += scan.applyAsLong(transactions);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            checksum += scan.applyAsLong(transactions);
+        }
+        double nanos = (System.nanoTime() - start) / (double) ITERATIONS;
+        // Use the checksum, so the scans cannot be optimized away.
+        assertTrue(checksum != Long.MIN_VALUE);
+        return nanos;
+    }
+
+    private static TransactionStore store(int transactions) {
+        TransactionStore store = new TransactionStore();
+        Random random = new Random(1);
+        for (int id = 1; id <= transactions; id++) {
+            store.put(transaction(id, random));
+        }
+        return store;
+    }
+
+    private static Map<Integer, Transaction> objects(int transactions) {
+        Map<Integer, Transaction> objects = new TreeMap<>();
+        Random random = new Random(1);
+        for (int id = 1; id <= transactions; id++) {
+            objects.put(id, transaction(id, random));
+        }
+        return objects;
+    }
+
+    /**
+     * Creates a transaction with one of a thousand IBANs and one of a hundred descriptions. Like transactions parsed
+     * from request bodies, every transaction has its own string instances.
+     */
+    private static Transaction transaction(int id, Random random) {
+        Transaction transaction = new Transaction(id);
+        transaction.date = Instant.ofEpochMilli(START + (long) (random.nextDouble() * 1000 * DAY_MILLIS));
+        transaction.amount = 1 + random.nextInt(100_000);
+        transaction.type = random.nextBoolean() ? Transaction.DEPOSIT : Transaction.WITHDRAWAL;
+        transaction.externalIBAN = String.format("NL39INGB%010d", random.nextInt(1000));
+        transaction.description = "Payment reference " + random.nextInt(100);
+        transaction.category = random.nextInt(5) == 0 ? null : CATEGORIES[random.nextInt(CATEGORIES.length)];
+        return transaction;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
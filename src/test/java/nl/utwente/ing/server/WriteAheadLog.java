@@ -0,0 +1,292 @@
+package nl.utwente.ing.server;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the changes of the sessions, from which the sessions are rebuilt when a server is started after
+ * a crash.
+ *
+ * Every record is appended in memory while the session it changes is locked, so the records of a session are in the
+ * order in which its changes were made, and is made durable by {@link #sync} before the change is acknowledged.
+ * Threads syncing while another thread writes the log wait for it, after which one of them writes all records
+ * appended meanwhile with a single fsync. Concurrent changes therefore share an fsync instead of each paying for one.
+ *
+ * A record consists of its length, the CRC-32 of its contents and its contents. A record which was not written
+ * completely when the server crashed is detected by its length or checksum, and is discarded by {@link #recover}
+ * together with anything after it. The log is never compacted, so it grows with every change.
+ */
+final class WriteAheadLog {
+
+    private static final byte CREATED = 1;
+    private static final byte CHANGED = 2;
+    private static final byte EXPIRED = 3;
+    private static final int HEADER_SIZE = 8;
+
+    private final Path path;
+    private FileChannel channel;
+    /**
+     * The records appended since the last write, guarded by this log.
+     */
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    /**
+     * The number of records appended, which is the position of the last appended record.
+     */
+    private long appended;
+    /**
+     * The position of the last record of which the fsync completed.
+     */
+    private long durable;
+    /**
+     * Whether a thread is writing the pending records, during which other threads wait.
+     */
+    private boolean writing;
+    private IOException failure;
+
+    WriteAheadLog(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Replays the complete records in the log, discards a record which was being written when the server stopped and
+     * opens the log for appending. Records replayed are not appended again.
+     *
+     * Only successful changes are logged, so a complete record which cannot be replayed means that the log is
+     * corrupt. Recovery then fails with the position of the record, and the log is left unchanged.
+     *
+     * @throws IOException if the log could not be read or opened, or is corrupt
+     */
+    void recover(Replay replay) throws IOException {
+        long valid = 0;
+        if (Files.exists(path)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+                long size = Files.size(path);
+                byte[] record;
+                for (long position = 1; (record = readRecord(in, size - valid)) != null; position++) {
+                    try {
+                        replay(record, replay);
+                    } catch (IOException | RuntimeException e) {
+                        throw new IOException(String.format("The log %s is corrupt: record %d at offset %d could "
+                                + "not be replayed", path, position, valid), e);
+                    }
+                    valid += HEADER_SIZE + record.length;
+                }
+            }
+        }
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.truncate(valid);
+        channel.position(valid);
+    }
+
+    /**
+     * Appends the creation of a session.
+     *
+     * @return the position to {@link #sync} before the session is returned
+     */
+    long created(String sessionId) {
+        return append(CREATED, sessionId, null, null, null, null, null);
+    }
+
+    /**
+     * Appends a successful change of a session, which must be locked, by a request. Changes are replayed by sending
+     * the request again, at the time it was received.
+     *
+     * @param method the method of the request
+     * @param path the path of the request
+     * @param query the raw query of the request, or null if it has none
+     * @param body the body of the request
+     * @param now the time the request was received
+     * @return the position to {@link #sync} before the change is acknowledged
+     */
+    long changed(String sessionId, String method, String path, String query, String body, Instant now) {
+        return append(CHANGED, sessionId, method, path, query == null ? "" : query, body, now);
+    }
+
+    /**
+     * Appends the deletion of an expired session. It is made durable with the next sync, so a session may be
+     * recovered after it expired, after which it expires again.
+     */
+    void expired(String sessionId) {
+        append(EXPIRED, sessionId, null, null, null, null, null);
+    }
+
+    /**
+     * Waits until the record at the given position and all records before it are durable, writing them if no other
+     * thread is writing the log.
+     *
+     * @throws UncheckedIOException if the log could not be written, after which no record becomes durable anymore
+     */
+    void sync(long position) {
+        while (true) {
+            byte[] records;
+            long last;
+            synchronized (this) {
+                while (writing && durable < position) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted while waiting for the log", e);
+                    }
+                }
+                if (failure != null) {
+                    throw new UncheckedIOException("Could not write the log", failure);
+                }
+                if (durable >= position) {
+                    return;
+                }
+                // Becomes the writer of all records appended so far, including those of the waiting threads.
+                writing = true;
+                records = pending.toByteArray();
+                pending = new ByteArrayOutputStream();
+                last = appended;
+            }
+
+            IOException error = null;
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(records);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                error = e;
+            }
+            synchronized (this) {
+                writing = false;
+                if (error != null) {
+                    failure = error;
+                } else {
+                    durable = last;
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Makes the pending records durable and closes the log.
+     */
+    void close() {
+        long last;
+        synchronized (this) {
+            last = appended;
+        }
+        try {
+            sync(last);
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private long append(byte type, String sessionId, String method, String path, String query, String body,
+                        Instant now) {
+        ByteArrayOutputStream contents = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(contents);
+        try {
+            out.writeByte(type);
+            Codec.writeString(out, sessionId);
+            if (type == CHANGED) {
+                Codec.writeString(out, method);
+                Codec.writeString(out, path);
+                Codec.writeString(out, query);
+                Codec.writeString(out, body);
+                Codec.writeInstant(out, now);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] record = contents.toByteArray();
+        CRC32 checksum = new CRC32();
+        checksum.update(record, 0, record.length);
+
+        synchronized (this) {
+            DataOutputStream log = new DataOutputStream(pending);
+            try {
+                log.writeInt(record.length);
+                log.writeInt((int) checksum.getValue());
+                log.write(record);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return ++appended;
+        }
+    }
+
+    /**
+     * @param remaining the number of bytes left in the log
+     * @return the contents of the next record, or null if there is no complete record left
+     */
+    private static byte[] readRecord(DataInputStream in, long remaining) throws IOException {
+        if (remaining < HEADER_SIZE) {
+            return null;
+        }
+        int length = in.readInt();
+        int checksum = in.readInt();
+        if (length < 0 || length > remaining - HEADER_SIZE) {
+            return null;
+        }
+        byte[] record = new byte[length];
+        try {
+            in.readFully(record);
+        } catch (EOFException e) {
+            return null;
+        }
+        CRC32 actual = new CRC32();
+        actual.update(record, 0, length);
+        return (int) actual.getValue() == checksum ? record : null;
+    }
+
+    private static void replay(byte[] record, Replay replay) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        byte type = in.readByte();
+        String sessionId = Codec.readString(in);
+        switch (type) {
+            case CREATED:
+                replay.created(sessionId);
+                break;
+            case CHANGED:
+                String method = Codec.readString(in);
+                String path = Codec.readString(in);
+                String query = Codec.readString(in);
+                String body = Codec.readString(in);
+                replay.changed(sessionId, method, path, query.isEmpty() ? null : query, body, Codec.readInstant(in));
+                break;
+            case EXPIRED:
+                replay.expired(sessionId);
+                break;
+            default:
+                throw new IOException("Unknown record type " + type);
+        }
+    }
+
+    /**
+     * Applies the records of the log while it is recovered.
+     */
+    interface Replay {
+
+        void created(String sessionId);
+
+        void changed(String sessionId, String method, String path, String query, String body, Instant now)
+                throws IOException;
+
+        void expired(String sessionId);
+    }
+}
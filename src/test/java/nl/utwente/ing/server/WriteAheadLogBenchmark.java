@@ -0,0 +1,126 @@
+package nl.utwente.ing.server;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares making every change durable with an fsync of its own with the group commit of the {@link WriteAheadLog},
+ * for concurrent threads each logging changes one at a time like clients waiting for their responses.
+ *
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+public class WriteAheadLogBenchmark {
+
+    private static final int THREADS = 8;
+    private static final int CHANGES_PER_THREAD = 250;
+    private static final String BODY = "{\"date\": \"2018-01-01T12:00:00.000Z\", \"amount\": 12.34, "
+            + "\"externalIBAN\": \"NL05INGB0374182583\", \"type\": \"deposit\", \"description\": \"test\"}";
+
+    @Test
+    public void groupCommitBenchmark() throws IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("log-benchmark");
+        try {
+            // Warm up both before measuring either.
+            run(directory, false);
+            run(directory, true);
+
+            double separateNanos = run(directory, false);
+            double groupNanos = run(directory, true);
+            System.out.println(String.format("%d threads each logging %d changes: %.1f us per change with an fsync "
+                            + "per change, %.1f us with group commit", THREADS, CHANGES_PER_THREAD,
+                    separateNanos / 1_000, groupNanos / 1_000));
+            assertTrue(groupNanos < separateNanos);
+        } finally {
+            Files.deleteIfExists(directory.resolve("group.log"));
+            Files.deleteIfExists(directory.resolve("separate.log"));
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * @return the time per change in nanoseconds
+     */
+    private static double run(Path directory, boolean group) throws IOException, InterruptedException {
+        Path path = directory.resolve(group ? "group.log" : "separate.log");
+        Files.deleteIfExists(path);
+        WriteAheadLog log = group ? new WriteAheadLog(path) : null;
+        SeparateLog separate = group ? null : new SeparateLog(path);
+        if (group) {
+            // The log is empty, so nothing is replayed.
+            log.recover(null);
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            String sessionId = "session-" + i;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int j = 0; j < CHANGES_PER_THREAD; j++) {
+                        if (group) {
+                            log.sync(log.changed(sessionId, "POST", "/api/v1/transactions", null, BODY,
+                                    Instant.now()));
+                        } else {
+                            separate.append(sessionId, BODY);
+                        }
+                    }
+                } catch (InterruptedException | IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double nanos = (System.nanoTime() - begin) / (double) (THREADS * CHANGES_PER_THREAD);
+        if (group) {
+            log.close();
+        } else {
+            separate.close();
+        }
+        return nanos;
+    }
+
+    /**
+     * Writes and forces every change on its own, while holding the lock of the log.
+     */
+    private static final class SeparateLog {
+
+        private final FileChannel channel;
+
+        SeparateLog(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+
+        synchronized void append(String sessionId, String body) throws IOException {
+            ByteBuffer record = StandardCharsets.UTF_8.encode(sessionId + " POST /api/v1/transactions " + body + "\n");
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+            channel.force(false);
+        }
+
+        void close() throws IOException {
+            channel.close();
+        }
+    }
+}